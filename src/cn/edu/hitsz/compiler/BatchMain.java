@@ -0,0 +1,174 @@
+package cn.edu.hitsz.compiler;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.StreamingProductionCollector;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+import cn.edu.hitsz.compiler.utils.OutputPaths;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * 批量编译的入口
+ * <br>
+ * 在一个 JVM 中并行编译多个源文件. 码点表, 文法与 LR 分析表只构造一次并被所有编译单元共享, 每个编译单元在线程池中独立编译,
+ * 结果输出到输出目录下以源文件名命名的子目录中, 子目录中的文件与 Main 在 data/out 下的输出同名.
+ * <br>
+ * 用法: {@code BatchMain [-j 线程数] [-o 输出目录] [-p] [--ir-profile] [--binary-parser-list] <源文件目录 | @文件列表 | 源文件...>}
+ * <ul>
+ *     <li>-p: 在每个编译单元内部也并行地进行词法分析与语法分析, 适用于少量非常大的源文件</li>
+ *     <li>--ir-profile: 以带统计的方式模拟执行 IR, 每个编译单元另外输出各种指令的执行次数与各 IR 变量的统计 (CSV)</li>
+ *     <li>--binary-parser-list: 以二进制格式输出规约出的产生式列表 (parser_list.bin), 代替 parser_list.txt</li>
+ *     <li>源文件目录: 编译该目录下的所有文件 (不递归)</li>
+ *     <li>@文件列表: 文件列表中每行一个源文件路径</li>
+ * </ul>
+ */
+public class BatchMain {
+    private static final String DEFAULT_OUTPUT_DIR = "data/out/batch";
+
+    public static void main(String[] args) {
+        var threads = Runtime.getRuntime().availableProcessors();
+        var outputDir = Paths.get(DEFAULT_OUTPUT_DIR);
+        var parallelUnit = false;
+        var irProfile = false;
+        var parserListFormat = StreamingProductionCollector.Format.TEXT;
+        final var sources = new ArrayList<Path>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-j" -> threads = Integer.parseInt(requireValue(args, ++i));
+                case "-o" -> outputDir = Paths.get(requireValue(args, ++i));
+                case "-p" -> parallelUnit = true;
+                case "--ir-profile" -> irProfile = true;
+                case "--binary-parser-list" -> parserListFormat = StreamingProductionCollector.Format.BINARY;
+                default -> sources.addAll(collectSources(args[i]));
+            }
+        }
+
+        if (sources.isEmpty()) {
+            System.err.println("Usage: BatchMain [-j threads] [-o output-dir] [-p] [--ir-profile] [--binary-parser-list] <source-dir | @file-list | source-file...>");
+            System.exit(2);
+        }
+
+        // 所有编译单元共享的只读部分只构造一次
+        TokenKind.loadTokenKinds();
+        final var tableGenerator = new TableGenerator();
+        tableGenerator.run();
+        final var compiler = new Compiler(tableGenerator.getTable(), parallelUnit ? ForkJoinPool.commonPool() : null);
+        compiler.setIRProfile(irProfile);
+        compiler.setParserListFormat(parserListFormat);
+
+        // 在派发任务之前就确定好每个编译单元的输出目录, 保证结果与线程调度无关
+        final var unitDirs = assignOutputDirs(sources, outputDir);
+
+        final var begin = System.nanoTime();
+        final var executor = Executors.newFixedThreadPool(threads);
+        final var results = new ArrayList<Future<?>>();
+        try {
+            for (int i = 0; i < sources.size(); i++) {
+                final var source = sources.get(i).toString();
+                final var unitDir = unitDirs.get(i);
+                results.add(executor.submit(() -> {
+                    createDirectories(unitDir);
+                    compiler.compile(source, OutputPaths.under(unitDir));
+                }));
+            }
+
+            var failed = 0;
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    System.err.println("FAILED " + sources.get(i) + ": " + e.getCause());
+                }
+            }
+
+            final var elapsedMillis = (System.nanoTime() - begin) / 1_000_000;
+            System.out.printf("Compiled %d unit(s), %d failed, in %d ms with %d thread(s)%n",
+                sources.size(), failed, elapsedMillis, threads);
+            if (failed != 0) {
+                System.exit(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for compilation", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String requireValue(String[] args, int index) {
+        if (index >= args.length) {
+            throw new RuntimeException("Missing value for option " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * @param arg 命令行参数: 目录, @文件列表 或源文件
+     * @return 该参数代表的所有源文件
+     */
+    private static List<Path> collectSources(String arg) {
+        if (arg.startsWith("@")) {
+            return FileUtils.readLines(arg.substring(1)).stream()
+                .map(String::strip)
+                .filter(line -> !line.isEmpty())
+                .map(Paths::get)
+                .toList();
+        }
+
+        final var path = Paths.get(arg);
+        if (Files.isDirectory(path)) {
+            try (final Stream<Path> children = Files.list(path)) {
+                return children.filter(Files::isRegularFile).sorted().toList();
+            } catch (IOException e) {
+                throw new RuntimeException("IO Exception for " + arg, e);
+            }
+        }
+        return List.of(path);
+    }
+
+    /**
+     * 每个编译单元输出到以源文件名 (去掉扩展名) 命名的子目录中, 重名时依次加上 -1, -2, ... 后缀
+     */
+    private static List<Path> assignOutputDirs(List<Path> sources, Path outputDir) {
+        final var used = new HashSet<String>();
+        final var result = new ArrayList<Path>();
+        for (final var source : sources) {
+            final var fileName = source.getFileName().toString();
+            final var dot = fileName.lastIndexOf('.');
+            final var baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+            result.add(outputDir.resolve(uniqueName(baseName, used)));
+        }
+        return result;
+    }
+
+    private static String uniqueName(String baseName, Set<String> used) {
+        var name = baseName;
+        for (int suffix = 1; !used.add(name); suffix++) {
+            name = baseName + "-" + suffix;
+        }
+        return name;
+    }
+
+    private static void createDirectories(Path dir) {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + dir, e);
+        }
+    }
+}
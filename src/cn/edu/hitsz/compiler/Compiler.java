@@ -0,0 +1,404 @@
+package cn.edu.hitsz.compiler;
+
+import cn.edu.hitsz.compiler.asm.AssemblyGenerator;
+import cn.edu.hitsz.compiler.asm.RiscvSimulator;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.monitor.PhaseEvents;
+import cn.edu.hitsz.compiler.monitor.PhaseReport;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.ParallelSyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
+import cn.edu.hitsz.compiler.parser.StreamingProductionCollector;
+import cn.edu.hitsz.compiler.parser.SyntaxError;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.CompressedParseTable;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.ChannelWriter;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+import cn.edu.hitsz.compiler.utils.IREmulator;
+import cn.edu.hitsz.compiler.utils.IRProfile;
+import cn.edu.hitsz.compiler.utils.OutputPaths;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 对单个源文件执行从词法分析到汇编生成的完整编译流程
+ * <br>
+ * 码点表, 文法与 LR 分析表在构造好之后都不再改变, 可以被多个 Compiler 共享; 而符号表, 各 Observer 以及 IR 临时变量的编号等
+ * 可变状态都属于每次 compile 调用自身, 因此同一个 Compiler 可以在多个线程中同时编译不同的源文件.
+ */
+public class Compiler {
+    /**
+     * 不经过文件的编译结果, 各部分的文本格式与对应的输出文件相同
+     *
+     * @param tokens           词法单元流
+     * @param intermediateCode 中间代码
+     * @param emulateResult    IR 模拟执行的结果
+     * @param assemblyLanguage 汇编代码
+     */
+    public record Output(String tokens, String intermediateCode, String emulateResult, String assemblyLanguage) {
+    }
+
+    /**
+     * @param lrTable 构造好的 LR 分析表, 调用前需要已经读取过码点文件
+     */
+    public Compiler(LRTable lrTable) {
+        this(lrTable, null);
+    }
+
+    /**
+     * @param lrTable 构造好的 LR 分析表, 调用前需要已经读取过码点文件
+     * @param pool    用于在编译单元内部并行地进行词法分析与语法分析的线程池, 为 null 时顺序地进行分析
+     * @see LexicalAnalyzer#run(ForkJoinPool)
+     * @see ParallelSyntaxAnalyzer
+     */
+    public Compiler(LRTable lrTable, ForkJoinPool pool) {
+        this.lrTable = lrTable;
+        this.parseTable = CompressedParseTable.of(lrTable);
+        this.pool = pool;
+    }
+
+    private final LRTable lrTable;
+    // 顺序分析时使用的压缩表, 与 lrTable 的内容相同
+    private final CompressedParseTable parseTable;
+    private final ForkJoinPool pool;
+    private boolean assemblyCheck = true;
+    private boolean irProfile = false;
+    private StreamingProductionCollector.Format parserListFormat = StreamingProductionCollector.Format.TEXT;
+
+    /**
+     * 是否在进程内模拟执行生成的汇编, 并与 IR 模拟执行的结果比较, 默认开启. 需要在开始编译之前设置
+     *
+     * @param assemblyCheck 为 false 时跳过模拟执行, 节省每次编译的时间, 但不再能发现后端的错误
+     */
+    public void setAssemblyCheck(boolean assemblyCheck) {
+        this.assemblyCheck = assemblyCheck;
+    }
+
+    /**
+     * 是否以带统计的方式模拟执行 IR, 并把统计以 CSV 格式输出到 IR 模拟执行的结果所在的目录, 默认关闭.
+     * 只对输出到文件的编译有效, 需要在开始编译之前设置
+     *
+     * @param irProfile 为 true 时输出 {@link OutputPaths#irInstructionProfile()} 与 {@link OutputPaths#irVariableProfile()}
+     */
+    public void setIRProfile(boolean irProfile) {
+        this.irProfile = irProfile;
+    }
+
+    /**
+     * 规约出的产生式列表的输出格式, 默认为文本. 需要在开始编译之前设置
+     *
+     * @param parserListFormat 为 {@link StreamingProductionCollector.Format#BINARY} 时输出 {@link OutputPaths#parserBinary()}
+     *                         而不输出 {@link OutputPaths#parser()}, 之后可以由 {@link StreamingProductionCollector#decodeToText} 还原
+     */
+    public void setParserListFormat(StreamingProductionCollector.Format parserListFormat) {
+        this.parserListFormat = parserListFormat;
+    }
+
+    /**
+     * 编译一个源文件
+     *
+     * @param sourcePath 源文件路径
+     * @param outputs    各输出文件的路径
+     */
+    public void compile(String sourcePath, OutputPaths outputs) {
+        compile(sourcePath, outputs, PhaseReport.disabled());
+    }
+
+    /**
+     * 编译一个源文件, 并把各阶段的统计记录到报告中
+     *
+     * @param sourcePath 源文件路径
+     * @param outputs    各输出文件的路径
+     * @param report     阶段报告
+     */
+    public void compile(String sourcePath, OutputPaths outputs, PhaseReport report) {
+        compile(sourcePath, outputs, report, List.of());
+    }
+
+    /**
+     * 编译一个源文件, 并在语法分析时额外通知给定的 Observer, 如 {@link cn.edu.hitsz.compiler.parser.ParseProfiler}
+     *
+     * @param sourcePath     源文件路径
+     * @param outputs        各输出文件的路径
+     * @param report         阶段报告
+     * @param extraObservers 额外的 Observer, 在规约列表之后, 语义分析与 IR 生成之前被通知, 只会在调用线程中被通知
+     */
+    public void compile(String sourcePath, OutputPaths outputs, PhaseReport report, List<ActionObserver> extraObservers) {
+        // 构建符号表以供各部分使用
+        final var symbolTable = new SymbolTable();
+
+        // 词法分析
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        try (final var phase = report.begin(new PhaseEvents.Lex())) {
+            lexer.loadFile(sourcePath);
+            lex(lexer);
+            lexer.dumpTokens(outputs.token());
+            symbolTable.dumpTable(outputs.oldSymbolTable());
+            phase.event().source = sourcePath;
+            phase.event().tokens = lexer.getTokenBuffer().size();
+            phase.event().identifiers = symbolTable.size();
+        }
+
+        // 加入生成规约列表的 Observer, 规约列表在解析过程中直接流式写入文件
+        final var parserListPath = parserListFormat == StreamingProductionCollector.Format.TEXT
+            ? outputs.parser() : outputs.parserBinary();
+        final var productionCollector = new StreamingProductionCollector(
+            GrammarInfo.getBeginProduction(), parserListPath, parserListFormat);
+
+        // 语法分析, 语义分析与 IR 生成
+        final var observers = new ArrayList<ActionObserver>();
+        observers.add(productionCollector);
+        observers.addAll(extraObservers);
+        final IRGenerator irGenerator;
+        try (productionCollector) {
+            irGenerator = parse(symbolTable, lexer, observers, sourcePath, report);
+        }
+
+        writeResults(symbolTable, irGenerator, outputs, sourcePath, report, assemblyCheck, irProfile);
+    }
+
+    /**
+     * 输出语法分析之后的各部分结果: 新符号表, 中间代码, IR 模拟执行结果与汇编
+     *
+     * @param assemblyCheck 是否模拟执行汇编并与 IR 模拟执行的结果比较
+     * @param irProfile     是否输出 IR 模拟执行的统计
+     */
+    static void writeResults(SymbolTable symbolTable, IRGenerator irGenerator, OutputPaths outputs,
+                             String source, PhaseReport report, boolean assemblyCheck, boolean irProfile) {
+        // 各 Observer 输出结果
+        symbolTable.dumpTable(outputs.newSymbolTable());
+        final var instructions = irGenerator.getIR();
+        irGenerator.dumpIR(outputs.intermediateCode());
+
+        // 模拟执行 IR 并输出结果
+        final var result = emulate(instructions, source, report, irProfile ? outputs : null);
+        FileUtils.writeFile(outputs.emulateResult(), describe(result));
+
+        // 由 IR 生成汇编, 并验证汇编的执行结果与 IR 相同
+        try (final var phase = report.begin(new PhaseEvents.Assemble())) {
+            final var asmGenerator = generateAssembly(instructions);
+            asmGenerator.dump(outputs.assemblyLanguage());
+            if (assemblyCheck) {
+                verifyAssembly(asmGenerator, result, source, phase.event());
+            }
+        }
+    }
+
+    /**
+     * 编译内存中的源代码, 不读写任何文件
+     *
+     * @param source 源代码的 UTF-8 编码
+     * @param name   源代码的名字, 仅用于错误信息
+     * @return 编译结果
+     */
+    public Output compile(ByteBuffer source, String name) {
+        final var symbolTable = new SymbolTable();
+        final var report = PhaseReport.disabled();
+
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        try (final var phase = report.begin(new PhaseEvents.Lex())) {
+            lexer.loadSource(source, name);
+            lex(lexer);
+            phase.event().source = name;
+            phase.event().tokens = lexer.getTokenBuffer().size();
+            phase.event().identifiers = symbolTable.size();
+        }
+
+        final var irGenerator = parse(symbolTable, lexer, List.of(), name, report);
+        final var instructions = irGenerator.getIR();
+        final var result = emulate(instructions, name, report, null);
+        final AssemblyGenerator asmGenerator;
+        try (final var phase = report.begin(new PhaseEvents.Assemble())) {
+            asmGenerator = generateAssembly(instructions);
+            if (assemblyCheck) {
+                verifyAssembly(asmGenerator, result, name, phase.event());
+            }
+        }
+
+        return new Output(
+            render(lexer::dumpTokens),
+            render(irGenerator::dumpIR),
+            describe(result),
+            render(asmGenerator::dump)
+        );
+    }
+
+    private void lex(LexicalAnalyzer lexer) {
+        if (pool == null) {
+            lexer.runPacked();
+        } else {
+            lexer.run(pool);
+        }
+    }
+
+    /**
+     * 执行语法分析, 并在其中完成语义分析与 IR 生成
+     *
+     * @param extraObservers 额外的 Observer, 先于语义分析与 IR 生成被通知
+     * @return 完成了 IR 生成的 IRGenerator
+     */
+    private IRGenerator parse(SymbolTable symbolTable, LexicalAnalyzer lexer, List<ActionObserver> extraObservers,
+                              String source, PhaseReport report) {
+        try (final var phase = report.begin(new PhaseEvents.Parse())) {
+            final var observers = new ArrayList<>(extraObservers);
+            // 只有在计数会被用到时才多通知一个 Observer
+            final var counter = phase.isMeasured() ? new ActionCounter() : null;
+            if (counter != null) {
+                observers.add(counter);
+            }
+            final var irGenerator = parse(symbolTable, lexer, observers);
+            phase.event().source = source;
+            phase.event().instructions = irGenerator.getIR().size();
+            if (counter != null) {
+                phase.event().shifts = counter.shifts;
+                phase.event().reductions = counter.reductions;
+            }
+            return irGenerator;
+        }
+    }
+
+    private IRGenerator parse(SymbolTable symbolTable, LexicalAnalyzer lexer, List<ActionObserver> extraObservers) {
+        final var observers = new ArrayList<>(extraObservers);
+
+        // 加入用作语义检查的 Observer
+        final var semanticAnalyzer = new SemanticAnalyzer();
+        semanticAnalyzer.setLineTable(lexer.getLineTable());
+        observers.add(semanticAnalyzer);
+
+        // 加入用作 IR 生成的 Observer
+        final var irGenerator = new IRGenerator();
+        observers.add(irGenerator);
+
+        // 加载 LR 分析驱动程序, 执行语法解析并在解析过程中依次调用各 Observer
+        // 开启错误恢复, 一次报告所有的语法错误
+        final List<SyntaxError> errors;
+        if (pool == null) {
+            final var parser = new SyntaxAnalyzer(symbolTable);
+            parser.loadTokens(lexer.getTokenBuffer());
+            parser.loadParseTable(parseTable);
+            parser.setErrorRecovery(true);
+            observers.forEach(parser::registerObserver);
+            parser.run();
+            errors = parser.getErrors();
+        } else {
+            final var parser = new ParallelSyntaxAnalyzer(symbolTable, pool);
+            parser.loadTokens(lexer.getTokenBuffer());
+            parser.loadLRTable(lrTable);
+            parser.setErrorRecovery(true);
+            observers.forEach(parser::registerObserver);
+            parser.run();
+            errors = parser.getErrors();
+        }
+        if (!errors.isEmpty()) {
+            final var lines = lexer.getLineTable();
+            throw new RuntimeException(errors.stream().map(error -> error.message(lines))
+                .collect(Collectors.joining("\n", "Syntax analyzer finds error...\n", "")));
+        }
+        return irGenerator;
+    }
+
+    /**
+     * @param profileOutputs 不为 null 时带统计地模拟执行, 并把统计输出到其中的路径
+     */
+    private static Optional<Integer> emulate(List<Instruction> instructions, String source, PhaseReport report,
+                                             OutputPaths profileOutputs) {
+        try (final var phase = report.begin(new PhaseEvents.Emulate())) {
+            phase.event().source = source;
+            phase.event().instructions = instructions.size();
+            final var emulator = IREmulator.load(instructions);
+            if (profileOutputs == null) {
+                return emulator.execute();
+            }
+            final var profile = emulator.executeProfiled(IRProfile.UNLIMITED);
+            profile.dumpInstructionCounts(profileOutputs.irInstructionProfile());
+            profile.dumpVariables(profileOutputs.irVariableProfile());
+            return profile.getReturnValue();
+        }
+    }
+
+    private static String describe(Optional<Integer> result) {
+        return result.map(Objects::toString).orElse("No return value");
+    }
+
+    /**
+     * 在进程内模拟执行生成的汇编, 检查 a0 与 IR 模拟执行的返回值相同; 没有返回值时不检查
+     *
+     * @param event 记录模拟执行得到的指令数, 访存次数与周期数
+     * @throws RuntimeException 两者不同, 说明后端有错误
+     */
+    private static void verifyAssembly(AssemblyGenerator asmGenerator, Optional<Integer> expected,
+                                       String source, PhaseEvents.Assemble event) {
+        final var simulated = RiscvSimulator.load(asmGenerator.getAssembly()).run();
+        event.source = source;
+        event.instructions = simulated.instructions();
+        event.spills = simulated.stores();
+        event.reloads = simulated.loads();
+        event.cycles = simulated.cycles();
+        if (expected.isEmpty()) {
+            return;
+        }
+        final var actual = simulated.a0();
+        if (actual != expected.get()) {
+            throw new RuntimeException("Assembly returns %d but IR emulation returns %d".formatted(actual, expected.get()));
+        }
+    }
+
+    private static AssemblyGenerator generateAssembly(List<Instruction> instructions) {
+        final var asmGenerator = new AssemblyGenerator();
+        asmGenerator.loadIR(instructions);
+        asmGenerator.run();
+        return asmGenerator;
+    }
+
+    /**
+     * 统计移入与规约的次数
+     */
+    private static final class ActionCounter implements ActionObserver {
+        private long shifts = 0;
+        private long reductions = 0;
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            shifts++;
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            reductions++;
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+    }
+
+    private static String render(Consumer<ChannelWriter> dump) {
+        final var bytes = new ByteArrayOutputStream();
+        try (final var writer = new ChannelWriter(Channels.newChannel(bytes), "<memory>")) {
+            dump.accept(writer);
+        }
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,96 @@
+package cn.edu.hitsz.compiler;
+
+import cn.edu.hitsz.compiler.lexer.IncrementalLexer;
+import cn.edu.hitsz.compiler.monitor.PhaseReport;
+import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.IncrementalSyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
+import cn.edu.hitsz.compiler.parser.StreamingProductionCollector;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.utils.OutputPaths;
+
+import java.util.List;
+
+/**
+ * 面向编辑器的增量编译会话
+ * <br>
+ * 会话持有一份源代码, 每次编辑之后只重新进行受影响部分的词法分析与语法分析; 语义分析, IR 生成与之后的阶段仍然对整个程序重新执行,
+ * 它们通过回放语法分析的动作序列得到与完整编译完全相同的输入, 因此输出也与 {@link Compiler} 完全相同.
+ */
+public class IncrementalSession {
+    /**
+     * @param lrTable 构造好的 LR 分析表, 调用前需要已经读取过码点文件
+     */
+    public IncrementalSession(LRTable lrTable) {
+        this.parser = new IncrementalSyntaxAnalyzer(lrTable);
+    }
+
+    private final IncrementalLexer lexer = new IncrementalLexer();
+    private final IncrementalSyntaxAnalyzer parser;
+
+    /**
+     * 从文件中读取源代码并完整地分析
+     *
+     * @param sourcePath 源文件路径
+     */
+    public void open(String sourcePath) {
+        lexer.loadFile(sourcePath);
+        parser.parse(lexer.getTokens());
+    }
+
+    /**
+     * 完整地分析一份新的源代码
+     *
+     * @param source 源代码
+     */
+    public void load(String source) {
+        lexer.load(source);
+        parser.parse(lexer.getTokens());
+    }
+
+    /**
+     * 将源代码中 [offset, offset + removedLength) 的部分替换为 inserted, 并增量地重新分析
+     *
+     * @return 这次编辑对 token 列表造成的改动
+     */
+    public IncrementalLexer.Damage edit(int offset, int removedLength, String inserted) {
+        final var damage = lexer.edit(offset, removedLength, inserted);
+        parser.reparse(lexer.getTokens(), damage);
+        return damage;
+    }
+
+    /**
+     * @return 当前的源代码
+     */
+    public String getSource() {
+        return lexer.getSource();
+    }
+
+    /**
+     * @return 上一次分析中真正被语法分析驱动程序分析过的 token 数量
+     */
+    public int getReparsedTokenCount() {
+        return parser.getReparsedTokenCount();
+    }
+
+    /**
+     * 以当前的源代码完成编译, 输出与 {@link Compiler#compile(String, OutputPaths)} 相同的各个文件
+     *
+     * @param outputs 各输出文件的路径
+     */
+    public void compile(OutputPaths outputs) {
+        lexer.dumpTokens(outputs.token());
+        final var symbolTable = lexer.buildSymbolTable();
+        symbolTable.dumpTable(outputs.oldSymbolTable());
+
+        final var semanticAnalyzer = new SemanticAnalyzer();
+        final var irGenerator = new IRGenerator();
+        try (final var productionCollector = new StreamingProductionCollector(
+            GrammarInfo.getBeginProduction(), outputs.parser(), StreamingProductionCollector.Format.TEXT)) {
+            parser.replay(symbolTable, List.of(productionCollector, semanticAnalyzer, irGenerator));
+        }
+
+        Compiler.writeResults(symbolTable, irGenerator, outputs, "<session>", PhaseReport.disabled(), true, false);
+    }
+}
@@ -1,79 +1,77 @@
 package cn.edu.hitsz.compiler;
 
-import cn.edu.hitsz.compiler.asm.AssemblyGenerator;
-import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
 import cn.edu.hitsz.compiler.lexer.TokenKind;
-import cn.edu.hitsz.compiler.parser.IRGenerator;
-import cn.edu.hitsz.compiler.parser.ProductionCollector;
-import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
-import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.monitor.PhaseEvents;
+import cn.edu.hitsz.compiler.monitor.PhaseReport;
+import cn.edu.hitsz.compiler.parser.ParseProfiler;
+import cn.edu.hitsz.compiler.parser.StreamingProductionCollector;
 import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
 import cn.edu.hitsz.compiler.parser.table.TableGenerator;
-import cn.edu.hitsz.compiler.symtab.SymbolTable;
 import cn.edu.hitsz.compiler.utils.FilePathConfig;
-import cn.edu.hitsz.compiler.utils.FileUtils;
-import cn.edu.hitsz.compiler.utils.IREmulator;
+import cn.edu.hitsz.compiler.utils.OutputPaths;
 
-import java.util.Objects;
+import java.util.List;
 
+/**
+ * 编译 {@link FilePathConfig#SRC_CODE_PATH}, 结果输出到 data/out 下
+ * <br>
+ * 用法: {@code Main [--parse-profile] [--ir-profile] [--binary-parser-list]}
+ * <ul>
+ *     <li>--parse-profile: 统计各产生式与各状态的使用次数, 另外输出排好序的报告 (parse_profile.txt), 供调整文法参考</li>
+ *     <li>--ir-profile: 以带统计的方式模拟执行 IR, 另外输出各种指令的执行次数与各 IR 变量的统计 (CSV)</li>
+ *     <li>--binary-parser-list: 以二进制格式输出规约出的产生式列表 (parser_list.bin), 代替 parser_list.txt</li>
+ * </ul>
+ */
 public class Main {
     public static void main(String[] args) {
-        // 构建符号表以供各部分使用
-        TokenKind.loadTokenKinds();
-        final var symbolTable = new SymbolTable();
+        var parseProfile = false;
+        var irProfile = false;
+        var parserListFormat = StreamingProductionCollector.Format.TEXT;
+        for (final var arg : args) {
+            switch (arg) {
+                case "--parse-profile" -> parseProfile = true;
+                case "--ir-profile" -> irProfile = true;
+                case "--binary-parser-list" -> parserListFormat = StreamingProductionCollector.Format.BINARY;
+                default -> {
+                    System.err.println("Usage: Main [--parse-profile] [--ir-profile] [--binary-parser-list]");
+                    System.exit(2);
+                }
+            }
+        }
 
-        // 词法分析
-        final var lexer = new LexicalAnalyzer(symbolTable);
-        lexer.loadFile(FilePathConfig.SRC_CODE_PATH);
-        lexer.run();
-        lexer.dumpTokens(FilePathConfig.TOKEN_PATH);
-        final var tokens = lexer.getTokens();
-        symbolTable.dumpTable(FilePathConfig.OLD_SYMBOL_TABLE);
+        // 读取码点文件以供各部分使用
+        TokenKind.loadTokenKinds();
 
 //        // 读取第三方程序构造的 LR 分析表
 //        final var tableLoader = new TableLoader();
 //        final var lrTable = tableLoader.load(FilePathConfig.LR1_TABLE_PATH);
 
-        // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表
-        final var tableGenerator = new TableGenerator();
-        tableGenerator.run();
-        final var lrTable = tableGenerator.getTable();
-        lrTable.dumpTable("data/out/lrTable.csv");
-
-        // 加载 LR 分析驱动程序
-        final var parser = new SyntaxAnalyzer(symbolTable);
-        parser.loadTokens(tokens);
-        parser.loadLRTable(lrTable);
-
-        // 加入生成规约列表的 Observer
-        final var productionCollector = new ProductionCollector(GrammarInfo.getBeginProduction());
-        parser.registerObserver(productionCollector);
+        // 记录各阶段的耗时与内存, 同时发出 JFR 事件
+        final var report = new PhaseReport();
 
-        // 加入用作语义检查的 Observer
-        final var semanticAnalyzer = new SemanticAnalyzer();
-        parser.registerObserver(semanticAnalyzer);
-
-        // 加入用作 IR 生成的 Observer
-        final var irGenerator = new IRGenerator();
-        parser.registerObserver(irGenerator);
-
-        // 执行语法解析并在解析过程中依次调用各 Observer
-        parser.run();
-
-        // 各 Observer 输出结果
-        productionCollector.dumpToFile(FilePathConfig.PARSER_PATH);
-        symbolTable.dumpTable(FilePathConfig.NEW_SYMBOL_TABLE);
-        final var instructions = irGenerator.getIR();
-        irGenerator.dumpIR(FilePathConfig.INTERMEDIATE_CODE_PATH);
-
-        // 模拟执行 IR 并输出结果
-        final var emulator = IREmulator.load(instructions);
-        FileUtils.writeFile(FilePathConfig.EMULATE_RESULT, emulator.execute().map(Objects::toString).orElse("No return value"));
+        // 或使用框架自带部分直接从 grammar.txt 构造 LR 分析表
+        final LRTable lrTable;
+        try (final var phase = report.begin(new PhaseEvents.TableGeneration())) {
+            final var tableGenerator = new TableGenerator();
+            tableGenerator.run();
+            lrTable = tableGenerator.getTable();
+            lrTable.dumpTable("data/out/lrTable.csv");
+            phase.event().states = lrTable.getStatusCount();
+            phase.event().productions = GrammarInfo.getProductionsInOrder().size();
+        }
 
-        // 由 IR 生成汇编
-        final var asmGenerator = new AssemblyGenerator();
-        asmGenerator.loadIR(instructions);
-        asmGenerator.run();
-        asmGenerator.dump(FilePathConfig.ASSEMBLY_LANGUAGE_PATH);
+        // 词法分析, 语法分析, 语义分析, IR 生成, IR 模拟执行与汇编生成
+        final var compiler = new Compiler(lrTable);
+        compiler.setIRProfile(irProfile);
+        compiler.setParserListFormat(parserListFormat);
+        // 只有在需要时才统计各产生式与各状态的使用次数, 供调整文法参考
+        final var profiler = parseProfile ? new ParseProfiler() : null;
+        compiler.compile(FilePathConfig.SRC_CODE_PATH, OutputPaths.defaults(), report,
+            profiler == null ? List.of() : List.of(profiler));
+        report.dump(FilePathConfig.PHASE_REPORT_PATH);
+        if (profiler != null) {
+            profiler.dump(FilePathConfig.PARSE_PROFILE_PATH);
+        }
     }
 }
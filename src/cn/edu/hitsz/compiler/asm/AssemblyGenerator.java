@@ -2,9 +2,11 @@ package cn.edu.hitsz.compiler.asm;
 
 import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.ir.*;
+import cn.edu.hitsz.compiler.utils.ChannelWriter;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -294,6 +296,13 @@ public class AssemblyGenerator {
         }
     }
 
+    /**
+     * @return 生成的汇编代码, 每行一条指令
+     */
+    public List<String> getAssembly() {
+        return Collections.unmodifiableList(asm);
+    }
+
     /**
      * 输出汇编代码到文件
      *
@@ -301,7 +310,20 @@ public class AssemblyGenerator {
      */
     public void dump(String path) {
         // 输出汇编代码到文件
-        FileUtils.writeLines(path, asm);
+        try (final var writer = FileUtils.openWriter(path)) {
+            dump(writer);
+        }
+    }
+
+    /**
+     * 输出汇编代码到写入器
+     *
+     * @param writer 写入器, 调用者负责关闭
+     */
+    public void dump(ChannelWriter writer) {
+        for (final var line : asm) {
+            writer.writeLine(line);
+        }
     }
 
     private static class VarUsageInfo {
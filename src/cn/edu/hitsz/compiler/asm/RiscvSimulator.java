@@ -0,0 +1,248 @@
+package cn.edu.hitsz.compiler.asm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模拟执行 AssemblyGenerator 生成的汇编, 在进程内验证汇编与 IR 的结果一致, 并估计执行的周期数
+ * <br>
+ * 只支持后端会生成的 RV32IM 子集: LI, MV, ADD, ADDI, SUB, SUBI, MUL, SW, LW. 与 RARS 的 CompactDataAtZero 配置相同,
+ * 数据段从地址 0 开始, 所有寄存器与内存初始为 0, x0 恒为 0. 程序没有跳转, 按顺序执行到最后一条指令, 结果在 a0 中.
+ */
+public class RiscvSimulator {
+    /**
+     * 简单的周期模型: 每种指令固定的周期数, 不考虑流水线冒险
+     *
+     * @param alu   LI, MV, ADD, ADDI, SUB, SUBI
+     * @param mul   MUL
+     * @param load  LW
+     * @param store SW
+     */
+    public record CycleModel(int alu, int mul, int load, int store) {
+        /**
+         * 单发射顺序流水线的常见估计: 乘法 3 周期, 访存 2 周期
+         */
+        public static final CycleModel DEFAULT = new CycleModel(1, 3, 2, 2);
+    }
+
+    /**
+     * 模拟执行的结果
+     *
+     * @param a0           执行结束时 a0 的值
+     * @param instructions 执行的指令条数
+     * @param loads        LW 的条数
+     * @param stores       SW 的条数
+     * @param cycles       按周期模型估计的周期数
+     */
+    public record Result(int a0, long instructions, long loads, long stores, long cycles) {
+    }
+
+    private enum Op {
+        LI, MV, ADD, ADDI, SUB, SUBI, MUL, SW, LW
+    }
+
+    private static final Map<String, Integer> REGISTERS = registerNames();
+    private static final int A0 = 10;
+
+    /**
+     * @param lines 汇编代码, 每行一条指令; 空行与 # 之后的注释被忽略
+     * @return 加载了该程序的模拟器
+     * @throws RuntimeException 有不支持的指令或格式错误的操作数
+     */
+    public static RiscvSimulator load(List<String> lines) {
+        return new RiscvSimulator(lines);
+    }
+
+    /**
+     * @return 按 {@link CycleModel#DEFAULT} 计算周期数的执行结果
+     */
+    public Result run() {
+        return run(CycleModel.DEFAULT);
+    }
+
+    /**
+     * 从初始状态开始执行整个程序, 可以多次调用
+     *
+     * @param model 周期模型
+     * @return 执行结果
+     */
+    public Result run(CycleModel model) {
+        final var registers = new int[32];
+        var memory = new int[64];
+        long loads = 0;
+        long stores = 0;
+        long cycles = 0;
+        for (int i = 0; i < ops.length; i++) {
+            final var rd = this.rd[i];
+            final var rs1 = this.rs1[i];
+            final var rs2 = this.rs2[i];
+            final var imm = this.imm[i];
+            int value = 0;
+            switch (ops[i]) {
+                case LI -> value = imm;
+                case MV -> value = registers[rs1];
+                case ADD -> value = registers[rs1] + registers[rs2];
+                case ADDI -> value = registers[rs1] + imm;
+                case SUB -> value = registers[rs1] - registers[rs2];
+                case SUBI -> value = registers[rs1] - imm;
+                case MUL -> value = registers[rs1] * registers[rs2];
+                case LW -> {
+                    final var index = wordIndex(registers[rs1] + imm, i);
+                    value = index < memory.length ? memory[index] : 0;
+                    loads++;
+                }
+                case SW -> {
+                    final var index = wordIndex(registers[rs1] + imm, i);
+                    if (index >= memory.length) {
+                        memory = Arrays.copyOf(memory, Math.max(memory.length * 2, index + 1));
+                    }
+                    memory[index] = registers[rs2];
+                    stores++;
+                }
+            }
+            cycles += switch (ops[i]) {
+                case MUL -> model.mul();
+                case LW -> model.load();
+                case SW -> model.store();
+                default -> model.alu();
+            };
+            if (ops[i] != Op.SW && rd != 0) {
+                registers[rd] = value;
+            }
+        }
+        return new Result(registers[A0], ops.length, loads, stores, cycles);
+    }
+
+    private RiscvSimulator(List<String> lines) {
+        final var parsed = new ArrayList<String>();
+        for (final var line : lines) {
+            final var comment = line.indexOf('#');
+            final var code = (comment >= 0 ? line.substring(0, comment) : line).strip();
+            if (!code.isEmpty()) {
+                parsed.add(code);
+            }
+        }
+
+        final var count = parsed.size();
+        this.ops = new Op[count];
+        this.rd = new int[count];
+        this.rs1 = new int[count];
+        this.rs2 = new int[count];
+        this.imm = new int[count];
+        for (int i = 0; i < count; i++) {
+            decode(i, parsed.get(i));
+        }
+    }
+
+    private final Op[] ops;
+    // SW 的 rs2 为要写入的寄存器, rs1 + imm 为地址; LW 的 rs1 + imm 为地址
+    private final int[] rd;
+    private final int[] rs1;
+    private final int[] rs2;
+    private final int[] imm;
+
+    private void decode(int index, String code) {
+        final var space = code.indexOf(' ');
+        final var mnemonic = (space < 0 ? code : code.substring(0, space)).toUpperCase();
+        final var operands = space < 0 ? new String[0] : code.substring(space + 1).split(",");
+        for (int k = 0; k < operands.length; k++) {
+            operands[k] = operands[k].strip();
+        }
+
+        final Op op;
+        try {
+            op = Op.valueOf(mnemonic);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unsupported instruction: " + code, e);
+        }
+        ops[index] = op;
+        switch (op) {
+            case LI -> {
+                expectOperands(code, operands, 2);
+                rd[index] = register(operands[0], code);
+                imm[index] = immediate(operands[1], code);
+            }
+            case MV -> {
+                expectOperands(code, operands, 2);
+                rd[index] = register(operands[0], code);
+                rs1[index] = register(operands[1], code);
+            }
+            case ADD, SUB, MUL -> {
+                expectOperands(code, operands, 3);
+                rd[index] = register(operands[0], code);
+                rs1[index] = register(operands[1], code);
+                rs2[index] = register(operands[2], code);
+            }
+            case ADDI, SUBI -> {
+                expectOperands(code, operands, 3);
+                rd[index] = register(operands[0], code);
+                rs1[index] = register(operands[1], code);
+                imm[index] = immediate(operands[2], code);
+            }
+            case LW, SW -> {
+                expectOperands(code, operands, 2);
+                final var data = register(operands[0], code);
+                if (op == Op.LW) {
+                    rd[index] = data;
+                } else {
+                    rs2[index] = data;
+                }
+                // offset(base)
+                final var address = operands[1];
+                final var open = address.indexOf('(');
+                if (open < 0 || !address.endsWith(")")) {
+                    throw new RuntimeException("Malformed memory operand: " + code);
+                }
+                imm[index] = open == 0 ? 0 : immediate(address.substring(0, open).strip(), code);
+                rs1[index] = register(address.substring(open + 1, address.length() - 1).strip(), code);
+            }
+        }
+    }
+
+    private static void expectOperands(String code, String[] operands, int count) {
+        if (operands.length != count) {
+            throw new RuntimeException("Expect %d operands: %s".formatted(count, code));
+        }
+    }
+
+    private static int register(String name, String code) {
+        final var number = REGISTERS.get(name.toLowerCase());
+        if (number == null) {
+            throw new RuntimeException("Unknown register " + name + ": " + code);
+        }
+        return number;
+    }
+
+    private static int immediate(String text, String code) {
+        try {
+            return Integer.decode(text);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Malformed immediate " + text + ": " + code, e);
+        }
+    }
+
+    private static int wordIndex(int address, int instruction) {
+        if (address < 0 || (address & 3) != 0) {
+            throw new RuntimeException("Unaligned or negative address %d at instruction %d".formatted(address, instruction));
+        }
+        return address >>> 2;
+    }
+
+    private static Map<String, Integer> registerNames() {
+        final var names = new HashMap<String, Integer>();
+        for (int i = 0; i < 32; i++) {
+            names.put("x" + i, i);
+        }
+        final String[] abi = {"zero", "ra", "sp", "gp", "tp", "t0", "t1", "t2", "s0", "s1",
+            "a0", "a1", "a2", "a3", "a4", "a5", "a6", "a7",
+            "s2", "s3", "s4", "s5", "s6", "s7", "s8", "s9", "s10", "s11", "t3", "t4", "t5", "t6"};
+        for (int i = 0; i < abi.length; i++) {
+            names.put(abi[i], i);
+        }
+        names.put("fp", 8);
+        return names;
+    }
+}
@@ -0,0 +1,137 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.CompressedParseTable;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * 文法的基准测试: 比较按优先级分层的表达式文法 (grammar.txt) 与用 %left 等声明解决冲突的扁平表达式文法 (flat_grammar.txt)
+ * <br>
+ * 用法: {@code GrammarBenchmark <源文件> [迭代次数] [扁平文法文件]}, 扁平文法默认为 data/in/flat_grammar.txt.
+ * 两个文法的语句部分应当相同, 因此接受同样的词法单元流.
+ * 对每个文法输出状态数, 压缩表中显式存放的 action 与 goto 项数, 一次分析中的移入与规约次数, 以及不注册观察者时每次分析的平均耗时.
+ * 分层文法另外给出消除了 IRGenerator 与 SemanticAnalyzer 不需要的单产生式之后的结果 (layered-unit).
+ */
+public class GrammarBenchmark {
+    private static final int WARMUP = 5;
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: GrammarBenchmark <source-file> [iterations] [flat-grammar-file]");
+            System.exit(2);
+        }
+
+        TokenKind.loadTokenKinds();
+        final var iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final var flatPath = args.length > 2 ? args[2] : "data/in/flat_grammar.txt";
+
+        final var layered = new TableGenerator();
+        layered.run();
+        final List<ActionObserver> observers = List.of(new IRGenerator(), new SemanticAnalyzer());
+        final var flat = new TableGenerator(GrammarInfo.fromFile(flatPath));
+        flat.run();
+
+        final var tables = new LinkedHashMap<String, LRTable>();
+        tables.put("layered", layered.getTable());
+        tables.put("layered-unit", layered.getTableWithoutUnitReductions(
+            production -> observers.stream().anyMatch(observer -> observer.needsReduce(production))));
+        tables.put("flat", flat.getTable());
+
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        lexer.loadFile(args[0]);
+        final var tokens = lexer.runPacked();
+
+        System.out.printf("%s: %d tokens%n", args[0], tokens.size());
+        System.out.printf("%-14s %8s %8s %8s %12s %12s %12s %10s%n",
+            "grammar", "states", "actions", "gotos", "shifts", "reductions", "ms/parse", "ns/token");
+        long baseline = 0;
+        for (final var entry : tables.entrySet()) {
+            final var table = CompressedParseTable.of(entry.getValue());
+            final var counter = new StepCounter(table.getEliminatedProductions());
+            parse(tokens, table, counter);
+            final var elapsed = measure(() -> parse(tokens, table, null), iterations);
+            if (baseline == 0) {
+                baseline = elapsed;
+            }
+            System.out.printf("%-14s %8d %8d %8d %12d %12d %12.3f %10.2f  x%.2f%n", entry.getKey(),
+                table.getStatusCount(), table.getActionEntryCount(), table.getGotoEntryCount(),
+                counter.shifts, counter.reductions,
+                elapsed / 1e6, (double) elapsed / tokens.size(), (double) baseline / elapsed);
+        }
+    }
+
+    /**
+     * @return 每次分析的平均耗时 (纳秒)
+     */
+    private static long measure(Runnable parse, int iterations) {
+        for (int i = 0; i < WARMUP; i++) {
+            parse.run();
+        }
+        final var begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parse.run();
+        }
+        return (System.nanoTime() - begin) / iterations;
+    }
+
+    private static void parse(TokenBuffer tokens, CompressedParseTable table, ActionObserver observer) {
+        final var parser = new SyntaxAnalyzer(new SymbolTable());
+        if (observer != null) {
+            parser.registerObserver(observer);
+        }
+        parser.loadTokens(tokens);
+        parser.loadParseTable(table);
+        parser.run();
+    }
+
+    /**
+     * 统计表中所有规约 (被消除的单产生式除外) 与移入的次数
+     */
+    private static final class StepCounter implements ActionObserver {
+        private final List<Production> eliminated;
+        private long shifts = 0;
+        private long reductions = 0;
+
+        private StepCounter(List<Production> eliminated) {
+            this.eliminated = eliminated;
+        }
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            shifts++;
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            reductions++;
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+
+        @Override
+        public boolean needsReduce(Production production) {
+            return !eliminated.contains(production);
+        }
+    }
+}
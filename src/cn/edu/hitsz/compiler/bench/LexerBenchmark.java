@@ -0,0 +1,100 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexerDfa;
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 词法分析的基准测试: 比较逐字节查表的 DFA, 带 SWAR 加速的 DFA, 以及不同线程数的并行分析
+ * <br>
+ * 用法: {@code LexerBenchmark <源文件> [迭代次数] [线程数...]}, 默认迭代 20 次, 线程数依次取 1, 2, 4, ... 直到处理器个数.
+ * 每种配置先预热若干次再计时, 输出每次分析的平均耗时与相对于顺序分析的加速比.
+ */
+public class LexerBenchmark {
+    private static final int WARMUP = 5;
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: LexerBenchmark <source-file> [iterations] [threads...]");
+            System.exit(2);
+        }
+
+        TokenKind.loadTokenKinds();
+        final var source = FileUtils.mapFile(args[0]);
+        final var iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final int[] threadCounts;
+        if (args.length > 2) {
+            threadCounts = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                threadCounts[i - 2] = Integer.parseInt(args[i]);
+            }
+        } else {
+            final var processors = Runtime.getRuntime().availableProcessors();
+            threadCounts = new int[32 - Integer.numberOfLeadingZeros(processors)];
+            for (int i = 0; i < threadCounts.length; i++) {
+                threadCounts[i] = 1 << i;
+            }
+        }
+
+        System.out.printf("%s: %d bytes, %d processor(s)%n",
+            args[0], source.limit(), Runtime.getRuntime().availableProcessors());
+
+        final var dfa = LexerDfa.getInstance();
+        final var scalar = measure(source, dfa.withoutRunKernels(), null, iterations);
+        System.out.printf("%-12s %10.3f ms%n", "scalar", scalar / 1e6);
+
+        final var sequential = measure(source, dfa, null, iterations);
+        System.out.printf("%-12s %10.3f ms  x%.2f%n", "swar", sequential / 1e6, (double) scalar / sequential);
+
+        for (final var threads : threadCounts) {
+            final var pool = new ForkJoinPool(threads);
+            try {
+                final var parallel = measure(source, dfa, pool, iterations);
+                System.out.printf("%-12s %10.3f ms  x%.2f%n",
+                    "parallel-" + threads, parallel / 1e6, (double) sequential / parallel);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * @return 每次分析的平均耗时 (纳秒)
+     */
+    private static long measure(ByteBuffer source, LexerDfa dfa, ForkJoinPool pool, int iterations) {
+        var tokens = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            tokens += lex(source, dfa, pool);
+        }
+        final var begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            tokens += lex(source, dfa, pool);
+        }
+        final var elapsed = System.nanoTime() - begin;
+        // 使用分析结果, 避免整个分析过程被优化掉
+        if (tokens == 0) {
+            System.out.println("no tokens");
+        }
+        return elapsed / iterations;
+    }
+
+    private static int lex(ByteBuffer source, LexerDfa dfa, ForkJoinPool pool) {
+        final var lexer = new LexicalAnalyzer(new SymbolTable(), dfa);
+        lexer.loadSource(source, "<benchmark>");
+        if (pool == null) {
+            lexer.run();
+        } else {
+            lexer.run(pool);
+        }
+        var count = 0;
+        for (final var ignored : lexer.getTokens()) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,241 @@
+package cn.edu.hitsz.compiler.bench;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.OperatorTable;
+import cn.edu.hitsz.compiler.parser.ParseProfiler;
+import cn.edu.hitsz.compiler.parser.ParserGenerator;
+import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.CompressedParseTable;
+import cn.edu.hitsz.compiler.parser.table.DenseParseTable;
+import cn.edu.hitsz.compiler.parser.table.HashParseTable;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 语法分析表的基准测试: 比较 LRTable 的 HashMap 形式, 稠密数组形式, 行位移压缩形式, 按访问次数重新编号的压缩形式,
+ * 以及消除了 IRGenerator 与 SemanticAnalyzer 不需要的单产生式之后的压缩形式; 另外与 {@link ParserGenerator} 生成的直接编码的分析器,
+ * 以及用压缩形式加运算符表分析表达式的混合模式 (hybrid) 比较
+ * <br>
+ * 用法: {@code ParserBenchmark <源文件> [迭代次数] [形式...]}, 形式为 hash, dense, compressed, hot, unit, direct, hybrid 中的若干个,
+ * 默认全部.
+ * direct 形式需要在 JDK 中运行.
+ * 先对源文件做一次词法分析, 再用每种形式的表反复分析同一个词法单元流 (不注册观察者), 输出每次分析的平均耗时.
+ * 内存占用同时给出按数组长度估计的字节数与构造若干份副本后测得的堆增量; HashMap 形式的堆增量包含整个 LRTable.
+ * <br>
+ * JVM 中无法直接读取缓存未命中次数, 需要时每次只测一种形式, 在外部用硬件计数器统计, 例如
+ * {@code perf stat -e cache-references,cache-misses,L1-dcache-load-misses java ... ParserBenchmark big.txt 50 dense}.
+ */
+public class ParserBenchmark {
+    private static final int WARMUP = 5;
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ParserBenchmark <source-file> [iterations] [hash|dense|compressed|hot|unit|direct|hybrid...]");
+            System.exit(2);
+        }
+
+        TokenKind.loadTokenKinds();
+        final var iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final var forms = args.length > 2 ? List.of(args).subList(2, args.length)
+            : List.of("hash", "dense", "compressed", "hot", "unit", "direct", "hybrid");
+
+        final var generator = new TableGenerator();
+        generator.run();
+        final var lrTable = generator.getTable();
+        final List<ActionObserver> observers = List.of(new IRGenerator(), new SemanticAnalyzer());
+        final var unitFree = generator.getTableWithoutUnitReductions(
+            production -> observers.stream().anyMatch(observer -> observer.needsReduce(production)));
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        lexer.loadFile(args[0]);
+        final var tokens = lexer.runPacked();
+
+        // 用一次带统计的分析得到各状态的访问次数, 供 hot 形式重新编号
+        final var profiler = new ParseProfiler();
+        final var profiled = new SyntaxAnalyzer(new SymbolTable());
+        profiled.registerObserver(profiler);
+        profiled.loadTokens(tokens);
+        profiled.loadLRTable(lrTable);
+        profiled.run();
+        final var visits = profiler.getStateVisits();
+
+        final Map<String, Supplier<ParseTable>> builders = new LinkedHashMap<>();
+        builders.put("hash", () -> HashParseTable.of(lrTable));
+        builders.put("dense", () -> DenseParseTable.of(lrTable));
+        builders.put("compressed", () -> CompressedParseTable.of(lrTable));
+        builders.put("hot", () -> CompressedParseTable.of(lrTable, visits));
+        builders.put("unit", () -> CompressedParseTable.of(unitFree));
+        builders.put("hybrid", () -> CompressedParseTable.of(lrTable));
+        final var operatorTable = OperatorTable.of("E");
+
+        System.out.printf("%s: %d tokens, %d states (%d without %s)%n", args[0], tokens.size(),
+            lrTable.getStatusCount(), unitFree.getStatusCount(), unitFree.getEliminatedProductions());
+        final var compressed = CompressedParseTable.of(lrTable);
+        System.out.printf("action: %d explicit entries in %d slots (dense %d), goto: %d in %d slots%n",
+            compressed.getActionEntryCount(), compressed.getActionVectorLength(),
+            DenseParseTable.of(lrTable).getActionCellCount(),
+            compressed.getGotoEntryCount(), compressed.getGotoVectorLength());
+        System.out.printf("steps notified to IRGenerator: %d by LR, %d in hybrid mode%n",
+            countSteps(tokens, compressed, null), countSteps(tokens, compressed, operatorTable));
+        System.out.printf("%-12s %12s %12s %12s %10s%n", "form", "est(bytes)", "heap(bytes)", "ms/parse", "ns/token");
+
+        long baseline = 0;
+        for (final var form : forms) {
+            if (form.equals("direct")) {
+                final var parser = new ParserGenerator(lrTable).load();
+                final var elapsed = measure(() -> parser.parse(tokens, List.of()), iterations);
+                if (baseline == 0) {
+                    baseline = elapsed;
+                }
+                System.out.printf("%-12s %12s %12s %12.3f %10.2f  x%.2f%n", form, "-", "-",
+                    elapsed / 1e6, (double) elapsed / tokens.size(), (double) baseline / elapsed);
+                continue;
+            }
+            final var builder = builders.get(form);
+            if (builder == null) {
+                System.err.println("Unknown form: " + form);
+                System.exit(2);
+            }
+            final var table = builder.get();
+            final String estimated;
+            if (table instanceof DenseParseTable dense) {
+                estimated = Long.toString(dense.getFootprintBytes());
+            } else if (table instanceof CompressedParseTable packed) {
+                estimated = Long.toString(packed.getFootprintBytes());
+            } else {
+                estimated = "-";
+            }
+            final var retained = form.equals("hash") ? retainedBytes(ParserBenchmark::generateTable, 50)
+                : retainedBytes(builder::get, 500);
+            final var operators = form.equals("hybrid") ? operatorTable : null;
+            final var elapsed = measure(() -> parse(tokens, table, operators), iterations);
+            if (baseline == 0) {
+                baseline = elapsed;
+            }
+            System.out.printf("%-12s %12s %12d %12.3f %10.2f  x%.2f%n", form, estimated, retained,
+                elapsed / 1e6, (double) elapsed / tokens.size(), (double) baseline / elapsed);
+        }
+    }
+
+    private static LRTable generateTable() {
+        final var generator = new TableGenerator();
+        generator.run();
+        return generator.getTable();
+    }
+
+    /**
+     * @return 每次分析的平均耗时 (纳秒)
+     */
+    private static long measure(Runnable parse, int iterations) {
+        for (int i = 0; i < WARMUP; i++) {
+            parse.run();
+        }
+        final var begin = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parse.run();
+        }
+        return (System.nanoTime() - begin) / iterations;
+    }
+
+    private static void parse(TokenBuffer tokens, ParseTable table, OperatorTable operators) {
+        final var parser = new SyntaxAnalyzer(new SymbolTable());
+        parser.loadTokens(tokens);
+        parser.loadParseTable(table);
+        parser.loadOperatorTable(operators);
+        parser.run();
+    }
+
+    /**
+     * @return 分析过程中通知给一个与 IRGenerator 需要相同规约的观察者的移入与规约的总次数
+     */
+    private static long countSteps(TokenBuffer tokens, ParseTable table, OperatorTable operators) {
+        final var counter = new StepCounter();
+        final var parser = new SyntaxAnalyzer(new SymbolTable());
+        parser.registerObserver(counter);
+        parser.loadTokens(tokens);
+        parser.loadParseTable(table);
+        parser.loadOperatorTable(operators);
+        parser.run();
+        return counter.steps;
+    }
+
+    private static final class StepCounter implements ActionObserver {
+        private final ActionObserver needs = new IRGenerator();
+        private long steps = 0;
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            steps++;
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            steps++;
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+
+        @Override
+        public boolean needsReduce(Production production) {
+            return needs.needsReduce(production);
+        }
+    }
+
+    /**
+     * 构造若干份副本并全部保留, 用 GC 之后的堆使用量之差估计每份的大小.
+     * 先构造一份丢弃, 避免类加载与延迟初始化的静态数据被计入.
+     */
+    private static long retainedBytes(Supplier<?> builder, int copies) {
+        builder.get();
+        final var copiesHeld = new Object[copies];
+        final var before = usedHeap();
+        for (int i = 0; i < copies; i++) {
+            copiesHeld[i] = builder.get();
+        }
+        final var after = usedHeap();
+        // 保证副本在测量之后才能被回收
+        if (copiesHeld[copies - 1] == null) {
+            System.out.println("no table");
+        }
+        return Math.max(0, (after - before) / copies);
+    }
+
+    /**
+     * @return 反复 GC 直到堆使用量不再变化后的使用量
+     */
+    private static long usedHeap() {
+        final var memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        var used = memory.getHeapMemoryUsage().getUsed();
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            final var current = memory.getHeapMemoryUsage().getUsed();
+            if (current == used) {
+                break;
+            }
+            used = current;
+        }
+        return used;
+    }
+}
@@ -0,0 +1,188 @@
+package cn.edu.hitsz.compiler.check;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 检查所用的基准: 与最初的实验框架相同, 逐个 Token 地词法分析, 再直接按 LRTable 中的 Status 与 Action 对象做 LR 分析,
+ * 不经过任何压缩表, 运算符表或错误恢复
+ */
+final class Baseline {
+    private static TableGenerator generator = null;
+
+    /**
+     * @return 已经对 grammar.txt 运行过的表生成器, 只构造一次
+     */
+    static synchronized TableGenerator generator() {
+        if (generator == null) {
+            generator = new TableGenerator();
+            generator.run();
+        }
+        return generator;
+    }
+
+    /**
+     * @return 由 grammar.txt 构造的 LR 分析表
+     */
+    static LRTable table() {
+        return generator().getTable();
+    }
+
+    /**
+     * @return 源代码的 token 列表, 以 EOF 结尾
+     */
+    static List<Token> lex(String source) {
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        lexer.loadSource(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)), "<check>");
+        lexer.run();
+        final var tokens = new ArrayList<Token>();
+        lexer.getTokens().forEach(tokens::add);
+        return tokens;
+    }
+
+    /**
+     * @return 按表分析 tokens 时的动作序列, 格式见 {@link Trace}; 有语法错误时以 "error" 结尾
+     */
+    static List<String> parse(LRTable table, List<Token> tokens) {
+        final var trace = new Trace();
+        final var stack = new ArrayList<Status>();
+        stack.add(table.getInit());
+        var position = 0;
+        while (true) {
+            final var status = stack.get(stack.size() - 1);
+            final var token = tokens.get(position);
+            final var action = table.getAction(status, token);
+            switch (action.getKind()) {
+                case Shift -> {
+                    trace.whenShift(status, token);
+                    stack.add(action.getStatus());
+                    position++;
+                }
+                case Reduce -> {
+                    final var production = action.getProduction();
+                    trace.whenReduce(status, production);
+                    stack.subList(stack.size() - production.body().size(), stack.size()).clear();
+                    stack.add(table.getGoto(stack.get(stack.size() - 1), production.head()));
+                }
+                case Accept -> {
+                    trace.whenAccept(status);
+                    return trace.steps;
+                }
+                case Error -> {
+                    trace.steps.add("error");
+                    return trace.steps;
+                }
+            }
+        }
+    }
+
+    /**
+     * 把收到的动作记录为字符串: "shift 类型 文本", "reduce 产生式" 与 "accept", 不记录状态, 因此可以比较使用不同表的分析器
+     */
+    static final class Trace implements ActionObserver {
+        final List<String> steps = new ArrayList<>();
+        private final List<Production> eliminated;
+
+        Trace() {
+            this(List.of());
+        }
+
+        /**
+         * @param eliminated 不需要的产生式, 用于检查消除了单产生式规约的表
+         */
+        Trace(List<Production> eliminated) {
+            this.eliminated = eliminated;
+        }
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            steps.add("shift " + currentToken.getKindId() + " " + currentToken.getText());
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            steps.add("reduce " + production);
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+            steps.add("accept");
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+
+        @Override
+        public boolean needsReduce(Production production) {
+            return !eliminated.contains(production);
+        }
+    }
+
+    /**
+     * @return 去掉了对 eliminated 中产生式的规约的动作序列
+     */
+    static List<String> without(List<String> steps, List<Production> eliminated) {
+        final var removed = eliminated.stream().map(production -> "reduce " + production).toList();
+        return steps.stream().filter(step -> !removed.contains(step)).toList();
+    }
+
+    /**
+     * 随机生成一段合法的源代码: 先声明若干变量并赋初值, 再对它们赋值, 最后返回其中一个
+     *
+     * @param random     随机数生成器, 由调用者给定种子以便复现
+     * @param statements 赋值语句的条数
+     */
+    static String program(Random random, int statements) {
+        final var builder = new StringBuilder();
+        for (int i = 0; i < VARIABLES; i++) {
+            builder.append("int v").append(i).append(";\n");
+        }
+        // 先给每个变量赋初值, 使生成的 IR 可以模拟执行
+        for (int i = 0; i < VARIABLES; i++) {
+            builder.append('v').append(i).append(" = ").append(i).append(";\n");
+        }
+        for (int i = 0; i < statements; i++) {
+            builder.append('v').append(random.nextInt(VARIABLES)).append(" = ");
+            expression(random, builder, 3);
+            builder.append(";\n");
+        }
+        builder.append("return v").append(random.nextInt(VARIABLES)).append(";\n");
+        return builder.toString();
+    }
+
+    private static final int VARIABLES = 8;
+
+    private static void expression(Random random, StringBuilder builder, int depth) {
+        final var choice = depth == 0 ? random.nextInt(2) : random.nextInt(6);
+        switch (choice) {
+            case 0 -> builder.append('v').append(random.nextInt(VARIABLES));
+            case 1 -> builder.append(random.nextInt(100));
+            case 2 -> {
+                builder.append("( ");
+                expression(random, builder, depth - 1);
+                builder.append(" )");
+            }
+            default -> {
+                expression(random, builder, depth - 1);
+                builder.append(" ").append("+-*".charAt(choice - 3)).append(" ");
+                expression(random, builder, depth - 1);
+            }
+        }
+    }
+
+    private Baseline() {
+    }
+}
@@ -0,0 +1,38 @@
+package cn.edu.hitsz.compiler.check;
+
+import java.util.Objects;
+
+/**
+ * 各检查共用的断言, 失败时抛出 {@link AssertionError}
+ */
+final class Check {
+    static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    static void checkEquals(Object expected, Object actual, String what) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError("%s: expected %s but was %s".formatted(what, expected, actual));
+        }
+    }
+
+    /**
+     * @return 抛出的异常
+     */
+    static <T extends Throwable> T checkThrows(Class<T> type, Runnable action, String what) {
+        try {
+            action.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return type.cast(e);
+            }
+            throw new AssertionError("%s: expected %s but got %s".formatted(what, type.getSimpleName(), e), e);
+        }
+        throw new AssertionError("%s: expected %s but nothing was thrown".formatted(what, type.getSimpleName()));
+    }
+
+    private Check() {
+    }
+}
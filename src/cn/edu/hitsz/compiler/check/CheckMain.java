@@ -0,0 +1,58 @@
+package cn.edu.hitsz.compiler.check;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 行为检查的入口: 依次运行各项检查, 逐项输出 ok 或失败原因, 有失败时以 1 退出
+ * <br>
+ * 用法: {@code CheckMain [检查名前缀...]}, 默认运行全部. 需要在项目根目录下运行, 以读取 data/in 中的码点文件与文法.
+ * 大部分检查把新的实现与基准实现 (HashMap 形式的 LRTable 驱动的 SyntaxAnalyzer, 逐个 Token 的词法分析等) 的输出比较.
+ */
+public class CheckMain {
+    public static void main(String[] args) {
+        TokenKind.loadTokenKinds();
+
+        final Map<String, Runnable> checks = new LinkedHashMap<>();
+        checks.put("writer.closed", WriterChecks::writeAfterClose);
+        checks.put("collector.binary", CollectorChecks::binaryRoundTrip);
+        checks.put("lexer.unexpected", LexerChecks::unexpectedCharacter);
+        checks.put("lexer.packed", LexerChecks::packedTokens);
+        checks.put("lexer.many-identifiers", LexerChecks::manyIdentifiers);
+        checks.put("incremental.edits", IncrementalChecks::randomEdits);
+        checks.put("incremental.error", IncrementalChecks::syntaxError);
+        checks.put("parser.recovery", ParserChecks::errorRecovery);
+        checks.put("parser.error-message", ParserChecks::errorMessage);
+        checks.put("parser.tables", ParserChecks::tableForms);
+        checks.put("parser.units", ParserChecks::unitElimination);
+        checks.put("parser.direct", ParserChecks::directParser);
+        checks.put("parser.hybrid", ParserChecks::hybridMode);
+        checks.put("precedence.glr", PrecedenceChecks::glrGrouping);
+        checks.put("precedence.lr", PrecedenceChecks::lrGrouping);
+        checks.put("precedence.glr-baseline", PrecedenceChecks::glrWithoutConflicts);
+        checks.put("emulator.profile", EmulatorChecks::profiledExecution);
+
+        var failures = 0;
+        for (final var entry : checks.entrySet()) {
+            final var name = entry.getKey();
+            if (args.length > 0 && Arrays.stream(args).noneMatch(name::startsWith)) {
+                continue;
+            }
+            try {
+                entry.getValue().run();
+                System.out.println("ok   " + name);
+            } catch (Throwable e) {
+                failures++;
+                System.out.println("FAIL " + name + ": " + e);
+                e.printStackTrace(System.out);
+            }
+        }
+        if (failures > 0) {
+            System.out.println(failures + " check(s) failed");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package cn.edu.hitsz.compiler.check;
+
+import cn.edu.hitsz.compiler.Compiler;
+import cn.edu.hitsz.compiler.parser.StreamingProductionCollector;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+import cn.edu.hitsz.compiler.utils.OutputPaths;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static cn.edu.hitsz.compiler.check.Check.check;
+
+/**
+ * {@link StreamingProductionCollector} 的检查
+ */
+final class CollectorChecks {
+    /**
+     * 以二进制格式编译同一份源代码, 还原出的文本与以文本格式编译得到的 parser_list.txt 逐字节相同
+     */
+    static void binaryRoundTrip() {
+        try {
+            final var dir = Files.createTempDirectory("collector");
+            try {
+                final var source = dir.resolve("input.txt");
+                FileUtils.writeFile(source.toString(), FileUtils.readFile("data/in/input_code.txt")
+                    + "\n" + Baseline.program(new Random(26), 20000));
+
+                final var text = compile(source, dir.resolve("text"), StreamingProductionCollector.Format.TEXT);
+                final var binary = compile(source, dir.resolve("binary"), StreamingProductionCollector.Format.BINARY);
+                check(Files.exists(Path.of(text.parser())), "TEXT did not write parser_list.txt");
+                check(!Files.exists(Path.of(text.parserBinary())), "TEXT wrote parser_list.bin");
+                check(Files.exists(Path.of(binary.parserBinary())), "BINARY did not write parser_list.bin");
+                check(!Files.exists(Path.of(binary.parser())), "BINARY wrote parser_list.txt");
+
+                final var decoded = dir.resolve("decoded.txt");
+                StreamingProductionCollector.decodeToText(binary.parserBinary(), decoded.toString());
+                final var expected = Files.readAllBytes(Path.of(text.parser()));
+                check(Arrays.equals(expected, Files.readAllBytes(decoded)), "decoded parser list differs from TEXT");
+                check(Files.size(Path.of(binary.parserBinary())) < expected.length / 8,
+                    "binary parser list is not much smaller than the text");
+            } finally {
+                try (final Stream<Path> files = Files.walk(dir)) {
+                    for (final var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static OutputPaths compile(Path source, Path outputDir, StreamingProductionCollector.Format format)
+        throws IOException {
+        Files.createDirectories(outputDir);
+        final var outputs = OutputPaths.under(outputDir);
+        final var compiler = new Compiler(Baseline.table());
+        compiler.setAssemblyCheck(false);
+        compiler.setParserListFormat(format);
+        compiler.compile(source.toString(), outputs);
+        return outputs;
+    }
+
+    private CollectorChecks() {
+    }
+}
@@ -0,0 +1,65 @@
+package cn.edu.hitsz.compiler.check;
+
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.ir.InstructionKind;
+import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.IREmulator;
+import cn.edu.hitsz.compiler.utils.IRProfile;
+
+import java.util.List;
+
+import static cn.edu.hitsz.compiler.check.Check.check;
+import static cn.edu.hitsz.compiler.check.Check.checkEquals;
+
+/**
+ * {@link IREmulator} 的检查
+ */
+final class EmulatorChecks {
+    /**
+     * 带统计的模拟执行与普通的模拟执行得到相同的返回值, 统计的指令条数与读写次数与 IR 一致; 步数用完时提前停止
+     */
+    static void profiledExecution() {
+        for (final var source : ParserChecks.sources()) {
+            final var instructions = generateIR(source);
+            final var expected = IREmulator.load(instructions).execute();
+            final var profile = IREmulator.load(instructions).executeProfiled(IRProfile.UNLIMITED);
+            checkEquals(expected, profile.getReturnValue(), "return value of profiled execution");
+            checkEquals((long) instructions.size(), profile.getSteps(), "steps");
+            check(!profile.isBudgetExhausted(), "budget is exhausted without a budget");
+
+            for (final var kind : InstructionKind.values()) {
+                final var count = instructions.stream().filter(instruction -> instruction.getKind() == kind).count();
+                checkEquals(count, profile.getCount(kind), "count of " + kind);
+            }
+            final var reads = instructions.stream().flatMap(instruction -> instruction.getOperands().stream())
+                .filter(operand -> operand instanceof IRVariable).count();
+            checkEquals(reads, profile.getVariables().values().stream().mapToLong(IRProfile.VariableStats::getReads).sum(),
+                "variable reads");
+            final var writes = instructions.stream().filter(instruction -> instruction.getKind() != InstructionKind.RET).count();
+            checkEquals(writes, profile.getVariables().values().stream().mapToLong(IRProfile.VariableStats::getWrites).sum(),
+                "variable writes");
+
+            final var budget = instructions.size() / 2;
+            final var stopped = IREmulator.load(instructions).executeProfiled(budget);
+            checkEquals((long) budget, stopped.getSteps(), "steps with a budget");
+            check(stopped.isBudgetExhausted(), "budget is not exhausted");
+        }
+    }
+
+    private static List<Instruction> generateIR(String source) {
+        final var tokens = Baseline.lex(source);
+        final var generator = new IRGenerator();
+        final var parser = new SyntaxAnalyzer(new SymbolTable());
+        parser.registerObserver(generator);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(Baseline.table());
+        parser.run();
+        return generator.getIR();
+    }
+
+    private EmulatorChecks() {
+    }
+}
@@ -0,0 +1,155 @@
+package cn.edu.hitsz.compiler.check;
+
+import cn.edu.hitsz.compiler.lexer.IncrementalLexer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.IncrementalSyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static cn.edu.hitsz.compiler.check.Check.check;
+import static cn.edu.hitsz.compiler.check.Check.checkEquals;
+import static cn.edu.hitsz.compiler.check.Check.checkThrows;
+
+/**
+ * {@link IncrementalLexer} 与 {@link IncrementalSyntaxAnalyzer} 的检查
+ */
+final class IncrementalChecks {
+    private static final int EDITS = 400;
+
+    /**
+     * 随机地编辑源代码 (只做不破坏语法的编辑), 每次编辑之后增量分析得到的 token 与动作序列都应当与对编辑后的源代码完整地分析相同
+     */
+    static void randomEdits() {
+        final var random = new Random(20261019);
+        final var lexer = new IncrementalLexer();
+        final var parser = new IncrementalSyntaxAnalyzer(Baseline.table());
+        lexer.loadFile("data/in/input_code.txt");
+        parser.parse(lexer.getTokens());
+        final var tokens = lexer.getTokens();
+
+        var reparsed = 0L;
+        for (int i = 0; i < EDITS; i++) {
+            final var source = lexer.getSource();
+            final var damage = randomEdit(random, lexer, source);
+            parser.reparse(tokens, damage);
+            reparsed += parser.getReparsedTokenCount();
+
+            final var edited = lexer.getSource();
+            final var expected = Baseline.lex(edited);
+            checkEquals(describe(expected), describe(tokens), "tokens after edit " + i);
+            for (int t = 0; t < expected.size() - 1; t++) {
+                // 关键字与符号的 token 不带文本, 只检查标识符与常量的位置
+                final var text = expected.get(t).getText();
+                check(edited.startsWith(text, lexer.getStart(t)), "start of token %d after edit %d".formatted(t, i));
+            }
+
+            final var trace = new Baseline.Trace();
+            parser.replay(new SymbolTable(), List.of(trace));
+            checkEquals(Baseline.parse(Baseline.table(), expected), trace.steps, "actions after edit " + i);
+        }
+        // 编辑都是局部的, 重新分析的 token 应当远少于每次完整分析的 token
+        check(reparsed < (long) EDITS * tokens.size() / 2, "incremental parsing reparsed %d tokens".formatted(reparsed));
+    }
+
+    /**
+     * 编辑出语法错误之后, 异常信息带上出错的 token 下标与期望的终结符, 与 SyntaxAnalyzer 报告的第一个错误相同;
+     * 改正之后可以继续增量分析
+     */
+    static void syntaxError() {
+        final var lexer = new IncrementalLexer();
+        final var parser = new IncrementalSyntaxAnalyzer(Baseline.table());
+        lexer.loadFile("data/in/input_code.txt");
+        parser.parse(lexer.getTokens());
+
+        final var source = lexer.getSource();
+        final var offset = source.indexOf(" = ") + 1;
+        final var damage = lexer.edit(offset, 1, "+");
+        final var error = checkThrows(RuntimeException.class, () -> parser.reparse(lexer.getTokens(), damage),
+            "reparsing an invalid program");
+
+        final var expected = new SyntaxAnalyzer(new SymbolTable());
+        expected.loadTokens(lexer.getTokens());
+        expected.loadLRTable(Baseline.table());
+        expected.setErrorRecovery(true);
+        expected.run();
+        final var first = expected.getErrors().get(0);
+        checkEquals("Syntax analyzer finds error...\n" + first.message(), error.getMessage(), "error message");
+        checkEquals(offset, lexer.getStart(first.tokenIndex()), "start of the erroneous token");
+
+        // 失败之后检查点被丢弃, 只能完整地分析
+        lexer.edit(offset, 1, "=");
+        parser.parse(lexer.getTokens());
+        final var trace = new Baseline.Trace();
+        parser.replay(new SymbolTable(), List.of(trace));
+        checkEquals(Baseline.parse(Baseline.table(), Baseline.lex(source)), trace.steps, "actions after the fix");
+    }
+
+    /**
+     * 复制或删除一行语句, 修改一个数字, 加长一个标识符, 或在空白处插入空白
+     */
+    private static IncrementalLexer.Damage randomEdit(Random random, IncrementalLexer lexer, String source) {
+        final var lines = source.split("\n", -1);
+        final var line = random.nextInt(lines.length);
+        var lineStart = 0;
+        for (int i = 0; i < line; i++) {
+            lineStart += lines[i].length() + 1;
+        }
+        final var text = lines[line];
+        switch (random.nextInt(5)) {
+            case 0 -> {
+                if (!text.isBlank()) {
+                    return lexer.edit(lineStart, 0, text + "\n");
+                }
+            }
+            case 1 -> {
+                if (lines.length > 4 && line < lines.length - 1) {
+                    return lexer.edit(lineStart, text.length() + 1, "");
+                }
+            }
+            case 2 -> {
+                final var digit = firstMatching(text, Character::isDigit);
+                if (digit >= 0) {
+                    return lexer.edit(lineStart + digit, 1, Integer.toString(random.nextInt(10)));
+                }
+            }
+            case 3 -> {
+                final var letter = firstMatching(text, Character::isLetter);
+                // 不修改关键字
+                if (letter >= 0 && !text.strip().startsWith("int") && !text.strip().startsWith("return")) {
+                    return lexer.edit(lineStart + letter, 0, "z");
+                }
+            }
+            default -> {
+                final var space = firstMatching(text, Character::isWhitespace);
+                if (space >= 0) {
+                    return lexer.edit(lineStart + space, 0, random.nextBoolean() ? " " : "\t");
+                }
+            }
+        }
+        return lexer.edit(lineStart, 0, " ");
+    }
+
+    private static int firstMatching(String text, IntPredicate predicate) {
+        for (int i = 0; i < text.length(); i++) {
+            if (predicate.test(text.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String describe(List<Token> tokens) {
+        final var builder = new StringBuilder();
+        for (final var token : tokens) {
+            builder.append(token.getKindId()).append(':').append(token.getText()).append(' ');
+        }
+        return builder.toString();
+    }
+
+    private IncrementalChecks() {
+    }
+}
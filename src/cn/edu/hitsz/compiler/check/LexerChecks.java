@@ -0,0 +1,97 @@
+package cn.edu.hitsz.compiler.check;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static cn.edu.hitsz.compiler.check.Check.check;
+import static cn.edu.hitsz.compiler.check.Check.checkEquals;
+import static cn.edu.hitsz.compiler.check.Check.checkThrows;
+
+/**
+ * {@link LexicalAnalyzer} 的检查
+ */
+final class LexerChecks {
+    /**
+     * 无法识别的字符的行列号与字符本身应当出现在异常信息中, ASCII 与非 ASCII 的输入, 逐个 Token 与紧凑的分析都一样
+     */
+    static void unexpectedCharacter() {
+        for (final var source : new String[]{"int a;\na = 1 # 2;\n", "int a;\na = 1 ￥ 2;\n"}) {
+            final var expected = source.contains("#")
+                ? "<check>:2:7: unexpected character '#' (U+0023)"
+                : "<check>:2:7: unexpected character '￥' (U+FFE5)";
+            for (final var packed : new boolean[]{false, true}) {
+                final var lexer = new LexicalAnalyzer(new SymbolTable());
+                lexer.loadSource(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)), "<check>");
+                final var error = checkThrows(RuntimeException.class, packed ? lexer::runPacked : lexer::run,
+                    "lexing an unexpected character");
+                checkEquals(expected, error.getMessage(), "error message");
+            }
+        }
+    }
+
+    /**
+     * 紧凑的分析, 以及由 Token 列表压缩而成的词法单元流, 都与逐个 Token 的分析得到相同的类型, 文本与位置
+     */
+    static void packedTokens() {
+        for (final var source : ParserChecks.sources()) {
+            final var bytes = source.getBytes(StandardCharsets.UTF_8);
+            final var lexer = new LexicalAnalyzer(new SymbolTable());
+            lexer.loadSource(ByteBuffer.wrap(bytes), "<check>");
+            lexer.run();
+            final var expected = new ArrayList<Token>();
+            lexer.getTokens().forEach(expected::add);
+
+            final var packedLexer = new LexicalAnalyzer(new SymbolTable());
+            packedLexer.loadSource(ByteBuffer.wrap(bytes), "<check>");
+            checkSame(expected, packedLexer.runPacked());
+            checkSame(expected, TokenBuffer.of(expected));
+        }
+    }
+
+    /**
+     * 不同的标识符超过 4194304 个时, 紧凑的分析仍然成功, 并能取回每个标识符的文本
+     */
+    static void manyIdentifiers() {
+        final var count = (1 << 22) + 16;
+        final var source = new ByteArrayOutputStream(count * 12);
+        for (int i = 0; i < count; i++) {
+            source.writeBytes(("int v" + i + ";\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        final var symbolTable = new SymbolTable();
+        final var lexer = new LexicalAnalyzer(symbolTable);
+        lexer.loadSource(ByteBuffer.wrap(source.toByteArray()), "<check>");
+        final var tokens = lexer.runPacked();
+
+        checkEquals(count * 3 + 1, tokens.size(), "number of tokens");
+        for (int i = count - 32; i < count; i++) {
+            checkEquals("v" + i, tokens.text(i * 3 + 1), "text of identifier " + i);
+            checkEquals("v" + i, tokens.token(i * 3 + 1).getText(), "text of token " + i);
+        }
+        check(symbolTable.has("v" + (count - 1)), "last identifier is in the symbol table");
+    }
+
+    private static void checkSame(List<Token> expected, TokenBuffer actual) {
+        checkEquals(expected.size(), actual.size(), "number of tokens");
+        for (int i = 0; i < expected.size(); i++) {
+            final var token = expected.get(i);
+            checkEquals(token.getKind(), actual.kind(i), "kind of token " + i);
+            checkEquals(token.getText(), actual.text(i), "text of token " + i);
+            checkEquals(token.getText(), actual.token(i).getText(), "text of Token " + i);
+            // 逐个 Token 的分析中, 关键字与符号的 token 不带位置
+            if (token.getOffset() != Token.NO_OFFSET) {
+                checkEquals(token.getOffset(), actual.offset(i), "offset of token " + i);
+            }
+        }
+    }
+
+    private LexerChecks() {
+    }
+}
@@ -0,0 +1,275 @@
+package cn.edu.hitsz.compiler.check;
+
+import cn.edu.hitsz.compiler.lexer.LexicalAnalyzer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.IRGenerator;
+import cn.edu.hitsz.compiler.parser.OperatorTable;
+import cn.edu.hitsz.compiler.parser.ParserGenerator;
+import cn.edu.hitsz.compiler.parser.SemanticAnalyzer;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.SyntaxError;
+import cn.edu.hitsz.compiler.parser.table.CompressedParseTable;
+import cn.edu.hitsz.compiler.parser.table.DenseParseTable;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.HashParseTable;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+import static cn.edu.hitsz.compiler.check.Check.check;
+import static cn.edu.hitsz.compiler.check.Check.checkEquals;
+import static cn.edu.hitsz.compiler.check.Check.checkThrows;
+
+/**
+ * 各种分析表与 {@link SyntaxAnalyzer} 的选项的检查, 都与 {@link Baseline} 的分析结果比较
+ */
+final class ParserChecks {
+    private static final int PROGRAMS = 20;
+
+    /**
+     * 消除了 IRGenerator 与 SemanticAnalyzer 不需要的单产生式规约之后, 其余的动作与原表相同
+     */
+    static void unitElimination() {
+        final var observers = List.of(new IRGenerator(), new SemanticAnalyzer());
+        final var compressed = CompressedParseTable.of(Baseline.generator().getTableWithoutUnitReductions(
+            production -> observers.stream().anyMatch(observer -> observer.needsReduce(production))));
+        final var eliminated = compressed.getEliminatedProductions();
+        check(!eliminated.isEmpty(), "no unit production is eliminated");
+
+        for (final var source : sources()) {
+            final var tokens = Baseline.lex(source);
+            final var expected = Baseline.without(Baseline.parse(Baseline.table(), tokens), eliminated);
+            checkEquals(expected, parse(tokens, compressed, new Baseline.Trace(eliminated)), "actions without unit reductions");
+        }
+    }
+
+    /**
+     * 错误恢复: 合法的源代码上与 Baseline 相同且没有错误; 破坏若干条语句之后, 每条被破坏的语句恰好报告一个错误,
+     * 第一个错误之前的动作与 Baseline 相同, 之后不再通知观察者
+     */
+    static void errorRecovery() {
+        final var flat = GrammarInfo.fromFile("data/in/flat_grammar.txt");
+        final var flatGenerator = new TableGenerator(flat);
+        flatGenerator.run();
+
+        final var random = new Random(37);
+        for (final var source : sources()) {
+            final var tokens = Baseline.lex(source);
+            final var trace = new Baseline.Trace();
+            final var parser = recoveringParser(tokens, HashParseTable.of(Baseline.table()), trace);
+            parser.run();
+            checkEquals(List.of(), parser.getErrors(), "errors in a valid program");
+            checkEquals(Baseline.parse(Baseline.table(), tokens), trace.steps, "actions with error recovery");
+
+            final var ranges = new ArrayList<int[]>();
+            final var brokenTokens = Baseline.lex(corrupt(source, random, ranges));
+            final var expected = new ArrayList<>(Baseline.parse(Baseline.table(), brokenTokens));
+            expected.remove("error");
+            final var brokenTrace = new Baseline.Trace();
+            final var brokenParser = recoveringParser(brokenTokens, HashParseTable.of(Baseline.table()), brokenTrace);
+            brokenParser.run();
+            checkEquals(expected, brokenTrace.steps, "actions before the first error");
+            checkErrors(ranges, brokenParser.getErrors());
+
+            // 由另一个文法构造的表, 通过 setRecoverySymbols 给出同步符号
+            final var flatParser = recoveringParser(brokenTokens, HashParseTable.of(flatGenerator.getTable()), new Baseline.Trace());
+            flatParser.setRecoverySymbols(flat.nonTerminals().get("S"), TokenKind.fromString("Semicolon"));
+            flatParser.run();
+            checkErrors(ranges, flatParser.getErrors());
+        }
+    }
+
+    /**
+     * 各种形式的分析表 (稠密表, 压缩表, 按访问次数重新编号的压缩表) 都与 Baseline 的动作相同; 开启错误恢复时,
+     * 报告的错误也与 HashParseTable 相同, 尽管默认规约状态会推迟发现错误
+     */
+    static void tableForms() {
+        final var lrTable = Baseline.table();
+        final var random = new Random(43);
+        // 随意的访问次数, 只要求重新编号之后的表与原表等价
+        final var visits = new long[lrTable.getStatusCount()];
+        for (int i = 0; i < visits.length; i++) {
+            visits[i] = random.nextInt(1000);
+        }
+        final var tables = List.<ParseTable>of(DenseParseTable.of(lrTable), CompressedParseTable.of(lrTable),
+            CompressedParseTable.of(lrTable, visits));
+
+        for (final var source : sources()) {
+            final var tokens = Baseline.lex(source);
+            final var expected = Baseline.parse(lrTable, tokens);
+            final var brokenTokens = Baseline.lex(corrupt(source, random, new ArrayList<>()));
+            final var expectedErrors = errorIndices(brokenTokens, HashParseTable.of(lrTable), null);
+            for (final var table : tables) {
+                final var name = table.getClass().getSimpleName();
+                checkEquals(expected, parse(tokens, table, new Baseline.Trace()), "actions with " + name);
+                checkEquals(expectedErrors, errorIndices(brokenTokens, table, null), "errors with " + name);
+            }
+        }
+    }
+
+    /**
+     * 由分析表生成的直接编码的分析器与 Baseline 的动作相同
+     */
+    static void directParser() {
+        final var parser = new ParserGenerator(Baseline.table()).load();
+        for (final var source : sources()) {
+            final var tokens = Baseline.lex(source);
+            final var trace = new Baseline.Trace();
+            parser.parse(TokenBuffer.of(tokens), List.of(trace));
+            checkEquals(Baseline.parse(Baseline.table(), tokens), trace.steps, "actions of the direct parser");
+        }
+    }
+
+    /**
+     * 混合模式下, 观察者需要所有规约时动作与 Baseline 相同; 开启错误恢复时报告的错误与不开启混合模式时相同
+     */
+    static void hybridMode() {
+        final var table = CompressedParseTable.of(Baseline.table());
+        final var operators = OperatorTable.of("E");
+        final var random = new Random(47);
+        for (final var source : sources()) {
+            final var tokens = Baseline.lex(source);
+            final var trace = new Baseline.Trace();
+            final var parser = new SyntaxAnalyzer(new SymbolTable());
+            parser.registerObserver(trace);
+            parser.loadTokens(tokens);
+            parser.loadParseTable(table);
+            parser.loadOperatorTable(operators);
+            parser.run();
+            checkEquals(Baseline.parse(Baseline.table(), tokens), trace.steps, "actions in hybrid mode");
+
+            final var brokenTokens = Baseline.lex(corrupt(source, random, new ArrayList<>()));
+            checkEquals(errorIndices(brokenTokens, table, null), errorIndices(brokenTokens, table, operators),
+                "errors in hybrid mode");
+        }
+    }
+
+    /**
+     * 不开启错误恢复时, 异常信息带上第一个错误的行列号与期望的终结符, 与开启错误恢复时报告的第一个错误相同;
+     * 混合模式下也一样
+     */
+    static void errorMessage() {
+        final var source = "int a;\nint b;\na = 1;\nb = a + * 2;\nreturn b;\n";
+        final var lexer = new LexicalAnalyzer(new SymbolTable());
+        lexer.loadSource(ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8)), "<check>");
+        final var tokens = lexer.runPacked();
+        final var lines = lexer.getLineTable();
+        final var table = CompressedParseTable.of(Baseline.table());
+
+        final var recovering = new SyntaxAnalyzer(new SymbolTable());
+        recovering.loadTokens(tokens);
+        recovering.loadParseTable(table);
+        recovering.setErrorRecovery(true);
+        recovering.run();
+        checkEquals(1, recovering.getErrors().size(), "number of errors");
+        final var expected = "Syntax analyzer finds error...\n" + recovering.getErrors().get(0).message(lines);
+        check(expected.contains("<check>:4:9: unexpected *"), "location in " + expected);
+
+        for (final var operators : new OperatorTable[]{null, OperatorTable.of("E")}) {
+            final var parser = new SyntaxAnalyzer(new SymbolTable());
+            parser.loadTokens(tokens);
+            parser.loadParseTable(table);
+            parser.loadOperatorTable(operators);
+            parser.setLineTable(lines);
+            final var error = checkThrows(RuntimeException.class, parser::run, "parsing an invalid program");
+            checkEquals(expected, error.getMessage(), "error message" + (operators == null ? "" : " in hybrid mode"));
+        }
+    }
+
+    /**
+     * 逐行破坏随机的若干条赋值语句
+     *
+     * @param ranges 按顺序加入每条被破坏的语句的 token 范围 [起, 止)
+     * @return 破坏后的源代码
+     */
+    private static String corrupt(String source, Random random, List<int[]> ranges) {
+        final var broken = new StringBuilder();
+        var count = 0;
+        for (var line : source.split("\n")) {
+            final var corrupt = line.contains(" = ") && random.nextInt(4) == 0;
+            if (corrupt) {
+                line = CORRUPTIONS.get(random.nextInt(CORRUPTIONS.size())).apply(line);
+            }
+            final var size = Baseline.lex(line).size() - 1;
+            if (corrupt) {
+                ranges.add(new int[]{count, count + size});
+            }
+            count += size;
+            broken.append(line).append('\n');
+        }
+        return broken.toString();
+    }
+
+    /**
+     * @return 开启错误恢复时报告的各错误的 token 下标
+     */
+    private static List<Integer> errorIndices(List<Token> tokens, ParseTable table, OperatorTable operators) {
+        final var parser = recoveringParser(tokens, table, new Baseline.Trace());
+        parser.loadOperatorTable(operators);
+        parser.run();
+        return parser.getErrors().stream().map(SyntaxError::tokenIndex).toList();
+    }
+
+    // 把一条赋值语句变为错误的语句, 错误总在该语句之内被发现
+    private static final List<UnaryOperator<String>> CORRUPTIONS = List.of(
+        line -> line.replace(" = ", " = = "),
+        line -> line.replace(" = ", " "),
+        line -> line.substring(0, line.indexOf('=') + 1) + " ;",
+        line -> line.replace(";", " + ;"));
+
+    private static void checkErrors(List<int[]> ranges, List<SyntaxError> errors) {
+        checkEquals(ranges.size(), errors.size(), "number of errors");
+        for (int i = 0; i < ranges.size(); i++) {
+            final var index = errors.get(i).tokenIndex();
+            check(ranges.get(i)[0] <= index && index < ranges.get(i)[1],
+                "error %d at token %d is outside of [%d, %d)".formatted(i, index, ranges.get(i)[0], ranges.get(i)[1]));
+        }
+    }
+
+    private static SyntaxAnalyzer recoveringParser(List<Token> tokens, ParseTable table, Baseline.Trace trace) {
+        final var parser = new SyntaxAnalyzer(new SymbolTable());
+        parser.registerObserver(trace);
+        parser.loadTokens(tokens);
+        parser.loadParseTable(table);
+        parser.setErrorRecovery(true);
+        return parser;
+    }
+
+    /**
+     * @return input_code.txt 与若干随机生成的源代码
+     */
+    static List<String> sources() {
+        final var random = new Random(45);
+        final var sources = new ArrayList<String>();
+        sources.add(FileUtils.readFile("data/in/input_code.txt"));
+        for (int i = 0; i < PROGRAMS; i++) {
+            sources.add(Baseline.program(random, 1 + random.nextInt(30)));
+        }
+        return sources;
+    }
+
+    /**
+     * @return 用 table 分析 tokens 时 trace 记录的动作序列
+     */
+    static List<String> parse(List<Token> tokens, ParseTable table, Baseline.Trace trace) {
+        final var parser = new SyntaxAnalyzer(new SymbolTable());
+        parser.registerObserver(trace);
+        parser.loadTokens(tokens);
+        parser.loadParseTable(table);
+        parser.run();
+        return trace.steps;
+    }
+
+    private ParserChecks() {
+    }
+}
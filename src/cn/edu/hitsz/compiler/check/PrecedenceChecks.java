@@ -0,0 +1,145 @@
+package cn.edu.hitsz.compiler.check;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.parser.ActionObserver;
+import cn.edu.hitsz.compiler.parser.GLRSyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.SyntaxAnalyzer;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static cn.edu.hitsz.compiler.check.Check.check;
+import static cn.edu.hitsz.compiler.check.Check.checkEquals;
+
+/**
+ * 带优先级声明的二义的扁平文法 (flat_grammar.txt) 上的 GLR 分析与 LR 分析的检查: GLR 分析表保留所有冲突的动作,
+ * 由驱动程序按声明选出推导; LR 分析表则在构造时就按声明解决了冲突
+ */
+final class PrecedenceChecks {
+    // 源代码中的表达式与按优先级加上括号之后的结果
+    private static final Map<String, String> GROUPINGS = Map.of(
+        "a + b * c", "(a + (b * c))",
+        "a * b + c", "((a * b) + c)",
+        "1 + 2 * 3 - 4", "((1 + (2 * 3)) - 4)",
+        "a - b - c", "((a - b) - c)",
+        "a * ( b + c ) * d", "((a * (b + c)) * d)");
+
+    /**
+     * 扁平文法上的 GLR 分析按 %left 声明选出推导
+     */
+    static void glrGrouping() {
+        final var grammar = GrammarInfo.fromFile("data/in/flat_grammar.txt");
+        final var table = new TableGenerator(grammar).generateGLRTable();
+        check(table.getConflictCount() > 0, "conflicts of the flat grammar are resolved when building the GLR table");
+        for (final var entry : GROUPINGS.entrySet()) {
+            final var tree = new Tree();
+            final var parser = new GLRSyntaxAnalyzer(new SymbolTable());
+            parser.registerObserver(tree);
+            parser.loadTokens(TokenBuffer.of(statement(entry.getKey())));
+            parser.loadGLRTable(table);
+            parser.setPrecedence(grammar.precedence());
+            parser.run();
+            checkEquals(entry.getValue(), tree.result(), "GLR grouping of " + entry.getKey());
+        }
+    }
+
+    /**
+     * 扁平文法上按 %left 声明解决了冲突的 LR 分析表给出同样的结合方式
+     */
+    static void lrGrouping() {
+        final var generator = new TableGenerator(GrammarInfo.fromFile("data/in/flat_grammar.txt"));
+        generator.run();
+        for (final var entry : GROUPINGS.entrySet()) {
+            final var tree = new Tree();
+            final var parser = new SyntaxAnalyzer(new SymbolTable());
+            parser.registerObserver(tree);
+            parser.loadTokens(statement(entry.getKey()));
+            parser.loadLRTable(generator.getTable());
+            parser.run();
+            checkEquals(entry.getValue(), tree.result(), "LR grouping of " + entry.getKey());
+        }
+    }
+
+    /**
+     * 在没有冲突的 grammar.txt 上, GLR 分析的动作与普通的 LR 分析完全相同
+     */
+    static void glrWithoutConflicts() {
+        final var table = new TableGenerator().generateGLRTable();
+        checkEquals(0, table.getConflictCount(), "conflicts in grammar.txt");
+        final var random = new Random(48);
+        for (int i = 0; i < 20; i++) {
+            final var tokens = Baseline.lex(Baseline.program(random, 1 + random.nextInt(30)));
+            final var trace = new Baseline.Trace();
+            final var parser = new GLRSyntaxAnalyzer(new SymbolTable());
+            parser.registerObserver(trace);
+            parser.loadTokens(TokenBuffer.of(tokens));
+            parser.loadGLRTable(table);
+            parser.run();
+            checkEquals(Baseline.parse(Baseline.table(), tokens), trace.steps, "GLR actions on grammar.txt");
+        }
+    }
+
+    private static List<Token> statement(String expression) {
+        return Baseline.lex("x = " + expression + ";");
+    }
+
+    /**
+     * 按规约重建表达式, 每个二元运算都加上括号
+     */
+    private static final class Tree implements ActionObserver {
+        private final Deque<String> stack = new ArrayDeque<>();
+        private String assigned = null;
+
+        /**
+         * @return 最后一条赋值语句右侧的表达式
+         */
+        String result() {
+            return assigned;
+        }
+
+        @Override
+        public void whenShift(Status currentStatus, Token currentToken) {
+            stack.push(currentToken.getText().isEmpty() ? currentToken.getKindId() : currentToken.getText());
+        }
+
+        @Override
+        public void whenReduce(Status currentStatus, Production production) {
+            final var size = production.body().size();
+            final var body = new String[size];
+            for (int i = size - 1; i >= 0; i--) {
+                body[i] = stack.pop();
+            }
+            final var text = production.head().toString();
+            if (text.equals("E") && size == 3 && body[0].equals("(")) {
+                stack.push(body[1]);
+            } else if (text.equals("E") && size == 3) {
+                stack.push("(%s %s %s)".formatted(body[0], body[1], body[2]));
+            } else {
+                if (text.equals("S") && size == 3) {
+                    assigned = body[2];
+                }
+                stack.push(String.join(" ", body));
+            }
+        }
+
+        @Override
+        public void whenAccept(Status currentStatus) {
+        }
+
+        @Override
+        public void setSymbolTable(SymbolTable table) {
+        }
+    }
+
+    private PrecedenceChecks() {
+    }
+}
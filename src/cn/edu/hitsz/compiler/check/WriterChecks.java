@@ -0,0 +1,46 @@
+package cn.edu.hitsz.compiler.check;
+
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static cn.edu.hitsz.compiler.check.Check.checkEquals;
+import static cn.edu.hitsz.compiler.check.Check.checkThrows;
+
+/**
+ * {@link cn.edu.hitsz.compiler.utils.ChannelWriter} 的检查
+ */
+final class WriterChecks {
+    /**
+     * 关闭之后的写入应当抛出异常, 而不是写进同一线程中下一个写入器复用的缓冲区
+     */
+    static void writeAfterClose() {
+        try {
+            final var first = Files.createTempFile("writer", ".txt");
+            final var second = Files.createTempFile("writer", ".txt");
+            try {
+                final var closed = FileUtils.openWriter(first.toString());
+                closed.write("first");
+                closed.close();
+                try (final var writer = FileUtils.openWriter(second.toString())) {
+                    writer.write("second");
+                    checkThrows(IllegalStateException.class, () -> closed.write("oops"), "write after close");
+                    checkThrows(IllegalStateException.class, () -> closed.write('x'), "write(char) after close");
+                    checkThrows(IllegalStateException.class, () -> closed.writeByte(1), "writeByte after close");
+                    checkThrows(IllegalStateException.class, closed::flush, "flush after close");
+                }
+                checkEquals("first", Files.readString(first), "content of the closed file");
+                checkEquals("second", Files.readString(second), "content of the next file");
+            } finally {
+                Files.deleteIfExists(first);
+                Files.deleteIfExists(second);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private WriterChecks() {
+    }
+}
@@ -18,10 +18,14 @@ public class IRVariable implements IRValue {
     }
 
     /**
-     * @return 一个对应于源语言中的临时变量的新 IRVariable
+     * 临时变量的编号由每次编译各自维护 (见 IRGenerator), 而不是使用全局计数器, 这样多个编译单元可以并行生成 IR,
+     * 且每个编译单元的结果都与单独编译时相同.
+     *
+     * @param index 临时变量在本次编译中的编号
+     * @return 一个对应于源语言中的临时变量的 IRVariable
      */
-    public static IRVariable temp() {
-        return new IRVariable("$" + count++);
+    public static IRVariable temp(int index) {
+        return new IRVariable("$" + index);
     }
 
     public String getName() {
@@ -56,5 +60,4 @@ public class IRVariable implements IRValue {
     }
 
     private final String name;
-    private static int count = 0;
 }
@@ -0,0 +1,440 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 支持增量重新分析的词法分析器, 供编辑器集成使用
+ * <br>
+ * 该类保留上一次分析出的 token 列表以及每个 token 在源代码中的起止位置. 源代码被编辑后, 只从受影响的第一个 token 开始重新分析,
+ * 一旦分析位置越过了编辑区域, 并恰好落在某个旧 token 的起点上, 就说明之后的 token 都不会改变 (该语言的词法在 token 之间总是回到初始状态),
+ * 于是直接复用它们.
+ * <br>
+ * 位置以源代码字符串中的 char 为单位. 源代码与 token 列表都保存在带间隙的数组中, 在原处修改, 因此编辑的代价与源代码的长度无关.
+ *
+ * @see LexicalAnalyzer 词法规则与之完全相同
+ */
+public class IncrementalLexer {
+    /**
+     * 一次编辑对 token 列表造成的改动: 从 firstToken 开始的 removedTokens 个旧 token 被替换为 insertedTokens 个新 token
+     *
+     * @param firstToken     第一个改动的 token 的下标
+     * @param removedTokens  被移除的旧 token 数量
+     * @param insertedTokens 新插入的 token 数量
+     */
+    public record Damage(int firstToken, int removedTokens, int insertedTokens) {
+    }
+
+    // 源代码与 token 都保存在带间隙的数组中, 编辑只移动间隙附近的内容, 不复制整个源代码或整个 token 列表
+    private final TextBuffer source = new TextBuffer();
+    // 不含末尾的 EOF
+    private final TokenStore tokens = new TokenStore();
+    // 每个标识符在 token 列表中出现的次数, 用于维护符号表
+    private final Map<String, Integer> identifierCounts = new HashMap<>();
+    // 以 EOF 结尾的只读视图
+    private final List<Token> view = new AbstractList<>() {
+        @Override
+        public Token get(int index) {
+            Objects.checkIndex(index, size());
+            return index < tokens.size() ? tokens.token(index) : Token.eof();
+        }
+
+        @Override
+        public int size() {
+            return tokens.size() + 1;
+        }
+    };
+
+    /**
+     * 完整地分析一份新的源代码
+     *
+     * @param newSource 源代码
+     * @return 相当于整个 token 列表都被替换的改动
+     */
+    public Damage load(String newSource) {
+        final var removed = tokens.size();
+        source.clear();
+        tokens.clear();
+        identifierCounts.clear();
+        final var damage = edit(0, 0, newSource);
+        return new Damage(0, removed, damage.insertedTokens());
+    }
+
+    /**
+     * 从文件中读取并完整地分析源代码
+     *
+     * @param path 文件路径
+     * @return 相当于整个 token 列表都被替换的改动
+     */
+    public Damage loadFile(String path) {
+        return load(FileUtils.readFile(path));
+    }
+
+    /**
+     * 将源代码中 [offset, offset + removedLength) 的部分替换为 inserted, 并增量地更新 token 列表
+     * <br>
+     * 除了重新分析的 token 之外, 代价只与这次编辑和上一次编辑的距离有关, 与源代码的长度无关
+     *
+     * @param offset        编辑开始的位置
+     * @param removedLength 被删除的字符数
+     * @param inserted      插入的文本
+     * @return 这次编辑对 token 列表造成的改动, EOF 不计入其中
+     */
+    public Damage edit(int offset, int removedLength, String inserted) {
+        if (offset < 0 || removedLength < 0 || offset + removedLength > source.length()) {
+            throw new IndexOutOfBoundsException("Illegal edit [%d, %d) on source of length %d"
+                .formatted(offset, offset + removedLength, source.length()));
+        }
+
+        // 结束位置不早于编辑位置的第一个 token 都可能受影响: 紧挨着编辑位置的 token 有可能和新文本连成一个 token
+        // 把 token 的间隙移到这里, 之后的 token 的位置相对于源代码的末尾保存, 编辑源代码之后自然就平移到了新的位置
+        final var oldCount = tokens.size();
+        final var first = firstTokenEndingAtOrAfter(offset);
+        // 从跨过编辑位置的 token 的起点开始重新分析; 必须在编辑源代码之前读取, 被删除的 token 的位置在编辑之后就没有意义了
+        var pos = first < oldCount ? Math.min(tokens.start(first, source.length()), offset) : offset;
+        tokens.moveGap(first, source.length());
+        source.replace(offset, removedLength, inserted);
+
+        final var newEditEnd = offset + inserted.length();
+        final var length = source.length();
+
+        final var newTokens = new ArrayList<Token>();
+        final var newStarts = new IntList();
+        final var newEnds = new IntList();
+        var resync = first;
+        while (true) {
+            pos = skipWhitespace(pos);
+
+            // 越过编辑区域后, 若当前位置正好是某个旧 token 的起点, 之后的 token 就都与原来相同了
+            if (pos >= newEditEnd) {
+                while (resync < oldCount && tokens.start(resync, length) < pos) {
+                    resync++;
+                }
+                if (resync < oldCount && tokens.start(resync, length) == pos) {
+                    break;
+                }
+            }
+            if (pos >= length) {
+                resync = oldCount;
+                break;
+            }
+
+            final var end = scanToken(pos, newTokens);
+            newStarts.add(pos);
+            newEnds.add(end);
+            pos = end;
+        }
+
+        for (int i = first; i < resync; i++) {
+            countIdentifier(tokens.token(i), -1);
+        }
+        newTokens.forEach(token -> countIdentifier(token, 1));
+        tokens.replaceAtGap(resync - first, newTokens, newStarts, newEnds);
+        return new Damage(first, resync - first, newTokens.size());
+    }
+
+    /**
+     * @return 以 EOF 结尾的 token 列表的只读视图, 之后的编辑会反映在其中
+     */
+    public List<Token> getTokens() {
+        return view;
+    }
+
+    /**
+     * @return 当前的源代码, 每次调用都会构造一个新的字符串
+     */
+    public String getSource() {
+        return source.toString();
+    }
+
+    /**
+     * @param index token 下标
+     * @return 该 token 在源代码中的起始位置
+     */
+    public int getStart(int index) {
+        return index < tokens.size() ? tokens.start(index, source.length()) : source.length();
+    }
+
+    /**
+     * @return 一张新的符号表, 其中包含当前源代码中的所有标识符, 与对整个源代码执行 LexicalAnalyzer 得到的符号表相同
+     */
+    public SymbolTable buildSymbolTable() {
+        final var symbolTable = new SymbolTable();
+        identifierCounts.keySet().forEach(symbolTable::add);
+        return symbolTable;
+    }
+
+    public void dumpTokens(String path) {
+        try (final var writer = FileUtils.openWriter(path)) {
+            for (int i = 0; i < tokens.size(); i++) {
+                LexicalAnalyzer.writeToken(writer, tokens.token(i));
+            }
+            LexicalAnalyzer.writeToken(writer, Token.eof());
+        }
+    }
+
+    private int firstTokenEndingAtOrAfter(int offset) {
+        // token 的结束位置单调递增, 二分查找
+        final var length = source.length();
+        int low = 0, high = tokens.size();
+        while (low < high) {
+            final var mid = (low + high) >>> 1;
+            if (tokens.end(mid, length) < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int skipWhitespace(int pos) {
+        while (pos < source.length()) {
+            final var c = source.codePointAt(pos);
+            if (!Character.isWhitespace(c)) {
+                break;
+            }
+            pos += Character.charCount(c);
+        }
+        return pos;
+    }
+
+    /**
+     * 从 pos 开始识别一个 token, 规则与 LexicalAnalyzer 相同
+     *
+     * @return token 的结束位置
+     */
+    private int scanToken(int pos, List<Token> out) {
+        // token 的位置会随编辑平移, 由 starts 保存, token 本身不带位置
+        final var c = source.codePointAt(pos);
+        var end = pos + Character.charCount(c);
+        if (Character.isLetter(c) || c == '_') {
+            while (end < source.length() && Character.isLetterOrDigit(source.codePointAt(end))) {
+                end += Character.charCount(source.codePointAt(end));
+            }
+            out.add(LexicalAnalyzer.identifierToken(source.substring(pos, end), Token.NO_OFFSET));
+        } else if (Character.isDigit(c)) {
+            while (end < source.length() && Character.isDigit(source.codePointAt(end))) {
+                end += Character.charCount(source.codePointAt(end));
+            }
+            out.add(Token.normal("IntConst", source.substring(pos, end)));
+        } else {
+            // 空白字符已被跳过, 这里不会返回 null
+            out.add(LexicalAnalyzer.punctuationToken(c, pos, Token.NO_OFFSET, null));
+        }
+        return end;
+    }
+
+    private void countIdentifier(Token token, int change) {
+        // 源代码中的 "id" 会被识别为不带文本的关键字, 不属于符号表
+        if (token.getKindId().equals("id") && !token.getText().isEmpty()) {
+            identifierCounts.merge(token.getText(), change, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+
+    /**
+     * 带间隙的字符数组: 间隙总是移动到编辑的位置, 因此连续在同一处附近的编辑只移动很少的字符
+     */
+    private static final class TextBuffer {
+        private char[] data = new char[64];
+        // data[gapStart, gapEnd) 为间隙
+        private int gapStart = 0;
+        private int gapEnd = data.length;
+
+        int length() {
+            return data.length - (gapEnd - gapStart);
+        }
+
+        char charAt(int index) {
+            return index < gapStart ? data[index] : data[index + gapEnd - gapStart];
+        }
+
+        int codePointAt(int index) {
+            final var high = charAt(index);
+            if (Character.isHighSurrogate(high) && index + 1 < length()) {
+                final var low = charAt(index + 1);
+                if (Character.isLowSurrogate(low)) {
+                    return Character.toCodePoint(high, low);
+                }
+            }
+            return high;
+        }
+
+        String substring(int begin, int end) {
+            final var builder = new StringBuilder(end - begin);
+            for (int i = begin; i < end; i++) {
+                builder.append(charAt(i));
+            }
+            return builder.toString();
+        }
+
+        void clear() {
+            gapStart = 0;
+            gapEnd = data.length;
+        }
+
+        /**
+         * 把 [offset, offset + removedLength) 替换为 inserted
+         */
+        void replace(int offset, int removedLength, String inserted) {
+            moveGap(offset);
+            gapEnd += removedLength;
+            if (gapEnd - gapStart < inserted.length()) {
+                final var tail = data.length - gapEnd;
+                final var grown = new char[Math.max(data.length * 2, length() + inserted.length() + 64)];
+                System.arraycopy(data, 0, grown, 0, gapStart);
+                System.arraycopy(data, gapEnd, grown, grown.length - tail, tail);
+                gapEnd = grown.length - tail;
+                data = grown;
+            }
+            inserted.getChars(0, inserted.length(), data, gapStart);
+            gapStart += inserted.length();
+        }
+
+        private void moveGap(int index) {
+            if (index < gapStart) {
+                final var count = gapStart - index;
+                System.arraycopy(data, index, data, gapEnd - count, count);
+                gapStart -= count;
+                gapEnd -= count;
+            } else if (index > gapStart) {
+                final var count = index - gapStart;
+                System.arraycopy(data, gapEnd, data, gapStart, count);
+                gapStart += count;
+                gapEnd += count;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new String(data, 0, gapStart) + new String(data, gapEnd, data.length - gapEnd);
+        }
+    }
+
+    /**
+     * 带间隙的 token 数组, 同时保存每个 token 的起止位置.
+     * 间隙之前的 token 保存绝对位置, 间隙之后的 token 保存到源代码末尾的距离, 因此在间隙处编辑源代码时不需要平移之后的 token.
+     * 读取位置时需要给出源代码当前的长度.
+     */
+    private static final class TokenStore {
+        private Token[] tokens = new Token[16];
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int gapStart = 0;
+        private int gapEnd = tokens.length;
+
+        int size() {
+            return tokens.length - (gapEnd - gapStart);
+        }
+
+        Token token(int index) {
+            return tokens[physical(index)];
+        }
+
+        int start(int index, int length) {
+            return index < gapStart ? starts[index] : length - starts[physical(index)];
+        }
+
+        int end(int index, int length) {
+            return index < gapStart ? ends[index] : length - ends[physical(index)];
+        }
+
+        void clear() {
+            Arrays.fill(tokens, null);
+            gapStart = 0;
+            gapEnd = tokens.length;
+        }
+
+        /**
+         * 把间隙移到第 index 个 token 之前, 移过的 token 按源代码当前的长度换算位置
+         */
+        void moveGap(int index, int length) {
+            while (gapStart > index) {
+                gapStart--;
+                gapEnd--;
+                moveEntry(gapStart, gapEnd, length);
+            }
+            while (gapStart < index) {
+                moveEntry(gapEnd, gapStart, length);
+                gapStart++;
+                gapEnd++;
+            }
+        }
+
+        /**
+         * 删除间隙之后的 removed 个 token, 并在间隙处插入新 token, 新 token 的位置为绝对位置
+         */
+        void replaceAtGap(int removed, List<Token> inserted, IntList insertedStarts, IntList insertedEnds) {
+            for (int i = 0; i < removed; i++) {
+                tokens[gapEnd++] = null;
+            }
+            if (gapEnd - gapStart < inserted.size()) {
+                final var tail = tokens.length - gapEnd;
+                final var capacity = Math.max(tokens.length * 2, size() + inserted.size() + 16);
+                final var grownTokens = new Token[capacity];
+                final var grownStarts = new int[capacity];
+                final var grownEnds = new int[capacity];
+                copyAroundGap(tokens, grownTokens, capacity, tail);
+                copyAroundGap(starts, grownStarts, capacity, tail);
+                copyAroundGap(ends, grownEnds, capacity, tail);
+                tokens = grownTokens;
+                starts = grownStarts;
+                ends = grownEnds;
+                gapEnd = capacity - tail;
+            }
+            for (int i = 0; i < inserted.size(); i++) {
+                tokens[gapStart] = inserted.get(i);
+                starts[gapStart] = insertedStarts.get(i);
+                ends[gapStart] = insertedEnds.get(i);
+                gapStart++;
+            }
+        }
+
+        private int physical(int index) {
+            return index < gapStart ? index : index + gapEnd - gapStart;
+        }
+
+        private void moveEntry(int from, int to, int length) {
+            tokens[to] = tokens[from];
+            tokens[from] = null;
+            // 绝对位置与到末尾的距离互相换算的方式相同
+            starts[to] = length - starts[from];
+            ends[to] = length - ends[from];
+        }
+
+        /**
+         * 把间隙之前的部分与之后的 tail 个元素分别复制到新数组的开头与末尾
+         */
+        private void copyAroundGap(Object from, Object to, int capacity, int tail) {
+            System.arraycopy(from, 0, to, 0, gapStart);
+            System.arraycopy(from, gapEnd, to, capacity - tail, tail);
+        }
+    }
+
+    /**
+     * 简单的可增长 int 数组, 避免装箱
+     */
+    private static final class IntList {
+        private int[] data = new int[16];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int index) {
+            return data[index];
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 由码点文件生成的词法分析 DFA
+ * <br>
+ * 所有 token 的规则都从 {@link TokenKind#allAllowedTokenKinds()} 中得到:
+ * <ul>
+ *     <li>形如标识符的名字 (如 int, return, 以及 id, IntConst, Semicolon 本身) 是关键字, 识别为不带文本的 token</li>
+ *     <li>其它名字 (如 +, =) 按字面识别为不带文本的 token; 另外 Semicolon 还可以写作 ;</li>
+ *     <li>id 与 IntConst 分别识别标识符与整数常量, 带有源文本</li>
+ *     <li>空白字符被跳过</li>
+ * </ul>
+ * 这些规则先构造为 NFA, 经子集构造得到 DFA 并最小化, 最后存为以 {@code 状态 * 256 + 字节} 为下标的稠密转移表.
+ * 关键字的识别被合并在 DFA 之中, 分析时不需要对每个标识符再查一次表. 扫描时按最长匹配划分 token,
+ * 同样长时关键字优先于标识符, 与 {@link LexicalAnalyzer} 原有的规则完全一致.
+ * <br>
+ * 对于在某一类字符上自环的状态 (如标识符, 整数常量与空白字符), 扫描时用 {@link SwarScanner} 一次判断 8 个字节,
+ * 整段跳过这些字符, 而不必逐字节查表.
+ * <br>
+ * DFA 只处理 ASCII 输入, 非 ASCII 的输入仍由 LexicalAnalyzer 逐个码点分析.
+ */
+public final class LexerDfa {
+    private static final int ALPHABET = 256;
+    private static final int NO_TRANSITION = -1;
+    // 接受动作: 非负数为规则的下标, 以及下面两个特殊值
+    private static final int REJECT = -1;
+    private static final int SKIP = -2;
+    // 写法与名字不同的字面 token
+    private static final Map<String, String> ALIASES = Map.of("Semicolon", ";");
+
+    // 与 GrammarInfo 相同的懒加载单例, 需在读取码点文件之后使用
+    private static LexerDfa instance = null;
+
+    /**
+     * @return 由已读取的码点文件生成的 DFA
+     */
+    public static synchronized LexerDfa getInstance() {
+        if (instance == null) {
+            instance = build(TokenKind.allAllowedTokenKinds());
+        }
+        return instance;
+    }
+
+    /**
+     * 由给定的 token 类型生成 DFA
+     *
+     * @param kinds 标识符到 TokenKind 的 Map, 其中的 EOF 会被忽略
+     * @return 最小化的 DFA
+     */
+    public static LexerDfa build(Map<String, TokenKind> kinds) {
+        final var nfa = new Nfa();
+
+        // 规则的优先级即其在列表中的顺序, 同样长的匹配取下标最小的规则
+        final var rules = new ArrayList<Rule>();
+        final var names = kinds.keySet().stream().sorted().toList();
+        for (final var name : names) {
+            final var kind = kinds.get(name);
+            if (kind == TokenKind.eof()) {
+                continue;
+            }
+            nfa.addLiteral(name, rules.size());
+            rules.add(new Rule(kind, false));
+            if (ALIASES.containsKey(name)) {
+                nfa.addLiteral(ALIASES.get(name), rules.size());
+                rules.add(new Rule(kind, false));
+            }
+        }
+        if (kinds.containsKey("IntConst")) {
+            nfa.addRepeat(charClass(Character::isDigit), charClass(Character::isDigit), rules.size());
+            rules.add(new Rule(kinds.get("IntConst"), true));
+        }
+        if (kinds.containsKey("id")) {
+            nfa.addRepeat(charClass(c -> Character.isLetter(c) || c == '_'), charClass(Character::isLetterOrDigit),
+                rules.size());
+            rules.add(new Rule(kinds.get("id"), true));
+        }
+        nfa.addRepeat(charClass(Character::isWhitespace), charClass(Character::isWhitespace), SKIP);
+
+        return minimize(nfa.toDfa(), rules);
+    }
+
+    private LexerDfa(int[] transitions, int[] accepts, List<Rule> rules, boolean runKernels) {
+        this.transitions = transitions;
+        this.accepts = accepts;
+        this.rules = rules;
+        this.runs = new SwarScanner.CharClass[accepts.length];
+        if (runKernels) {
+            for (int state = 0; state < accepts.length; state++) {
+                runs[state] = selfLoopClass(state);
+            }
+        }
+        this.ruleKinds = new TokenKind[rules.size()];
+        this.ruleTexts = new boolean[rules.size()];
+        this.simpleTokens = new Token[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            ruleKinds[i] = rules.get(i).kind();
+            ruleTexts[i] = rules.get(i).withText();
+            // 不带文本的 token 是不可变的, 同一规则的所有 token 共享同一个实例
+            simpleTokens[i] = rules.get(i).withText() ? null : Token.simple(ruleKinds[i]);
+        }
+        this.idKind = rules.stream()
+            .filter(rule -> rule.withText() && rule.kind().getIdentifier().equals("id"))
+            .map(Rule::kind)
+            .findFirst().orElse(null);
+    }
+
+    // 状态 0 为初始状态
+    private final int[] transitions;
+    private final int[] accepts;
+    private final List<Rule> rules;
+    // 各状态自环上的字符类别, 为 null 时逐字节查表
+    private final SwarScanner.CharClass[] runs;
+    private final TokenKind[] ruleKinds;
+    private final boolean[] ruleTexts;
+    private final Token[] simpleTokens;
+    private final TokenKind idKind;
+
+    /**
+     * @return 转移表相同, 但总是逐字节查表的 DFA, 用于对比测试
+     */
+    public LexerDfa withoutRunKernels() {
+        return new LexerDfa(transitions, accepts, rules, false);
+    }
+
+    /**
+     * @return 该状态的自环恰好是某个能够加速的字符类别时返回该类别, 否则返回 null
+     */
+    private SwarScanner.CharClass selfLoopClass(int state) {
+        for (int c = 128; c < ALPHABET; c++) {
+            if (transitions[state * ALPHABET + c] == state) {
+                return null;
+            }
+        }
+        for (final var charClass : SwarScanner.CharClass.values()) {
+            final var bytes = charClass.bytes();
+            var matches = true;
+            for (int c = 0; c < bytes.length && matches; c++) {
+                matches = bytes[c] == (transitions[state * ALPHABET + c] == state);
+            }
+            if (matches) {
+                return charClass;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return DFA 的状态数
+     */
+    public int stateCount() {
+        return accepts.length;
+    }
+
+    /**
+     * 分析 ASCII 输入中 [from, to) 的部分, 不添加 EOF
+     *
+     * @param out          识别出的 token; 带文本的 token 带有位置, 不带文本的 token 共享同一个不带位置的实例
+     * @param onIdentifier 每识别出一个 (非关键字的) 标识符就被调用一次
+     * @return 无法识别的 token 的起始位置, 分析在此处停止; 若没有则返回 -1
+     */
+    int scan(ByteBuffer content, int from, int to, List<Token> out, Consumer<String> onIdentifier) {
+        return scan(content, from, to, (rule, begin, end) -> {
+            if (ruleTexts[rule]) {
+                final var text = LexicalAnalyzer.asciiText(content, begin, end);
+                out.add(Token.normal(ruleKinds[rule], text, begin));
+                if (ruleKinds[rule] == idKind) {
+                    onIdentifier.accept(text);
+                }
+            } else {
+                out.add(simpleTokens[rule]);
+            }
+        });
+    }
+
+    /**
+     * 分析 ASCII 输入中 [from, to) 的部分, 结果直接写入紧凑的词法单元流, 不添加 EOF
+     *
+     * @param out          词法单元流的构造器, 其源代码应为 content
+     * @param onIdentifier 每个 (非关键字的) 标识符第一次出现时被调用一次
+     * @return 无法识别的 token 的起始位置, 分析在此处停止; 若没有则返回 -1
+     */
+    int scan(ByteBuffer content, int from, int to, TokenBuffer.Builder out, Consumer<String> onIdentifier) {
+        return scan(content, from, to, (rule, begin, end) -> {
+            if (!ruleTexts[rule]) {
+                out.addSimple(ruleKinds[rule], begin);
+            } else if (ruleKinds[rule] == idKind) {
+                final var text = LexicalAnalyzer.asciiText(content, begin, end);
+                if (out.addText(ruleKinds[rule], text, begin)) {
+                    onIdentifier.accept(text);
+                }
+            } else {
+                out.addLexeme(ruleKinds[rule], begin, end - begin);
+            }
+        });
+    }
+
+    /**
+     * 接收扫描出的 token
+     */
+    private interface Sink {
+        /**
+         * @param rule  匹配的规则
+         * @param begin token 的起始位置
+         * @param end   token 的结束位置 (不含)
+         */
+        void accept(int rule, int begin, int end);
+    }
+
+    private int scan(ByteBuffer content, int from, int to, Sink sink) {
+        final var bigEndian = content.order() == ByteOrder.BIG_ENDIAN;
+        int pos = from;
+        while (pos < to) {
+            // 最长匹配: 一直走到没有转移为止, 记住最后一个接受状态
+            var state = 0;
+            var accept = REJECT;
+            var end = pos;
+            for (int p = pos; p < to; ) {
+                state = transitions[(state << 8) | (content.get(p) & 0xFF)];
+                if (state == NO_TRANSITION) {
+                    break;
+                }
+                p++;
+                if (runs[state] != null) {
+                    // 自环上的字符不会改变状态, 整段跳过
+                    p = SwarScanner.skip(runs[state], content, bigEndian, p, to);
+                }
+                if (accepts[state] != REJECT) {
+                    accept = accepts[state];
+                    end = p;
+                }
+            }
+
+            if (accept == REJECT) {
+                return pos;
+            }
+            if (accept != SKIP) {
+                sink.accept(accept, pos, end);
+            }
+            pos = end;
+        }
+        return -1;
+    }
+
+    /**
+     * @param kind     识别出的 token 类型
+     * @param withText token 是否带有源文本
+     */
+    private record Rule(TokenKind kind, boolean withText) {
+    }
+
+    private interface CharPredicate {
+        boolean test(int c);
+    }
+
+    private static BitSet charClass(CharPredicate predicate) {
+        final var result = new BitSet(ALPHABET);
+        for (int c = 0; c < 128; c++) {
+            if (predicate.test(c)) {
+                result.set(c);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 没有 ε 转移的 NFA, 所有规则共享状态 0 作为初始状态
+     */
+    private static final class Nfa {
+        private final List<BitSet[]> edges = new ArrayList<>();
+        private final List<Integer> accepts = new ArrayList<>();
+
+        Nfa() {
+            newState(REJECT);
+        }
+
+        private int newState(int accept) {
+            final var edgesOfState = new BitSet[ALPHABET];
+            edges.add(edgesOfState);
+            accepts.add(accept);
+            return edges.size() - 1;
+        }
+
+        private void addEdge(int from, int c, int to) {
+            final var targets = edges.get(from);
+            if (targets[c] == null) {
+                targets[c] = new BitSet();
+            }
+            targets[c].set(to);
+        }
+
+        void addLiteral(String text, int rule) {
+            if (!text.chars().allMatch(c -> c < 128)) {
+                throw new RuntimeException("Non-ASCII token name: " + text);
+            }
+            var state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                final var next = newState(i == text.length() - 1 ? rule : REJECT);
+                addEdge(state, text.charAt(i), next);
+                state = next;
+            }
+        }
+
+        /**
+         * 添加形如 first rest* 的规则
+         */
+        void addRepeat(BitSet first, BitSet rest, int rule) {
+            final var state = newState(rule);
+            first.stream().forEach(c -> addEdge(0, c, state));
+            rest.stream().forEach(c -> addEdge(state, c, state));
+        }
+
+        /**
+         * 子集构造
+         */
+        Dfa toDfa() {
+            final var stateIds = new HashMap<BitSet, Integer>();
+            final var sets = new ArrayList<BitSet>();
+            final var initial = new BitSet();
+            initial.set(0);
+            stateIds.put(initial, 0);
+            sets.add(initial);
+
+            final var transitions = new ArrayList<int[]>();
+            final var dfaAccepts = new ArrayList<Integer>();
+            for (int i = 0; i < sets.size(); i++) {
+                final var set = sets.get(i);
+                final var row = new int[ALPHABET];
+                Arrays.fill(row, NO_TRANSITION);
+                for (int c = 0; c < ALPHABET; c++) {
+                    final var target = new BitSet();
+                    for (var s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                        final var targets = edges.get(s)[c];
+                        if (targets != null) {
+                            target.or(targets);
+                        }
+                    }
+                    if (target.isEmpty()) {
+                        continue;
+                    }
+                    final var id = stateIds.computeIfAbsent(target, key -> {
+                        sets.add(key);
+                        return sets.size() - 1;
+                    });
+                    row[c] = id;
+                }
+                transitions.add(row);
+                dfaAccepts.add(acceptOf(set));
+            }
+            return new Dfa(transitions, dfaAccepts);
+        }
+
+        /**
+         * @return 状态集合中优先级最高的接受动作
+         */
+        private int acceptOf(BitSet set) {
+            var result = REJECT;
+            for (var s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                final int accept = accepts.get(s);
+                if (accept == REJECT) {
+                    continue;
+                }
+                if (result == REJECT || result == SKIP || (accept != SKIP && accept < result)) {
+                    result = accept;
+                }
+            }
+            return result;
+        }
+    }
+
+    private record Dfa(List<int[]> transitions, List<Integer> accepts) {
+    }
+
+    /**
+     * Moore 算法最小化: 先按接受动作划分状态, 再按各字节转移到的划分不断细分, 直到不再变化
+     */
+    private static LexerDfa minimize(Dfa dfa, List<Rule> rules) {
+        final var count = dfa.accepts().size();
+        final var block = new int[count];
+        var blockCount = partition(count, state -> List.of(dfa.accepts().get(state)), block);
+
+        while (true) {
+            final var previous = block.clone();
+            final var newCount = partition(count, state -> {
+                final var signature = new ArrayList<Integer>(ALPHABET + 1);
+                signature.add(previous[state]);
+                for (final var target : dfa.transitions().get(state)) {
+                    signature.add(target == NO_TRANSITION ? NO_TRANSITION : previous[target]);
+                }
+                return signature;
+            }, block);
+            if (newCount == blockCount) {
+                break;
+            }
+            blockCount = newCount;
+        }
+
+        // 初始状态所在的划分编号为 0, 因为 partition 按状态顺序编号
+        final var transitions = new int[blockCount * ALPHABET];
+        final var accepts = new int[blockCount];
+        for (int state = 0; state < count; state++) {
+            final var row = dfa.transitions().get(state);
+            for (int c = 0; c < ALPHABET; c++) {
+                transitions[block[state] * ALPHABET + c] = row[c] == NO_TRANSITION ? NO_TRANSITION : block[row[c]];
+            }
+            accepts[block[state]] = dfa.accepts().get(state);
+        }
+        return new LexerDfa(transitions, accepts, rules, true);
+    }
+
+    private interface Signature {
+        List<Integer> of(int state);
+    }
+
+    /**
+     * 按签名把状态分组, 组号按首次出现的顺序编号
+     *
+     * @return 组数
+     */
+    private static int partition(int count, Signature signature, int[] block) {
+        final var ids = new HashMap<List<Integer>, Integer>();
+        for (int state = 0; state < count; state++) {
+            block[state] = ids.computeIfAbsent(signature.of(state), key -> ids.size());
+        }
+        return ids.size();
+    }
+}
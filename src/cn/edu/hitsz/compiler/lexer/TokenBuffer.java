@@ -0,0 +1,358 @@
+package cn.edu.hitsz.compiler.lexer;
+
+import cn.edu.hitsz.compiler.utils.ChannelWriter;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * 紧凑的词法单元流
+ * <br>
+ * 每个 token 压缩为一个 long: 高 8 位为类型编号, 其后 2 位为标志, 再后 22 位为附加值, 低 32 位为 token 在源代码中的位置 (见 {@link Token#getOffset()}).
+ * 附加值的含义取决于 token 的来源:
+ * <ul>
+ *     <li>标识符: 在本缓冲区字符串表中的编号, 同一个标识符只保存一次</li>
+ *     <li>源代码中的整数常量: 字面长度, 文本与数值都在需要时直接从源代码中读取</li>
+ *     <li>其它带文本的 token (如由 token 列表转换而来时): 在字符串表中的编号, 位置取自原来的 Token</li>
+ *     <li>不带文本的 token: 0</li>
+ * </ul>
+ * 字符串表的编号超出附加值的范围时 (超过 400 万个不同的标识符), 附加值取最大值, 真正的编号存放在与 long 数组平行的 int 数组中,
+ * 该数组在第一次需要时才分配.
+ * 语法分析只需要读取类型编号, {@link Token} 对象只在移入时以及输出 token 流时才被构造出来.
+ * 对于大文件, 这比保存每个 Token 对象及其文本节省了大部分的内存.
+ */
+public final class TokenBuffer {
+    /**
+     * 位置未知, 例如由不带位置的 Token 转换而来时
+     */
+    public static final int NO_OFFSET = Token.NO_OFFSET;
+
+    private static final int PAYLOAD_BITS = 22;
+    private static final int MAX_PAYLOAD = (1 << PAYLOAD_BITS) - 1;
+    // 字符串表编号的附加值为该值时, 编号存放在 wideIds 中
+    private static final int WIDE_ID = MAX_PAYLOAD;
+    // 附加值为字符串表编号 (标识符, 或不在源代码中的文本)
+    private static final long STRING_FLAG = 1L << 55;
+    // 附加值为源代码中字面文本的长度
+    private static final long LEXEME_FLAG = 1L << 54;
+
+    // 与 GrammarInfo 相同的懒加载: 所有 TokenKind 按码点排序后的编号, 需在读取码点文件之后使用
+    private static TokenKind[] kindTable = null;
+    private static Map<TokenKind, Integer> kindIndices = null;
+
+    private static synchronized TokenKind[] kindTable() {
+        if (kindTable == null) {
+            final var kinds = TokenKind.allAllowedTokenKinds().values().stream()
+                .sorted(Comparator.comparingInt(TokenKind::getCode))
+                .toArray(TokenKind[]::new);
+            if (kinds.length > 1 << Byte.SIZE) {
+                throw new RuntimeException("Too many token kinds for TokenBuffer: " + kinds.length);
+            }
+            final var indices = new IdentityHashMap<TokenKind, Integer>();
+            for (int i = 0; i < kinds.length; i++) {
+                indices.put(kinds[i], i);
+            }
+            kindIndices = indices;
+            kindTable = kinds;
+        }
+        return kindTable;
+    }
+
+    private static synchronized Map<TokenKind, Integer> kindIndices() {
+        kindTable();
+        return kindIndices;
+    }
+
+    /**
+     * 由 token 序列构造, 与词法分析得到的词法单元流一样压缩保存, 不保留原有的 Token 对象;
+     * 之后由 {@link #token(int)} 得到的是内容相同的新对象, 其中不带文本的 token 不带位置
+     *
+     * @param tokens token 序列
+     * @return 对应的词法单元流
+     */
+    public static TokenBuffer of(Iterable<Token> tokens) {
+        final var builder = new Builder(null, tokens instanceof Collection<Token> collection ? collection.size() : 16);
+        for (final var token : tokens) {
+            if (token.getText().isEmpty()) {
+                builder.addSimple(token.getKind(), token.getOffset());
+            } else {
+                builder.addText(token.getKind(), token.getText(), token.getOffset());
+            }
+        }
+        return builder.build();
+    }
+
+    private TokenBuffer(long[] data, int[] wideIds, int size, ByteBuffer source, String[] strings) {
+        this.kinds = kindTable();
+        this.data = data;
+        this.wideIds = wideIds;
+        this.size = size;
+        this.source = source;
+        this.strings = strings;
+        this.simpleTokens = new Token[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            simpleTokens[i] = Token.simple(kinds[i]);
+        }
+    }
+
+    private final TokenKind[] kinds;
+    private final long[] data;
+    // 编号超出附加值范围的字符串表编号, 以 token 下标为下标; 没有这样的编号时为 null
+    private final int[] wideIds;
+    private final int size;
+    private final ByteBuffer source;
+    private final String[] strings;
+    // 不带文本的 token 是不可变的, 同一类型共享同一个实例
+    private final Token[] simpleTokens;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index token 下标
+     * @return 该 token 的类型
+     */
+    public TokenKind kind(int index) {
+        return kinds[(int) (entry(index) >>> 56)];
+    }
+
+    /**
+     * @param index token 下标
+     * @return 该 token 在源代码中的位置, 未知时为 {@link #NO_OFFSET}
+     */
+    public int offset(int index) {
+        return (int) entry(index);
+    }
+
+    /**
+     * @param index token 下标
+     * @return 该 token 的文本, 不带文本的 token 为空字符串
+     */
+    public String text(int index) {
+        final var entry = entry(index);
+        final var payload = payload(entry);
+        final var offset = (int) entry;
+        if (isLexeme(entry)) {
+            return LexicalAnalyzer.asciiText(source, offset, offset + payload);
+        }
+        return hasString(entry) ? strings[stringId(index, entry)] : "";
+    }
+
+    /**
+     * 直接从源代码中读取整数常量的值, 不构造字符串
+     *
+     * @param index IntConst token 的下标
+     * @return 该整数常量的值
+     * @throws NumberFormatException 值超出 int 的范围
+     */
+    public int intValue(int index) {
+        final var entry = entry(index);
+        if (!isLexeme(entry)) {
+            return Integer.parseInt(text(index));
+        }
+        final var begin = (int) entry;
+        final var end = begin + payload(entry);
+        long value = 0;
+        for (int i = begin; i < end; i++) {
+            value = value * 10 + (source.get(i) - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw new NumberFormatException("For input string: \"" + text(index) + "\"");
+            }
+        }
+        return (int) value;
+    }
+
+    /**
+     * @param index token 下标
+     * @return 该 token 对应的 Token 对象; 不带文本的 token 共享同一个不带位置的实例
+     */
+    public Token token(int index) {
+        final var entry = entry(index);
+        if (!isLexeme(entry) && !hasString(entry)) {
+            return simpleTokens[(int) (entry >>> 56)];
+        }
+        return Token.normal(kind(index), text(index), offset(index));
+    }
+
+    /**
+     * @return 以 Token 对象访问的只读视图, 每次 get 时才构造 Token
+     */
+    public List<Token> asList() {
+        return new TokenList();
+    }
+
+    /**
+     * 以 Token::toString 的格式写出所有 token, 源代码中的文本直接逐字节写出
+     *
+     * @param writer 输出词法单元流的写入器, 调用者负责关闭
+     */
+    public void dump(ChannelWriter writer) {
+        for (int i = 0; i < size; i++) {
+            final var entry = data[i];
+            writer.write('(').write(kinds[(int) (entry >>> 56)].getIdentifier()).write(',');
+            if (isLexeme(entry)) {
+                final var offset = (int) entry;
+                final var end = offset + payload(entry);
+                for (int k = offset; k < end; k++) {
+                    writer.writeByte(source.get(k));
+                }
+            } else if (hasString(entry)) {
+                writer.write(strings[stringId(i, entry)]);
+            }
+            writer.write(')').newLine();
+        }
+    }
+
+    private long entry(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Token index " + index + " out of bounds for length " + size);
+        }
+        return data[index];
+    }
+
+    private int stringId(int index, long entry) {
+        final var payload = payload(entry);
+        return payload == WIDE_ID ? wideIds[index] : payload;
+    }
+
+    private static int payload(long entry) {
+        return (int) (entry >>> 32) & MAX_PAYLOAD;
+    }
+
+    private static boolean hasString(long entry) {
+        return (entry & STRING_FLAG) != 0;
+    }
+
+    private static boolean isLexeme(long entry) {
+        return (entry & LEXEME_FLAG) != 0;
+    }
+
+    private final class TokenList extends AbstractList<Token> implements RandomAccess {
+        @Override
+        public Token get(int index) {
+            return token(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * 逐个添加 token 以构造 TokenBuffer
+     */
+    static final class Builder {
+        private final ByteBuffer source;
+        private long[] data;
+        private int[] wideIds = null;
+        private int size = 0;
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final Map<TokenKind, Integer> kindIndices = kindIndices();
+
+        /**
+         * @param source   token 偏移所指向的源代码, 可以为 null
+         * @param capacity 初始容量
+         */
+        Builder(ByteBuffer source, int capacity) {
+            this.source = source;
+            this.data = new long[Math.max(capacity, 16)];
+        }
+
+        void addSimple(TokenKind kind, int offset) {
+            add(kind, 0, 0, offset);
+        }
+
+        /**
+         * 添加一个文本在字符串表中的 token, 如标识符
+         *
+         * @return 该文本是否第一次出现
+         */
+        boolean addText(TokenKind kind, String text, int offset) {
+            final var before = strings.size();
+            final int id = stringIds.computeIfAbsent(text, key -> {
+                strings.add(key);
+                return strings.size() - 1;
+            });
+            if (id < WIDE_ID) {
+                add(kind, STRING_FLAG, id, offset);
+            } else {
+                if (wideIds == null) {
+                    wideIds = new int[data.length];
+                }
+                add(kind, STRING_FLAG, WIDE_ID, offset);
+                wideIds[size - 1] = id;
+            }
+            return strings.size() != before;
+        }
+
+        /**
+         * 添加一个文本为源代码中 [offset, offset + length) 的 token, 如整数常量
+         */
+        void addLexeme(TokenKind kind, int offset, int length) {
+            add(kind, LEXEME_FLAG, length, offset);
+        }
+
+        /**
+         * 按顺序添加另一个词法单元流中的所有 token, 其源代码应与本构造器相同
+         *
+         * @param part     词法单元流
+         * @param onString part 中的字符串在本构造器中第一次出现时被调用一次
+         */
+        void append(TokenBuffer part, Consumer<String> onString) {
+            for (int i = 0; i < part.size; i++) {
+                final var entry = part.data[i];
+                if (hasString(entry)) {
+                    final var text = part.strings[part.stringId(i, entry)];
+                    if (addText(part.kinds[(int) (entry >>> 56)], text, (int) entry)) {
+                        onString.accept(text);
+                    }
+                } else {
+                    // 类型编号是全局的, 位置指向同一份源代码, 其余的 token 可以原样复制
+                    if (size == data.length) {
+                        grow(Math.max(size * 2, size + part.size - i));
+                    }
+                    data[size++] = entry;
+                }
+            }
+        }
+
+        TokenBuffer build() {
+            // 释放多余的容量, 词法单元流通常会保留到编译结束
+            if (size != data.length) {
+                grow(size);
+            }
+            return new TokenBuffer(data, wideIds, size, source, strings.toArray(String[]::new));
+        }
+
+        private void grow(int capacity) {
+            data = Arrays.copyOf(data, capacity);
+            if (wideIds != null) {
+                wideIds = Arrays.copyOf(wideIds, capacity);
+            }
+        }
+
+        private void add(TokenKind kind, long flags, int payload, int offset) {
+            if (payload > MAX_PAYLOAD) {
+                // 只有字面长度会超出: 字符串表编号超出范围时存放在 wideIds 中
+                throw new RuntimeException("Token lexeme too long for TokenBuffer: " + payload);
+            }
+            if (size == data.length) {
+                grow(size * 2);
+            }
+            data[size++] = ((long) kindIndices.get(kind) << 56) | flags | ((long) payload << 32) | (offset & 0xFFFFFFFFL);
+        }
+    }
+}
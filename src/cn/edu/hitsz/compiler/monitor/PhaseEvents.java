@@ -0,0 +1,160 @@
+package cn.edu.hitsz.compiler.monitor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 编译各阶段的 JDK Flight Recorder 事件
+ * <br>
+ * 每个阶段一个事件类型, 持续时间即该阶段的耗时, 字段为该阶段处理的对象数量. 没有开启录制时, 事件的 begin/commit 几乎没有开销.
+ * 录制方式例如 {@code java -XX:StartFlightRecording=filename=compile.jfr ...}, 事件位于 "Compiler" 分类下.
+ *
+ * @see PhaseReport
+ */
+public final class PhaseEvents {
+    private PhaseEvents() {
+    }
+
+    /**
+     * 所有阶段事件的基类
+     */
+    @Category("Compiler")
+    public abstract static class PhaseEvent extends Event {
+        /**
+         * @return 阶段名, 用于汇总报告
+         */
+        public abstract String phase();
+
+        /**
+         * @return 形如 "tokens=12 identifiers=3" 的计数描述, 用于汇总报告
+         */
+        public abstract String counts();
+    }
+
+    @Name("cn.edu.hitsz.compiler.TableGeneration")
+    @Label("LR Table Generation")
+    @Description("Build the LR table from the grammar")
+    public static final class TableGeneration extends PhaseEvent {
+        @Label("States")
+        public int states;
+
+        @Label("Productions")
+        public int productions;
+
+        @Override
+        public String phase() {
+            return "table";
+        }
+
+        @Override
+        public String counts() {
+            return "states=%d productions=%d".formatted(states, productions);
+        }
+    }
+
+    @Name("cn.edu.hitsz.compiler.Lex")
+    @Label("Lexical Analysis")
+    @Description("Tokenize the source and fill the symbol table")
+    public static final class Lex extends PhaseEvent {
+        @Label("Source")
+        public String source;
+
+        @Label("Tokens")
+        public int tokens;
+
+        @Label("Identifiers")
+        public int identifiers;
+
+        @Override
+        public String phase() {
+            return "lex";
+        }
+
+        @Override
+        public String counts() {
+            return "tokens=%d identifiers=%d".formatted(tokens, identifiers);
+        }
+    }
+
+    @Name("cn.edu.hitsz.compiler.Parse")
+    @Label("Parsing")
+    @Description("LR parsing with semantic analysis and IR generation")
+    public static final class Parse extends PhaseEvent {
+        @Label("Source")
+        public String source;
+
+        @Label("Shifts")
+        public long shifts;
+
+        @Label("Reductions")
+        public long reductions;
+
+        @Label("IR Instructions")
+        public int instructions;
+
+        @Override
+        public String phase() {
+            return "parse";
+        }
+
+        @Override
+        public String counts() {
+            return "shifts=%d reductions=%d instructions=%d".formatted(shifts, reductions, instructions);
+        }
+    }
+
+    @Name("cn.edu.hitsz.compiler.Emulate")
+    @Label("IR Emulation")
+    @Description("Emulate the IR to get the expected return value")
+    public static final class Emulate extends PhaseEvent {
+        @Label("Source")
+        public String source;
+
+        @Label("IR Instructions")
+        public int instructions;
+
+        @Override
+        public String phase() {
+            return "emulate";
+        }
+
+        @Override
+        public String counts() {
+            return "instructions=%d".formatted(instructions);
+        }
+    }
+
+    @Name("cn.edu.hitsz.compiler.Assemble")
+    @Label("Assembly Generation")
+    @Description("Register allocation, code generation and simulation of the generated assembly")
+    public static final class Assemble extends PhaseEvent {
+        @Label("Source")
+        public String source;
+
+        @Label("Instructions")
+        public long instructions;
+
+        @Label("Spills")
+        @Description("Stores to memory when running out of registers")
+        public long spills;
+
+        @Label("Reloads")
+        public long reloads;
+
+        @Label("Estimated Cycles")
+        public long cycles;
+
+        @Override
+        public String phase() {
+            return "assemble";
+        }
+
+        @Override
+        public String counts() {
+            return "instructions=%d spills=%d reloads=%d cycles=%d".formatted(instructions, spills, reloads, cycles);
+        }
+    }
+}
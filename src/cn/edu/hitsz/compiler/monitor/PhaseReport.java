@@ -0,0 +1,174 @@
+package cn.edu.hitsz.compiler.monitor;
+
+import cn.edu.hitsz.compiler.utils.ChannelWriter;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按阶段汇总的耗时, 内存分配与堆峰值报告
+ * <br>
+ * 每个阶段用 {@link #begin(PhaseEvents.PhaseEvent)} 开始, 关闭返回的 {@link Phase} 时结束, 同时发出对应的 JFR 事件.
+ * 分配的字节数由 ThreadMXBean 统计, 只包含调用线程 (并行的词法分析与语法分析在线程池中分配的内存不计入);
+ * 堆峰值为各堆内存池在该阶段中的峰值之和, 是整个堆峰值的上界. 由于要重置整个 JVM 的峰值统计, 同一时间只应有一个开启的报告.
+ * <br>
+ * {@link #disabled()} 得到的报告只发出 JFR 事件, 不做任何统计, 可以在并行编译中使用.
+ */
+public final class PhaseReport {
+    private static final PhaseReport DISABLED = new PhaseReport(false);
+
+    /**
+     * 一个阶段的统计
+     *
+     * @param phase          阶段名
+     * @param wallNanos      耗时
+     * @param allocatedBytes 调用线程分配的字节数, 不支持时为 -1
+     * @param peakHeapBytes  堆峰值
+     * @param counts         阶段处理的对象数量的描述
+     */
+    public record Row(String phase, long wallNanos, long allocatedBytes, long peakHeapBytes, String counts) {
+    }
+
+    private final boolean enabled;
+    private final List<Row> rows = new ArrayList<>();
+
+    public PhaseReport() {
+        this(true);
+    }
+
+    private PhaseReport(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return 只发出 JFR 事件而不做统计的报告
+     */
+    public static PhaseReport disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * 开始一个阶段
+     *
+     * @param event 该阶段的 JFR 事件, 计数字段在阶段结束前填写
+     * @return 该阶段, 关闭时结束
+     */
+    public <E extends PhaseEvents.PhaseEvent> Phase<E> begin(E event) {
+        return new Phase<>(event);
+    }
+
+    /**
+     * @return 已结束的各阶段, 按结束的顺序排列
+     */
+    public List<Row> getRows() {
+        return Collections.unmodifiableList(rows);
+    }
+
+    public void dump(String path) {
+        try (final var writer = FileUtils.openWriter(path)) {
+            dump(writer);
+        }
+    }
+
+    /**
+     * 以对齐的表格输出报告, 最后一行为合计
+     *
+     * @param writer 写入器, 调用者负责关闭
+     */
+    public void dump(ChannelWriter writer) {
+        final var format = "%-10s %10s %14s %14s  %s";
+        writer.writeLine(format.formatted("phase", "wall(ms)", "alloc(KiB)", "peak(KiB)", "counts"));
+        long wall = 0;
+        long allocated = 0;
+        long peak = 0;
+        for (final var row : rows) {
+            writer.writeLine(format.formatted(row.phase(), millis(row.wallNanos()), kibibytes(row.allocatedBytes()),
+                kibibytes(row.peakHeapBytes()), row.counts()));
+            wall += row.wallNanos();
+            allocated = allocated < 0 || row.allocatedBytes() < 0 ? -1 : allocated + row.allocatedBytes();
+            peak = Math.max(peak, row.peakHeapBytes());
+        }
+        writer.writeLine(format.formatted("total", millis(wall), kibibytes(allocated), kibibytes(peak), ""));
+    }
+
+    private static String millis(long nanos) {
+        return "%.3f".formatted(nanos / 1e6);
+    }
+
+    private static String kibibytes(long bytes) {
+        return bytes < 0 ? "n/a" : Long.toString(bytes >> 10);
+    }
+
+    /**
+     * 正在进行的阶段
+     */
+    public final class Phase<E extends PhaseEvents.PhaseEvent> implements AutoCloseable {
+        private final E event;
+        private final long beginNanos;
+        private final long beginAllocated;
+
+        private Phase(E event) {
+            this.event = event;
+            if (enabled) {
+                heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+                this.beginAllocated = allocatedBytes();
+                this.beginNanos = System.nanoTime();
+            } else {
+                this.beginAllocated = 0;
+                this.beginNanos = 0;
+            }
+            event.begin();
+        }
+
+        /**
+         * @return 该阶段的 JFR 事件, 用于填写计数
+         */
+        public E event() {
+            return event;
+        }
+
+        /**
+         * @return 计数是否会被用到; 否则可以跳过需要额外开销的计数
+         */
+        public boolean isMeasured() {
+            return enabled || event.isEnabled();
+        }
+
+        @Override
+        public void close() {
+            event.end();
+            if (event.shouldCommit()) {
+                event.commit();
+            }
+            if (enabled) {
+                final var wall = System.nanoTime() - beginNanos;
+                final var end = allocatedBytes();
+                final var allocated = beginAllocated < 0 || end < 0 ? -1 : end - beginAllocated;
+                final var peak = heapPools().stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+                rows.add(new Row(event.phase(), wall, allocated, peak, event.counts()));
+            }
+        }
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isValid())
+            .toList();
+    }
+
+    /**
+     * @return 当前线程累计分配的字节数, 不支持时为 -1
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+            && bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+            return bean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
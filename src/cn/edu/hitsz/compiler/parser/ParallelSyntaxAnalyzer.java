@@ -0,0 +1,307 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 按语句并行的 LR 语法分析驱动程序
+ * <br>
+ * 在文法 {@code S_list -> S Semicolon S_list} 中, 每移入一个顶层的 Semicolon 之后, 状态栈顶总是同一个状态,
+ * 之后的语句在分析时也只会用到这个状态之上的部分. 因此把 token 流在顶层 Semicolon 之后切分成若干块, 除第一条语句外,
+ * 每块都可以从这个状态出发独立地分析, 最后把各块留在栈上的状态依次拼接起来, 再顺序地分析剩下的部分直到接受.
+ * <br>
+ * 各块的动作先记录下来, 全部分析完成后再按原本的顺序在调用线程中回放给观察者, 所以观察者不需要是线程安全的,
+ * 得到的通知也与 {@link SyntaxAnalyzer} 完全相同. 若某一块在分析中需要读取起始状态之下的栈, 或出现了语法错误,
+ * 则放弃并行的结果, 交给 {@link SyntaxAnalyzer} 对整个 token 流顺序地重新分析, 错误的报告与恢复也都与之相同.
+ * <br>
+ * 相对于顺序分析的额外开销: 各块的动作先记录再回放, 回放时通过 {@link TokenBuffer#asList()} 为每次移入构造 Token 对象,
+ * 即所有动作都要走两遍; 任何一块失败 (包括有语法错误的输入) 都会在并行分析之后再顺序地分析整个 token 流.
+ * 多核上的加速尚未验证: 开发环境只有一个处理器, 只确认了输出与顺序分析相同, 耗时与顺序分析持平,
+ * 在多核机器上使用之前应先用 BatchMain -p 测量.
+ */
+public class ParallelSyntaxAnalyzer {
+    // 每块至少包含的 token 数量, 太小的块调度开销会超过分析本身
+    private static final int MIN_CHUNK_TOKENS = 1 << 14;
+    // 每个线程分到的块数, 多切几块以平衡各块长度的差异
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final SymbolTable symbolTable;
+    private final ForkJoinPool pool;
+    private final List<ActionObserver> observers = new ArrayList<>();
+    private final TokenKind boundary = TokenKind.fromString("Semicolon");
+    private final TokenKind leftParen = TokenKind.fromString("(");
+    private final TokenKind rightParen = TokenKind.fromString(")");
+
+    private TokenBuffer tokens = null;
+    private LRTable lrTable;
+    private boolean errorRecovery = false;
+    private NonTerminal recoveryStatement = null;
+    private TokenKind recoveryTerminator = null;
+    private List<SyntaxError> errors = List.of();
+
+    /**
+     * @param symbolTable 符号表
+     * @param pool        用于分析各块的线程池
+     */
+    public ParallelSyntaxAnalyzer(SymbolTable symbolTable, ForkJoinPool pool) {
+        this.symbolTable = symbolTable;
+        this.pool = pool;
+    }
+
+    /**
+     * 注册新的观察者
+     *
+     * @param observer 观察者
+     */
+    public void registerObserver(ActionObserver observer) {
+        observers.add(observer);
+        observer.setSymbolTable(symbolTable);
+    }
+
+    public void loadTokens(Iterable<Token> tokens) {
+        loadTokens(TokenBuffer.of(tokens));
+    }
+
+    /**
+     * 加载紧凑的词法单元流, 分析时直接读取其中的类型
+     *
+     * @param tokens 词法单元流
+     */
+    public void loadTokens(TokenBuffer tokens) {
+        this.tokens = tokens;
+    }
+
+    public void loadLRTable(LRTable table) {
+        this.lrTable = table;
+    }
+
+    /**
+     * @see SyntaxAnalyzer#setErrorRecovery(boolean)
+     */
+    public void setErrorRecovery(boolean errorRecovery) {
+        this.errorRecovery = errorRecovery;
+    }
+
+    /**
+     * @see SyntaxAnalyzer#setRecoverySymbols(NonTerminal, TokenKind)
+     */
+    public void setRecoverySymbols(NonTerminal statement, TokenKind terminator) {
+        this.recoveryStatement = statement;
+        this.recoveryTerminator = terminator;
+    }
+
+    /**
+     * @see SyntaxAnalyzer#getErrors()
+     */
+    public List<SyntaxError> getErrors() {
+        return errors;
+    }
+
+    public void run() {
+        SyntaxAnalyzer.checkObservers(observers, lrTable.getEliminatedProductions());
+        errors = List.of();
+        final var cuts = findCuts();
+        if (cuts.length < 2 || !runParallel(cuts)) {
+            runSequential();
+        }
+    }
+
+    /**
+     * @return 切分点, 即顶层 Semicolon 之后的 token 下标; 第一个切分点总在第一条语句之后
+     */
+    private int[] findCuts() {
+        final var chunkTokens = Math.max(MIN_CHUNK_TOKENS, tokens.size() / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        final var cuts = new ArrayList<Integer>();
+        var depth = 0;
+        var last = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            final var kind = tokens.kind(i);
+            if (kind.equals(leftParen)) {
+                depth++;
+            } else if (kind.equals(rightParen)) {
+                depth--;
+            } else if (depth == 0 && kind.equals(boundary) && (cuts.isEmpty() || i + 1 - last >= chunkTokens)) {
+                cuts.add(i + 1);
+                last = i + 1;
+            }
+        }
+        return cuts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return 是否成功地完成了并行分析; 失败时不会通知任何观察者
+     */
+    private boolean runParallel(int[] cuts) {
+        // 顺序地分析第一条语句, 得到各块共同的起始状态
+        final var stack = new StatusStack(lrTable.getInit());
+        final var prefix = new ParseTrace();
+        if (drive(stack, 0, cuts[0], prefix) != Outcome.DONE) {
+            return false;
+        }
+        final var base = stack.top();
+
+        final var tasks = new ArrayList<ForkJoinTask<Chunk>>(cuts.length - 1);
+        for (int i = 0; i + 1 < cuts.length; i++) {
+            final var from = cuts[i];
+            final var to = cuts[i + 1];
+            tasks.add(pool.submit(() -> parseChunk(base, from, to)));
+        }
+
+        final var chunks = new ArrayList<Chunk>(tasks.size());
+        var ok = true;
+        for (final var task : tasks) {
+            final var chunk = task.join();
+            ok &= chunk != null;
+            chunks.add(chunk);
+        }
+        if (!ok) {
+            return false;
+        }
+
+        // 拼接各块留在栈上的状态, 然后顺序地分析剩下的部分
+        for (final var chunk : chunks) {
+            stack.pushAll(chunk.residual);
+        }
+        final var tailStart = cuts[cuts.length - 1];
+        final var tail = new ParseTrace();
+        if (drive(stack, tailStart, tokens.size(), tail) == Outcome.FAILED) {
+            return false;
+        }
+
+        final var tokenList = tokens.asList();
+        prefix.replay(observers, tokenList, 0);
+        for (int i = 0; i < chunks.size(); i++) {
+            chunks.get(i).trace.replay(observers, tokenList, cuts[i]);
+        }
+        tail.replay(observers, tokenList, tailStart);
+        return true;
+    }
+
+    private void runSequential() {
+        final var parser = new SyntaxAnalyzer(symbolTable);
+        parser.loadTokens(tokens);
+        parser.loadLRTable(lrTable);
+        parser.setErrorRecovery(errorRecovery);
+        parser.setRecoverySymbols(recoveryStatement, recoveryTerminator);
+        observers.forEach(parser::registerObserver);
+        parser.run();
+        errors = parser.getErrors();
+    }
+
+    /**
+     * @return 该块的分析结果; 若该块无法独立地分析则返回 null
+     */
+    private Chunk parseChunk(Status base, int from, int to) {
+        final var stack = new StatusStack(base);
+        final var trace = new ParseTrace();
+        if (drive(stack, from, to, trace) != Outcome.DONE || !stack.top().equals(base)) {
+            return null;
+        }
+        return new Chunk(trace, stack.aboveBottom());
+    }
+
+    private enum Outcome {
+        // 分析完了给定范围内的所有 token
+        DONE,
+        ACCEPTED,
+        // 语法错误, 或规约需要弹出栈底的状态
+        FAILED
+    }
+
+    /**
+     * 从 from 开始分析, 直到移入了 to 之前的所有 token 或接受为止, 动作按相对于 from 的 token 下标记录在 trace 中
+     */
+    private Outcome drive(StatusStack stack, int from, int to, ParseTrace trace) {
+        var pos = from;
+        while (pos < to) {
+            final var status = stack.top();
+            final var action = lrTable.getAction(status, tokens.kind(pos));
+            switch (action.getKind()) {
+                case Shift -> {
+                    trace.addShift(status, pos - from);
+                    stack.push(action.getStatus());
+                    pos++;
+                }
+
+                case Reduce -> {
+                    final var production = action.getProduction();
+                    trace.addReduce(status, production);
+                    if (!stack.pop(production.body().size())) {
+                        return Outcome.FAILED;
+                    }
+                    stack.push(lrTable.getGoto(stack.top(), production.head()));
+                }
+
+                case Accept -> {
+                    trace.addAccept(status);
+                    return Outcome.ACCEPTED;
+                }
+
+                case Error -> {
+                    return Outcome.FAILED;
+                }
+            }
+        }
+        return Outcome.DONE;
+    }
+
+    private record Chunk(ParseTrace trace, Status[] residual) {
+    }
+
+    /**
+     * 数组实现的状态栈, 栈底的状态不能被弹出
+     */
+    private static final class StatusStack {
+        private Status[] data = new Status[64];
+        private int size = 0;
+
+        StatusStack(Status bottom) {
+            push(bottom);
+        }
+
+        Status top() {
+            return data[size - 1];
+        }
+
+        void push(Status status) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = status;
+        }
+
+        void pushAll(Status[] statuses) {
+            if (size + statuses.length > data.length) {
+                data = Arrays.copyOf(data, Math.max(size * 2, size + statuses.length));
+            }
+            System.arraycopy(statuses, 0, data, size, statuses.length);
+            size += statuses.length;
+        }
+
+        /**
+         * @return 是否成功弹出; 若需要弹出栈底则不做任何修改并返回 false
+         */
+        boolean pop(int count) {
+            if (count >= size) {
+                return false;
+            }
+            size -= count;
+            return true;
+        }
+
+        Status[] aboveBottom() {
+            return Arrays.copyOfRange(data, 1, size);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.ProductionUtils;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.ChannelWriter;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * 统计语法分析中各产生式与各状态被使用的次数, 用于判断文法的哪些改写值得做
+ * <br>
+ * 计数器都是以产生式编号 / 状态编号为下标的 long 数组, 每个动作只做几次数组自增.
+ * 单产生式 (体为单个非终结符, 如 {@code E -> A}) 的规约不消耗输入, 只是沿着单产生式链一路向上, 这里把两次移入或非单产生式规约之间
+ * 连续的单产生式规约记为一条链, 统计链长的分布: 链越长, 消除单产生式能省下的规约越多.
+ */
+public class ParseProfiler implements ActionObserver {
+    // 以产生式编号 (从 1 开始) 为下标
+    private long[] productionCounts = new long[16];
+    private Production[] productions = new Production[16];
+    // 以状态编号为下标
+    private long[] shifts = new long[64];
+    private long[] reductions = new long[64];
+    // 以链长为下标
+    private long[] chainLengths = new long[8];
+    private int currentChain = 0;
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        endChain();
+        shifts = grow(shifts, currentStatus.index());
+        shifts[currentStatus.index()]++;
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        reductions = grow(reductions, currentStatus.index());
+        reductions[currentStatus.index()]++;
+
+        final var index = production.index();
+        productionCounts = grow(productionCounts, index);
+        if (index >= productions.length) {
+            productions = Arrays.copyOf(productions, productionCounts.length);
+        }
+        productionCounts[index]++;
+        productions[index] = production;
+
+        if (ProductionUtils.isUnit(production)) {
+            currentChain++;
+        } else {
+            endChain();
+        }
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        endChain();
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // do nothing
+    }
+
+    /**
+     * @return 该产生式被规约的次数
+     */
+    public long getCount(Production production) {
+        final var index = production.index();
+        return index < productionCounts.length ? productionCounts[index] : 0;
+    }
+
+    /**
+     * @return 以状态编号为下标, 各状态作为栈顶时执行的移入与规约的次数之和
+     */
+    public long[] getStateVisits() {
+        final var length = Math.max(shifts.length, reductions.length);
+        final var visits = new long[length];
+        for (int i = 0; i < length; i++) {
+            visits[i] = at(shifts, i) + at(reductions, i);
+        }
+        return visits;
+    }
+
+    public long getShiftCount() {
+        return Arrays.stream(shifts).sum();
+    }
+
+    public long getReduceCount() {
+        return Arrays.stream(productionCounts).sum();
+    }
+
+    /**
+     * @return 单产生式规约的次数
+     */
+    public long getUnitReduceCount() {
+        long total = 0;
+        for (int i = 0; i < productions.length; i++) {
+            if (productions[i] != null && ProductionUtils.isUnit(productions[i])) {
+                total += productionCounts[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param length 链长, 至少为 1
+     * @return 该长度的单产生式链出现的次数
+     */
+    public long getChainCount(int length) {
+        return at(chainLengths, length);
+    }
+
+    public void dump(String path) {
+        try (final var writer = FileUtils.openWriter(path)) {
+            dump(writer);
+        }
+    }
+
+    /**
+     * 输出按次数从高到低排列的报告: 总览, 产生式, 状态与单产生式链长分布
+     *
+     * @param writer 写入器, 调用者负责关闭
+     */
+    public void dump(ChannelWriter writer) {
+        endChain();
+        final var reduceCount = getReduceCount();
+        final var shiftCount = getShiftCount();
+        final var unitCount = getUnitReduceCount();
+        writer.writeLine("shifts: %d, reductions: %d, unit reductions: %d (%s of reductions)".formatted(
+            shiftCount, reduceCount, unitCount, percent(unitCount, reduceCount)));
+        writer.newLine();
+
+        writer.writeLine("%-5s %12s %8s %4s  %s".formatted("rank", "count", "share", "unit", "production"));
+        final var productionOrder = IntStream.range(0, productions.length)
+            .filter(i -> productions[i] != null)
+            .boxed()
+            .sorted(Comparator.comparingLong((Integer i) -> productionCounts[i]).reversed().thenComparing(i -> i))
+            .toList();
+        var rank = 1;
+        for (final var i : productionOrder) {
+            writer.writeLine("%-5d %12d %8s %4s  %d: %s".formatted(rank++, productionCounts[i],
+                percent(productionCounts[i], reduceCount), ProductionUtils.isUnit(productions[i]) ? "*" : "", i,
+                productions[i]));
+        }
+        writer.newLine();
+
+        final var visits = getStateVisits();
+        final var totalVisits = Arrays.stream(visits).sum();
+        writer.writeLine("%-5s %6s %12s %12s %8s".formatted("rank", "state", "shifts", "reductions", "share"));
+        final var stateOrder = IntStream.range(0, visits.length)
+            .filter(i -> visits[i] != 0)
+            .boxed()
+            .sorted(Comparator.comparingLong((Integer i) -> visits[i]).reversed().thenComparing(i -> i))
+            .toList();
+        rank = 1;
+        for (final var i : stateOrder) {
+            writer.writeLine("%-5d %6d %12d %12d %8s".formatted(rank++, i, at(shifts, i), at(reductions, i),
+                percent(visits[i], totalVisits)));
+        }
+        writer.newLine();
+
+        writer.writeLine("%-6s %12s %12s".formatted("chain", "count", "reductions"));
+        for (int length = 1; length < chainLengths.length; length++) {
+            if (chainLengths[length] != 0) {
+                writer.writeLine("%-6d %12d %12d".formatted(length, chainLengths[length], length * chainLengths[length]));
+            }
+        }
+    }
+
+    private void endChain() {
+        if (currentChain != 0) {
+            chainLengths = grow(chainLengths, currentChain);
+            chainLengths[currentChain]++;
+            currentChain = 0;
+        }
+    }
+
+    private static String percent(long part, long total) {
+        return total == 0 ? "-" : "%.2f%%".formatted(100.0 * part / total);
+    }
+
+    private static long at(long[] counts, int index) {
+        return index < counts.length ? counts[index] : 0;
+    }
+
+    /**
+     * @return 能以 index 为下标的数组, 必要时扩容
+     */
+    private static long[] grow(long[] counts, int index) {
+        if (index < counts.length) {
+            return counts;
+        }
+        return Arrays.copyOf(counts, Math.max(counts.length * 2, index + 1));
+    }
+}
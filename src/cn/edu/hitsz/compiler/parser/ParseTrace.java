@@ -0,0 +1,92 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * LR 驱动程序执行过的动作序列
+ * <br>
+ * 不立即通知观察者的驱动程序 (如增量分析, 并行分析) 先把动作记录在这里, 待分析完成之后再按原本的顺序回放给观察者.
+ * 移入动作只记录 token 的下标, 回放时加上一个基址再到 token 列表中取出, 因此同一段记录在 token 列表被整体平移之后仍然可用.
+ */
+final class ParseTrace {
+    private static final int NO_TOKEN = -1;
+
+    private Status[] statuses = new Status[16];
+    // 规约动作的产生式, 其余动作为 null
+    private Production[] productions = new Production[16];
+    // 移入动作的 token 下标, 其余动作为 NO_TOKEN
+    private int[] tokenIndices = new int[16];
+    private int size = 0;
+
+    void addShift(Status currentStatus, int tokenIndex) {
+        add(currentStatus, null, tokenIndex);
+    }
+
+    void addReduce(Status currentStatus, Production production) {
+        add(currentStatus, production, NO_TOKEN);
+    }
+
+    void addAccept(Status currentStatus) {
+        add(currentStatus, null, NO_TOKEN);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 依次把记录的动作通知给观察者, 与 SyntaxAnalyzer 在分析过程中通知观察者的顺序相同
+     *
+     * @param observers 观察者
+     * @param tokens    token 列表
+     * @param tokenBase 记录中的 token 下标在 token 列表中的基址
+     */
+    void replay(List<ActionObserver> observers, List<Token> tokens, int tokenBase) {
+        for (int i = 0; i < size; i++) {
+            final var status = statuses[i];
+            final var production = productions[i];
+            final var tokenIndex = tokenIndices[i];
+            if (production != null) {
+                for (final var observer : observers) {
+                    observer.whenReduce(status, production);
+                }
+            } else if (tokenIndex != NO_TOKEN) {
+                final var token = tokens.get(tokenBase + tokenIndex);
+                for (final var observer : observers) {
+                    observer.whenShift(status, token);
+                }
+            } else {
+                for (final var observer : observers) {
+                    observer.whenAccept(status);
+                }
+            }
+        }
+    }
+
+    /**
+     * 释放多余的容量, 用于长期保存的记录
+     */
+    void trim() {
+        statuses = Arrays.copyOf(statuses, size);
+        productions = Arrays.copyOf(productions, size);
+        tokenIndices = Arrays.copyOf(tokenIndices, size);
+    }
+
+    private void add(Status status, Production production, int tokenIndex) {
+        if (size == statuses.length) {
+            final var capacity = Math.max(16, size * 2);
+            statuses = Arrays.copyOf(statuses, capacity);
+            productions = Arrays.copyOf(productions, capacity);
+            tokenIndices = Arrays.copyOf(tokenIndices, capacity);
+        }
+        statuses[size] = status;
+        productions[size] = production;
+        tokenIndices[size] = tokenIndex;
+        size++;
+    }
+}
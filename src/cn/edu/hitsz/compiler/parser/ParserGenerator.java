@@ -0,0 +1,365 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.HashParseTable;
+import cn.edu.hitsz.compiler.parser.table.LRTable;
+import cn.edu.hitsz.compiler.parser.table.NonTerminal;
+import cn.edu.hitsz.compiler.parser.table.ParseTable;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 把 LR 分析表编译为直接编码的语法分析器
+ * <br>
+ * 生成的类中每个状态是一个方法: 按向前看符号的码点做一次 switch, 每个分支直接调用对应的移入, 规约或接受; 每个产生式的规约也是一个方法,
+ * 通知观察者, 弹栈, 再调用以产生式头命名的 goto 方法, 后者对弹栈后的栈顶状态做一次 switch 得到新状态. 默认规约状态不读向前看符号.
+ * 主循环只根据当前状态调用对应的方法, 不再查表, 也不再判断动作的种类. 由于 Java 没有 goto, 状态之间的跳转通过主循环中的
+ * tableswitch 完成; 每个方法都很小, 可以被 JIT 内联.
+ * <br>
+ * 生成的源码可以写到文件中, 也可以用 javax.tools 在内存中编译, 作为隐藏类 (hidden class) 加载, 后者需要在 JDK 而不是 JRE 中运行.
+ * <br>
+ * 用法: {@code ParserGenerator <输出的 .java 文件>}, 从 grammar.txt 构造分析表并写出名为 GeneratedParser 的源码.
+ */
+public class ParserGenerator {
+    public static final String DEFAULT_CLASS_NAME = "GeneratedParser";
+
+    private final ParseTable table;
+    private final List<TokenKind> terminals;
+    // 规约用到的产生式头, 按第一次出现的产生式编号排列, 下标即 goto 方法的编号
+    private final List<NonTerminal> heads = new ArrayList<>();
+    private final List<Production> productions = new ArrayList<>();
+
+    /**
+     * @param lrTable LR 分析表, 调用前需要已经读取过码点文件
+     */
+    public ParserGenerator(LRTable lrTable) {
+        this.table = HashParseTable.of(lrTable);
+        this.terminals = TokenKind.allAllowedTokenKinds().values().stream()
+            .sorted(Comparator.comparingInt(TokenKind::getCode))
+            .toList();
+
+        final var used = new TreeMap<Integer, Production>();
+        for (int state = 0; state < table.getStatusCount(); state++) {
+            for (final var terminal : terminals) {
+                final var action = table.action(state, terminal);
+                if (ParseTable.isReduce(action)) {
+                    final var production = table.production(ParseTable.reducedProduction(action));
+                    used.put(production.index(), production);
+                }
+            }
+        }
+        productions.addAll(used.values());
+        for (final var production : productions) {
+            if (!heads.contains(production.head())) {
+                heads.add(production.head());
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: ParserGenerator <output.java>");
+            System.exit(2);
+        }
+        TokenKind.loadTokenKinds();
+        final var tableGenerator = new TableGenerator();
+        tableGenerator.run();
+        new ParserGenerator(tableGenerator.getTable()).writeSource(args[0], DEFAULT_CLASS_NAME);
+    }
+
+    /**
+     * 把生成的源码写到文件中. 生成的类位于 cn.edu.hitsz.compiler.parser 包中, 构造函数的参数见 {@link #load()}
+     *
+     * @param path      输出路径
+     * @param className 类名
+     */
+    public void writeSource(String path, String className) {
+        FileUtils.writeFile(path, generateSource(className));
+    }
+
+    /**
+     * 在内存中编译生成的源码, 并作为隐藏类加载
+     *
+     * @return 生成的语法分析器
+     * @throws RuntimeException 没有可用的 Java 编译器 (在 JRE 中运行), 或编译失败
+     */
+    public DirectParser load() {
+        final var bytes = compile(DEFAULT_CLASS_NAME, generateSource(DEFAULT_CLASS_NAME));
+
+        final var states = new Status[table.getStatusCount()];
+        for (int state = 0; state < states.length; state++) {
+            states[state] = table.status(state);
+        }
+        final var maxIndex = productions.stream().mapToInt(Production::index).max().orElse(0);
+        final var productionArray = new Production[maxIndex + 1];
+        productions.forEach(production -> productionArray[production.index()] = production);
+
+        try {
+            final var lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            final var constructor = lookup.findConstructor(lookup.lookupClass(),
+                MethodType.methodType(void.class, Status[].class, Production[].class, List.class));
+            return (DirectParser) constructor.invoke(states, productionArray, table.getEliminatedProductions());
+        } catch (Throwable e) {
+            throw new RuntimeException("Can not load generated parser", e);
+        }
+    }
+
+    /**
+     * @param className 类名
+     * @return 生成的语法分析器的源码
+     */
+    public String generateSource(String className) {
+        final var out = new StringBuilder();
+        out.append("""
+            package cn.edu.hitsz.compiler.parser;
+
+            import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+            import cn.edu.hitsz.compiler.parser.table.Production;
+            import cn.edu.hitsz.compiler.parser.table.Status;
+
+            import java.util.Arrays;
+            import java.util.List;
+
+            /**
+             * 由 ParserGenerator 从 LR 分析表生成的直接编码的语法分析器, 不要手动修改
+             */
+            final class %1$s implements DirectParser {
+                private final Status[] states;
+                private final Production[] productions;
+                private final List<Production> eliminated;
+
+                // 以下字段只属于一次分析
+                private TokenBuffer tokens;
+                private ActionObserver[] observers;
+                private int[] stack;
+                private int top;
+                private int position;
+
+                %1$s(Status[] states, Production[] productions, List<Production> eliminated) {
+                    this.states = states;
+                    this.productions = productions;
+                    this.eliminated = eliminated;
+                }
+
+                @Override
+                public void parse(TokenBuffer tokens, List<ActionObserver> observers) {
+                    SyntaxAnalyzer.checkObservers(observers, eliminated);
+                    final var run = new %1$s(states, productions, eliminated);
+                    run.tokens = tokens;
+                    run.observers = observers.toArray(new ActionObserver[0]);
+                    run.stack = new int[64];
+                    run.run();
+                }
+
+                private void run() {
+                    var state = %2$d;
+                    stack[0] = state;
+                    while (state >= 0) {
+                        state = switch (state) {
+            """.formatted(className, table.getInit()));
+        for (int state = 0; state < table.getStatusCount(); state++) {
+            out.append("                case %d -> state%d();\n".formatted(state, state));
+        }
+        out.append("""
+                            default -> throw new IllegalStateException("Unknown state " + state);
+                        };
+                    }
+                }
+            """);
+
+        for (int state = 0; state < table.getStatusCount(); state++) {
+            generateState(out, state);
+        }
+        for (final var production : productions) {
+            generateReduce(out, production);
+        }
+        for (int i = 0; i < heads.size(); i++) {
+            generateGoto(out, i);
+        }
+
+        out.append("""
+
+                private int shift(int state, int target) {
+                    if (observers.length != 0) {
+                        final var token = tokens.token(position);
+                        for (final var observer : observers) {
+                            observer.whenShift(states[state], token);
+                        }
+                    }
+                    position++;
+                    return push(target);
+                }
+
+                private int accept(int state) {
+                    for (final var observer : observers) {
+                        observer.whenAccept(states[state]);
+                    }
+                    return -1;
+                }
+
+                private int error(int state) {
+                    throw new RuntimeException("Syntax analyzer finds error...\\n"
+                        + SyntaxError.at(tokens, position, states[state]).message());
+                }
+
+                private int push(int state) {
+                    if (++top == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top] = state;
+                    return state;
+                }
+            }
+            """);
+        return out.toString();
+    }
+
+    private void generateState(StringBuilder out, int state) {
+        out.append('\n');
+        final var defaultAction = table.defaultAction(state);
+        if (defaultAction != ParseTable.ERROR) {
+            out.append("    // 默认规约\n");
+            out.append("    private int state%d() {\n".formatted(state));
+            out.append("        if (position == tokens.size()) {\n");
+            out.append("            return -1;\n");
+            out.append("        }\n");
+            out.append("        return reduce%d(%d);\n".formatted(ParseTable.reducedProduction(defaultAction), state));
+            out.append("    }\n");
+            return;
+        }
+
+        // 相同动作的终结符合并为一个分支
+        final Map<String, List<TokenKind>> cases = new LinkedHashMap<>();
+        for (final var terminal : terminals) {
+            final var action = table.action(state, terminal);
+            if (action != ParseTable.ERROR) {
+                cases.computeIfAbsent(call(action, state), key -> new ArrayList<>()).add(terminal);
+            }
+        }
+        out.append("    private int state%d() {\n".formatted(state));
+        out.append("        if (position == tokens.size()) {\n");
+        out.append("            return -1;\n");
+        out.append("        }\n");
+        out.append("        return switch (tokens.kind(position).getCode()) {\n");
+        cases.forEach((call, kinds) -> out.append("            case %s -> %s; // %s\n".formatted(
+            join(kinds, TokenKind::getCode), call, kinds.stream().map(TokenKind::getIdentifier).collect(Collectors.joining(" ")))));
+        out.append("            default -> error(%d);\n".formatted(state));
+        out.append("        };\n");
+        out.append("    }\n");
+    }
+
+    private String call(int action, int state) {
+        if (ParseTable.isShift(action)) {
+            return "shift(%d, %d)".formatted(state, ParseTable.shiftTarget(action));
+        } else if (ParseTable.isReduce(action)) {
+            return "reduce%d(%d)".formatted(ParseTable.reducedProduction(action), state);
+        } else {
+            return "accept(%d)".formatted(state);
+        }
+    }
+
+    private void generateReduce(StringBuilder out, Production production) {
+        out.append('\n');
+        out.append("    // %s\n".formatted(production));
+        out.append("    private int reduce%d(int state) {\n".formatted(production.index()));
+        out.append("        final var production = productions[%d];\n".formatted(production.index()));
+        out.append("        for (final var observer : observers) {\n");
+        out.append("            observer.whenReduce(states[state], production);\n");
+        out.append("        }\n");
+        out.append("        top -= %d;\n".formatted(production.body().size()));
+        out.append("        return push(goto%d(stack[top]));\n".formatted(heads.indexOf(production.head())));
+        out.append("    }\n");
+    }
+
+    private void generateGoto(StringBuilder out, int index) {
+        final var head = heads.get(index);
+        final Map<Integer, List<Integer>> targets = new LinkedHashMap<>();
+        for (int state = 0; state < table.getStatusCount(); state++) {
+            final var target = table.getGoto(state, head);
+            if (target != ParseTable.NO_STATE) {
+                targets.computeIfAbsent(target, key -> new ArrayList<>()).add(state);
+            }
+        }
+        out.append('\n');
+        out.append("    // GOTO(state, %s)\n".formatted(head));
+        out.append("    private static int goto%d(int state) {\n".formatted(index));
+        out.append("        return switch (state) {\n");
+        targets.forEach((target, states) ->
+            out.append("            case %s -> %d;\n".formatted(join(states, Integer::intValue), target)));
+        out.append("            default -> throw new IllegalStateException(\"No goto on %s from state \" + state);\n"
+            .formatted(head));
+        out.append("        };\n");
+        out.append("    }\n");
+    }
+
+    private static <T> String join(List<T> values, ToIntFunction<T> key) {
+        return values.stream().map(value -> Integer.toString(key.applyAsInt(value))).collect(Collectors.joining(", "));
+    }
+
+    private static byte[] compile(String className, String source) {
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new RuntimeException("No Java compiler available, run with a JDK to load generated parsers");
+        }
+
+        final var qualifiedName = ParserGenerator.class.getPackageName() + "." + className;
+        final var sourceFile = new SimpleJavaFileObject(
+            URI.create("string:///" + qualifiedName.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+            JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        final var bytes = new ByteArrayOutputStream();
+        final var standard = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        final var fileManager = new ForwardingJavaFileManager<>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind,
+                                                       FileObject sibling) {
+                if (location != StandardLocation.CLASS_OUTPUT || !name.equals(qualifiedName)) {
+                    throw new IllegalStateException("Unexpected output class " + name);
+                }
+                return new SimpleJavaFileObject(URI.create("bytes:///" + name.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return bytes;
+                    }
+                };
+            }
+        };
+
+        final var diagnostics = new StringWriter();
+        final var options = List.of("-classpath", System.getProperty("java.class.path"), "-proc:none");
+        final var success = compiler.getTask(diagnostics, fileManager, null, options, null, List.of(sourceFile)).call();
+        if (!success) {
+            throw new RuntimeException("Can not compile generated parser:\n" + diagnostics);
+        }
+        return bytes.toByteArray();
+    }
+}
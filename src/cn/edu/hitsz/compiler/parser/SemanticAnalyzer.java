@@ -1,5 +1,6 @@
 package cn.edu.hitsz.compiler.parser;
 
+import cn.edu.hitsz.compiler.lexer.LineTable;
 import cn.edu.hitsz.compiler.lexer.Token;
 import cn.edu.hitsz.compiler.parser.table.Production;
 import cn.edu.hitsz.compiler.parser.table.Status;
@@ -13,6 +14,14 @@ import java.util.Stack;
 public class SemanticAnalyzer implements ActionObserver {
     private final Stack<Token> tokenStack = new Stack<>();
     private SymbolTable symbolTable = null;
+    // 用于在错误信息中给出行列号, 可以没有
+    private LineTable lineTable = null;
+
+    @Override
+    public boolean needsReduce(Production production) {
+        // E -> A 与 A -> B 只是把占位符换成占位符
+        return production.index() != 10 && production.index() != 12;
+    }
 
     @Override
     public void whenAccept(Status currentStatus) {
@@ -44,7 +53,7 @@ public class SemanticAnalyzer implements ActionObserver {
                 final var d = tokenStack.pop();
                 final var symbol = symbolTable.get(id.getText());
                 if (symbol.getType() != null) { // Define a symbol multiple time.
-                    throw new RuntimeException("Redefine");
+                    throw new RuntimeException(where(id) + "Redefine " + id.getText());
                 }
                 assert Objects.equals(d.getKind().getIdentifier(), "Int");
                 symbol.setType(SourceCodeType.Int);
@@ -60,7 +69,7 @@ public class SemanticAnalyzer implements ActionObserver {
                 final var id = tokenStack.pop();
                 final var symbol = symbolTable.get(id.getText());
                 if (symbol.getType() == null) {
-                    throw new RuntimeException("Redefine");
+                    throw new RuntimeException(where(id) + "Undefined " + id.getText());
                 }
                 tokenStack.push(null); // placeholder
             }
@@ -106,7 +115,7 @@ public class SemanticAnalyzer implements ActionObserver {
                 final var id = tokenStack.peek();
                 final var symbol = symbolTable.get(id.getText());
                 if (symbol.getType() == null) {
-                    throw new RuntimeException("Redefine");
+                    throw new RuntimeException(where(id) + "Undefined " + id.getText());
                 }
                 // Replace with a placeholder.
                 tokenStack.pop();
@@ -134,5 +143,22 @@ public class SemanticAnalyzer implements ActionObserver {
         // 如果需要使用符号表的话, 可以将它或者它的一部分信息存起来, 比如使用一个成员变量存储
         this.symbolTable = table;
     }
+
+    /**
+     * @param lineTable 源代码的行首表, 设置后错误信息会带上出错的标识符的行列号
+     */
+    public void setLineTable(LineTable lineTable) {
+        this.lineTable = lineTable;
+    }
+
+    /**
+     * @return 形如 "a.txt:3:5: " 的错误位置前缀; 无法确定位置时为空字符串
+     */
+    private String where(Token token) {
+        if (lineTable == null || token.getOffset() == Token.NO_OFFSET) {
+            return "";
+        }
+        return lineTable.describe(token.getOffset()) + ": ";
+    }
 }
 
@@ -0,0 +1,156 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.parser.table.GrammarInfo;
+import cn.edu.hitsz.compiler.parser.table.Production;
+import cn.edu.hitsz.compiler.parser.table.Status;
+import cn.edu.hitsz.compiler.symtab.SymbolTable;
+import cn.edu.hitsz.compiler.utils.ChannelWriter;
+import cn.edu.hitsz.compiler.utils.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * 流式的规约产生式收集器
+ * <br>
+ * 与 {@link ProductionCollector} 不同, 该类不会把规约到的产生式都存到内存中, 而是在每次 reduce 时就把结果推入 {@link ChannelWriter}.
+ * 对于语句数量非常多的输入, 这避免了在语法分析结束时持有所有产生式及其字符串表示.
+ * <br>
+ * 支持两种输出格式:
+ * <ul>
+ *     <li>{@link Format#TEXT}: 与 ProductionCollector 完全相同的 parser_list.txt 文本格式</li>
+ *     <li>{@link Format#BINARY}: 每个产生式只写入其 index 的 varint 编码, 之后可以通过 {@link #decodeToText} 还原为文本格式;
+ *     Main 与 BatchMain 的 --binary-parser-list 选择该格式</li>
+ * </ul>
+ *
+ * @see ProductionCollector
+ */
+public class StreamingProductionCollector implements ActionObserver, AutoCloseable {
+    public enum Format {TEXT, BINARY}
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * @param beginProduction 起始产生式, 在 accept 时写出
+     * @param path            输出文件路径
+     * @param format          输出格式
+     */
+    public StreamingProductionCollector(Production beginProduction, String path, Format format) {
+        this.beginProduction = beginProduction;
+        this.format = format;
+        this.textCache = format == Format.TEXT ? buildTextCache(GrammarInfo.getProductionsInOrder()) : null;
+        this.output = FileUtils.openWriter(path);
+    }
+
+    private final Production beginProduction;
+    private final Format format;
+    private final byte[][] textCache;
+    private final ChannelWriter output;
+
+    /**
+     * 将二进制格式的规约序列还原为 parser_list.txt 的文本格式
+     *
+     * @param binaryPath 二进制文件路径
+     * @param textPath   文本文件输出路径
+     */
+    public static void decodeToText(String binaryPath, String textPath) {
+        final var textCache = buildTextCache(GrammarInfo.getProductionsInOrder());
+        try (final var input = new BufferedInputStream(Files.newInputStream(Paths.get(binaryPath)), BUFFER_SIZE);
+             final var output = FileUtils.openWriter(textPath)) {
+            int index;
+            while ((index = readVarint(input)) >= 0) {
+                if (index <= 0 || index >= textCache.length) {
+                    throw new RuntimeException("Unknown production index in " + binaryPath + ": " + index);
+                }
+                output.write(textCache[index]);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + binaryPath, e);
+        }
+    }
+
+    @Override
+    public void whenReduce(Status currentStatus, Production production) {
+        // 当规约时, 直接写出规约到的产生式
+        write(production);
+    }
+
+    @Override
+    public void whenShift(Status currentStatus, Token currentToken) {
+        // do nothing
+    }
+
+    @Override
+    public void whenAccept(Status currentStatus) {
+        // 当接受时, 写出对起始产生式的规约
+        write(beginProduction);
+    }
+
+    @Override
+    public void setSymbolTable(SymbolTable table) {
+        // do nothing
+    }
+
+    /**
+     * 刷新缓冲区并关闭输出文件, 应在语法分析结束后调用
+     */
+    @Override
+    public void close() {
+        output.close();
+    }
+
+    private void write(Production production) {
+        switch (format) {
+            case TEXT -> output.write(textCache[production.index()]);
+            case BINARY -> writeVarint(output, production.index());
+        }
+    }
+
+    /**
+     * 预先把每个产生式的文本行编码好, 下标即为产生式的 index (从 1 开始)
+     */
+    private static byte[][] buildTextCache(List<Production> productions) {
+        final var cache = new byte[productions.size() + 1][];
+        // 与 Files.write 的行为保持一致: 每行后面都跟着一个行分隔符
+        final var separator = System.lineSeparator();
+        for (final var production : productions) {
+            cache[production.index()] = (production + separator).getBytes(StandardCharsets.UTF_8);
+        }
+        return cache;
+    }
+
+    private static void writeVarint(ChannelWriter output, int value) {
+        // LEB128: 每字节低 7 位为数据, 最高位表示后面是否还有字节
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * @return 读到的 varint; 若已到达文件末尾则返回 -1
+     */
+    private static int readVarint(BufferedInputStream input) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final var b = input.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new IOException("Truncated varint");
+            }
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
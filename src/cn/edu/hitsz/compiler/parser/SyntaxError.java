@@ -0,0 +1,88 @@
+package cn.edu.hitsz.compiler.parser;
+
+import cn.edu.hitsz.compiler.lexer.LineTable;
+import cn.edu.hitsz.compiler.lexer.Token;
+import cn.edu.hitsz.compiler.lexer.TokenBuffer;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.Action;
+import cn.edu.hitsz.compiler.parser.table.Status;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 语法分析中发现的一个错误
+ *
+ * @param tokenIndex 出错的 token 在词法单元流中的下标
+ * @param offset     出错的 token 在源代码中的字节偏移, 未知时为 {@link TokenBuffer#NO_OFFSET}
+ * @param found      出错的 token 的类型
+ * @param text       出错的 token 的文本, 可能为空
+ * @param status     出错时的状态
+ * @param expected   该状态下可以接受的终结符, 按码点排序
+ */
+public record SyntaxError(int tokenIndex, int offset, TokenKind found, String text, Status status,
+                          List<TokenKind> expected) {
+    /**
+     * @param tokens     词法单元流
+     * @param tokenIndex 出错的 token 的下标
+     * @param status     出错时的状态
+     * @return 由状态的 action 行得到期望的终结符的错误
+     */
+    public static SyntaxError at(TokenBuffer tokens, int tokenIndex, Status status) {
+        return new SyntaxError(tokenIndex, tokens.offset(tokenIndex), tokens.kind(tokenIndex), tokens.text(tokenIndex),
+            status, expected(status));
+    }
+
+    /**
+     * @param tokens     以 EOF 结尾的 token 列表
+     * @param tokenIndex 出错的 token 的下标
+     * @param status     出错时的状态
+     * @return 由状态的 action 行得到期望的终结符的错误
+     */
+    public static SyntaxError at(List<Token> tokens, int tokenIndex, Status status) {
+        final var token = tokens.get(tokenIndex);
+        return new SyntaxError(tokenIndex, token.getOffset(), token.getKind(), token.getText(), status, expected(status));
+    }
+
+    private static List<TokenKind> expected(Status status) {
+        return status.action().entrySet().stream()
+            .filter(entry -> entry.getValue().getKind() != Action.ActionKind.Error)
+            .map(Map.Entry::getKey)
+            .sorted(Comparator.comparingInt(TokenKind::getCode))
+            .toList();
+    }
+
+    /**
+     * @return 形如 "token 12 (offset 34): unexpected id(a), expecting one of: = ;" 的描述
+     */
+    public String message() {
+        final var where = offset == TokenBuffer.NO_OFFSET
+            ? "token %d".formatted(tokenIndex)
+            : "token %d (offset %d)".formatted(tokenIndex, offset);
+        return where + ": " + describe();
+    }
+
+    /**
+     * @param lines 源代码的行首表
+     * @return 形如 "a.txt:3:5: unexpected id(a), expecting one of: = ;" 的描述; 位置未知时与 {@link #message()} 相同
+     */
+    public String message(LineTable lines) {
+        if (offset == TokenBuffer.NO_OFFSET) {
+            return message();
+        }
+        return lines.describe(offset) + ": " + describe();
+    }
+
+    private String describe() {
+        final var unexpected = text.isEmpty() ? found.getIdentifier() : "%s(%s)".formatted(found.getIdentifier(), text);
+        final var expecting = expected.stream().map(TokenKind::getIdentifier).collect(Collectors.joining(" "));
+        return "unexpected %s, expecting one of: %s".formatted(unexpected, expecting);
+    }
+
+    @Override
+    public String toString() {
+        return message();
+    }
+}
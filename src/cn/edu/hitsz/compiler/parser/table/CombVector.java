@@ -0,0 +1,131 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import java.util.Arrays;
+
+/**
+ * 用行位移法 (comb vector) 压缩的稀疏二维表
+ * <br>
+ * 每行取出现次数最多的值作为该行的默认值, 只存储与默认值不同的格子: 把各行的这些格子错开地叠放进同一组一维数组中,
+ * 第 r 行的第 c 列位于下标 base[r] + c 处, check 数组记录该位置属于哪一行. 查询时若 check 不等于行号, 则取该行的默认值.
+ * 数组长度保证覆盖 base[r] + c 的所有取值, 因此查询不需要额外的范围判断.
+ */
+final class CombVector {
+    private static final int FREE = -1;
+
+    private final int[] base;
+    private final int[] defaults;
+    private final int[] check;
+    private final int[] next;
+    private final int entryCount;
+
+    /**
+     * 按给定的顺序依次把各行放到第一个不冲突的位置 (first fit), 先放的行位于数组的前部
+     *
+     * @param rows  各行, 列数相同
+     * @param order 放置的顺序, 为各行的行号的一个排列
+     */
+    CombVector(int[][] rows, int[] order) {
+        final var columns = rows.length == 0 ? 0 : rows[0].length;
+        this.base = new int[rows.length];
+        this.defaults = new int[rows.length];
+
+        var check = new int[Math.max(columns, 16)];
+        var next = new int[check.length];
+        Arrays.fill(check, FREE);
+        var maxBase = 0;
+        var entryCount = 0;
+        for (final var row : order) {
+            final var values = rows[row];
+            defaults[row] = mostFrequent(values);
+            final var exceptions = new int[columns];
+            var count = 0;
+            for (int column = 0; column < columns; column++) {
+                if (values[column] != defaults[row]) {
+                    exceptions[count++] = column;
+                }
+            }
+            if (count == 0) {
+                continue;
+            }
+
+            var offset = 0;
+            while (!fits(check, offset, exceptions, count)) {
+                offset++;
+            }
+            if (offset + columns > check.length) {
+                final var length = Math.max(check.length * 2, offset + columns);
+                final var oldLength = check.length;
+                check = Arrays.copyOf(check, length);
+                next = Arrays.copyOf(next, length);
+                Arrays.fill(check, oldLength, length, FREE);
+            }
+            for (int i = 0; i < count; i++) {
+                check[offset + exceptions[i]] = row;
+                next[offset + exceptions[i]] = values[exceptions[i]];
+            }
+            base[row] = offset;
+            maxBase = Math.max(maxBase, offset);
+            entryCount += count;
+        }
+
+        final var length = maxBase + columns;
+        this.check = Arrays.copyOf(check, length);
+        this.next = Arrays.copyOf(next, length);
+        this.entryCount = entryCount;
+    }
+
+    int get(int row, int column) {
+        final var index = base[row] + column;
+        return check[index] == row ? next[index] : defaults[row];
+    }
+
+    /**
+     * @return 显式存储的格子数
+     */
+    int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return 叠放后一维数组的长度
+     */
+    int getLength() {
+        return check.length;
+    }
+
+    long footprintBytes() {
+        return TableLayout.arrayBytes(base.length, Integer.BYTES) + TableLayout.arrayBytes(defaults.length, Integer.BYTES)
+            + TableLayout.arrayBytes(check.length, Integer.BYTES) + TableLayout.arrayBytes(next.length, Integer.BYTES);
+    }
+
+    private static boolean fits(int[] check, int offset, int[] exceptions, int count) {
+        for (int i = 0; i < count; i++) {
+            final var index = offset + exceptions[i];
+            if (index < check.length && check[index] != FREE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return 行中出现次数最多的值, 次数相同时取先出现的
+     */
+    private static int mostFrequent(int[] values) {
+        var best = values.length == 0 ? 0 : values[0];
+        var bestCount = 0;
+        for (int i = 0; i < values.length; i++) {
+            var count = 0;
+            for (final var value : values) {
+                if (value == values[i]) {
+                    count++;
+                }
+            }
+            if (count > bestCount) {
+                best = values[i];
+                bestCount = count;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,160 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 用行位移法压缩的分析表, action 与 goto 表各用一个 {@link CombVector} 存储, 每行的默认动作 (通常是错误) 不占用空间
+ * <br>
+ * 给出各状态的访问次数 (如 {@link cn.edu.hitsz.compiler.parser.ParseProfiler#getStateVisits()}) 时, 状态按访问次数从高到低重新编号,
+ * 并按这个顺序放置各行, 使最常访问的状态的 base, 默认值与叠放的格子都集中在各数组的前部, 分析时只需要访问少数几条缓存行;
+ * 否则保持原有的编号, 并按显式格子数从多到少放置各行, 以得到更短的数组.
+ * 每个格子的查询结果都与原表完全相同, 包括错误.
+ */
+public final class CompressedParseTable implements ParseTable {
+    private final TableLayout layout;
+    private final CombVector actions;
+    private final CombVector gotos;
+
+    private CompressedParseTable(TableLayout layout, boolean hotOrdered) {
+        this.layout = layout;
+        final var actionRows = layout.actionRows();
+        final var gotoRows = layout.gotoRows();
+        this.actions = new CombVector(actionRows, placementOrder(actionRows, hotOrdered, ERROR));
+        this.gotos = new CombVector(gotoRows, placementOrder(gotoRows, hotOrdered, NO_STATE));
+    }
+
+    /**
+     * @param table 原始的分析表
+     * @return 保持原有状态编号的压缩表
+     */
+    public static CompressedParseTable of(LRTable table) {
+        return of(table, null);
+    }
+
+    /**
+     * @param table       原始的分析表
+     * @param stateVisits 以 {@link Status#index()} 为下标的各状态的访问次数, 可以比状态数短; 为 null 时不重新编号
+     * @return 按访问次数重新编号的压缩表
+     */
+    public static CompressedParseTable of(LRTable table, long[] stateVisits) {
+        final var statuses = table.getStatusInIndexOrder();
+        if (stateVisits == null) {
+            return new CompressedParseTable(new TableLayout(table, statuses), false);
+        }
+        final List<Status> order = statuses.stream()
+            .sorted(Comparator.comparingLong((Status status) -> visits(stateVisits, status)).reversed()
+                .thenComparingInt(Status::index))
+            .toList();
+        return new CompressedParseTable(new TableLayout(table, order), true);
+    }
+
+    @Override
+    public int getInit() {
+        return layout.init;
+    }
+
+    @Override
+    public int getStatusCount() {
+        return layout.states.length;
+    }
+
+    @Override
+    public int action(int state, TokenKind terminal) {
+        return actions.get(state, layout.terminalColumn(terminal));
+    }
+
+    @Override
+    public int defaultAction(int state) {
+        return layout.defaultActions[state];
+    }
+
+    @Override
+    public int getGoto(int state, NonTerminal nonTerminal) {
+        final var column = layout.nonTerminalColumn(nonTerminal);
+        return column < 0 ? NO_STATE : gotos.get(state, column);
+    }
+
+    @Override
+    public int gotoAfterReduce(int state, int production) {
+        return gotos.get(state, layout.headColumn(production));
+    }
+
+    @Override
+    public Production production(int production) {
+        return layout.productions[production];
+    }
+
+    @Override
+    public Status status(int state) {
+        return layout.states[state];
+    }
+
+    @Override
+    public List<Production> getEliminatedProductions() {
+        return layout.eliminatedProductions;
+    }
+
+    /**
+     * @return 估计的表占用的字节数
+     */
+    public long getFootprintBytes() {
+        return layout.footprintBytes() + actions.footprintBytes() + gotos.footprintBytes();
+    }
+
+    /**
+     * @return action 表中显式存储 (不等于所在行默认动作) 的格子数
+     */
+    public int getActionEntryCount() {
+        return actions.getEntryCount();
+    }
+
+    /**
+     * @return action 表叠放后一维数组的长度, 压缩前为状态数 × 终结符数
+     */
+    public int getActionVectorLength() {
+        return actions.getLength();
+    }
+
+    public int getGotoEntryCount() {
+        return gotos.getEntryCount();
+    }
+
+    public int getGotoVectorLength() {
+        return gotos.getLength();
+    }
+
+    /**
+     * 按访问次数排序时, 状态已经按热度编号, 直接按编号放置; 否则先放显式格子多的行
+     */
+    private static int[] placementOrder(int[][] rows, boolean hotOrdered, int error) {
+        final var order = IntStream.range(0, rows.length).boxed();
+        if (hotOrdered) {
+            return order.mapToInt(Integer::intValue).toArray();
+        }
+        return order
+            .sorted(Comparator.comparingInt((Integer row) -> nonErrorCount(rows[row], error)).reversed().thenComparing(row -> row))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    /**
+     * @return 行中不等于错误的格子数, 用作显式格子数的近似
+     */
+    private static int nonErrorCount(int[] row, int error) {
+        var count = 0;
+        for (final var value : row) {
+            if (value != error) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long visits(long[] stateVisits, Status status) {
+        return status.index() < stateVisits.length ? stateVisits[status.index()] : 0;
+    }
+}
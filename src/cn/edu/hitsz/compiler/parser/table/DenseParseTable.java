@@ -0,0 +1,94 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.List;
+
+/**
+ * 以两个二维数组 (按行展开为一维) 存储 action 与 goto 表的分析表, 状态编号即 {@link Status#index()}
+ * <br>
+ * 每次查询只需一次数组访问, 但表中绝大部分格子都是错误, 占用的空间与状态数 × 符号数成正比.
+ */
+public final class DenseParseTable implements ParseTable {
+    private final TableLayout layout;
+    private final int[] actions;
+    private final int[] gotos;
+
+    private DenseParseTable(TableLayout layout) {
+        this.layout = layout;
+        final var states = layout.states.length;
+        this.actions = new int[states * layout.terminalCount];
+        this.gotos = new int[states * layout.nonTerminalCount];
+        final var actionRows = layout.actionRows();
+        final var gotoRows = layout.gotoRows();
+        for (int state = 0; state < states; state++) {
+            System.arraycopy(actionRows[state], 0, actions, state * layout.terminalCount, layout.terminalCount);
+            System.arraycopy(gotoRows[state], 0, gotos, state * layout.nonTerminalCount, layout.nonTerminalCount);
+        }
+    }
+
+    public static DenseParseTable of(LRTable table) {
+        return new DenseParseTable(new TableLayout(table, table.getStatusInIndexOrder()));
+    }
+
+    @Override
+    public int getInit() {
+        return layout.init;
+    }
+
+    @Override
+    public int getStatusCount() {
+        return layout.states.length;
+    }
+
+    @Override
+    public int action(int state, TokenKind terminal) {
+        return actions[state * layout.terminalCount + layout.terminalColumn(terminal)];
+    }
+
+    @Override
+    public int defaultAction(int state) {
+        return layout.defaultActions[state];
+    }
+
+    @Override
+    public int getGoto(int state, NonTerminal nonTerminal) {
+        final var column = layout.nonTerminalColumn(nonTerminal);
+        return column < 0 ? NO_STATE : gotos[state * layout.nonTerminalCount + column];
+    }
+
+    @Override
+    public int gotoAfterReduce(int state, int production) {
+        return gotos[state * layout.nonTerminalCount + layout.headColumn(production)];
+    }
+
+    @Override
+    public Production production(int production) {
+        return layout.productions[production];
+    }
+
+    @Override
+    public Status status(int state) {
+        return layout.states[state];
+    }
+
+    @Override
+    public List<Production> getEliminatedProductions() {
+        return layout.eliminatedProductions;
+    }
+
+    /**
+     * @return action 表的格子数, 即状态数 × (表中的终结符数 + 1), 多出的一列对应不在表中的终结符
+     */
+    public int getActionCellCount() {
+        return actions.length;
+    }
+
+    /**
+     * @return 估计的表占用的字节数
+     */
+    public long getFootprintBytes() {
+        return layout.footprintBytes()
+            + TableLayout.arrayBytes(actions.length, Integer.BYTES) + TableLayout.arrayBytes(gotos.length, Integer.BYTES);
+    }
+}
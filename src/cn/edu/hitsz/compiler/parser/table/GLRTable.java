@@ -0,0 +1,75 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 允许冲突的 LR 分析表, 由 {@link TableGenerator#generateGLRTable()} 构造, 供 GLR 驱动程序使用
+ * <br>
+ * 每个格子的第一个动作仍存放在 {@link Status} 中, 冲突的其余动作另外存放; 没有冲突的格子与 {@link LRTable} 完全相同.
+ */
+public class GLRTable {
+    private final List<Status> statusInIndexOrder;
+    private final Map<Status, Map<TokenKind, List<Action>>> conflicts;
+
+    GLRTable(List<Status> statusInIndexOrder, Map<Status, Map<TokenKind, List<Action>>> conflicts) {
+        this.statusInIndexOrder = statusInIndexOrder;
+        this.conflicts = conflicts;
+    }
+
+    public Status getInit() {
+        return statusInIndexOrder.get(0);
+    }
+
+    public int getStatusCount() {
+        return statusInIndexOrder.size();
+    }
+
+    /**
+     * @return 该格子中的第一个动作, 没有冲突时即唯一的动作
+     */
+    public Action getAction(Status status, TokenKind terminal) {
+        return status.getAction(terminal);
+    }
+
+    /**
+     * @return 该格子是否有多于一个动作
+     */
+    public boolean hasConflict(Status status, TokenKind terminal) {
+        final var row = conflicts.get(status);
+        return row != null && row.containsKey(terminal);
+    }
+
+    /**
+     * @return 该格子中的所有动作, 第一个为 {@link #getAction}; 错误时为空
+     */
+    public List<Action> getActions(Status status, TokenKind terminal) {
+        final var first = status.getAction(terminal);
+        if (first.getKind() == Action.ActionKind.Error) {
+            return List.of();
+        }
+        final var row = conflicts.get(status);
+        final var others = row == null ? null : row.get(terminal);
+        if (others == null) {
+            return List.of(first);
+        }
+        final var result = new ArrayList<Action>(others.size() + 1);
+        result.add(first);
+        result.addAll(others);
+        return result;
+    }
+
+    public Status getGoto(Status status, NonTerminal nonTerminal) {
+        return status.getGoto(nonTerminal);
+    }
+
+    /**
+     * @return 有冲突的格子数
+     */
+    public int getConflictCount() {
+        return conflicts.values().stream().mapToInt(Map::size).sum();
+    }
+}
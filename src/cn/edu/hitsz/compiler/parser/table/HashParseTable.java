@@ -0,0 +1,67 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.List;
+
+/**
+ * 直接查询 {@link LRTable} 中各 Status 的 HashMap 的分析表, 状态编号即 {@link Status#index()}
+ * <br>
+ * 不复制表的内容, 每次查询都经过一次 HashMap 查找与一次动作编码, 作为其它形式的对照.
+ */
+public final class HashParseTable implements ParseTable {
+    private final TableLayout layout;
+
+    private HashParseTable(TableLayout layout) {
+        this.layout = layout;
+    }
+
+    public static HashParseTable of(LRTable table) {
+        return new HashParseTable(new TableLayout(table, table.getStatusInIndexOrder()));
+    }
+
+    @Override
+    public int getInit() {
+        return layout.init;
+    }
+
+    @Override
+    public int getStatusCount() {
+        return layout.states.length;
+    }
+
+    @Override
+    public int action(int state, TokenKind terminal) {
+        return layout.encode(layout.states[state].getAction(terminal));
+    }
+
+    @Override
+    public int defaultAction(int state) {
+        return layout.defaultActions[state];
+    }
+
+    @Override
+    public int getGoto(int state, NonTerminal nonTerminal) {
+        return layout.number(layout.states[state].getGoto(nonTerminal));
+    }
+
+    @Override
+    public int gotoAfterReduce(int state, int production) {
+        return getGoto(state, layout.productions[production].head());
+    }
+
+    @Override
+    public Production production(int production) {
+        return layout.productions[production];
+    }
+
+    @Override
+    public Status status(int state) {
+        return layout.states[state];
+    }
+
+    @Override
+    public List<Production> getEliminatedProductions() {
+        return layout.eliminatedProductions;
+    }
+}
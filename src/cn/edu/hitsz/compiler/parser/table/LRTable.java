@@ -5,11 +5,15 @@ import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * 表示 LR 文法分析表, 你不应该修改此文件
  * <br>
+ * 本实现修改了此文件: 增加了按类型查询动作, 默认规约状态, 被消除的单产生式与状态数等查询, {@link #dumpTable(String)} 改为逐行写出,
+ * 输出的内容不变
  */
 public class LRTable {
     /**
@@ -24,6 +28,17 @@ public class LRTable {
         return status.getAction(tokenKind);
     }
 
+    /**
+     * 根据当前状态与当前词法单元的类型获取对应动作, 供不构造 Token 对象的驱动程序使用
+     *
+     * @param status    当前状态
+     * @param tokenKind 当前词法单元的类型
+     * @return 应采取的动作
+     */
+    public Action getAction(Status status, TokenKind tokenKind) {
+        return status.getAction(tokenKind);
+    }
+
     /**
      * 根据当前状态与规约到非终结符获得应转移到的状态
      *
@@ -35,6 +50,24 @@ public class LRTable {
         return status.getGoto(nonTerminal);
     }
 
+    /**
+     * 若该状态是默认规约状态, 即无论向前看符号是什么, 只要不是错误就按同一个产生式规约, 则返回这个产生式
+     *
+     * @param status 当前状态
+     * @return 默认规约的产生式; 不是默认规约状态时为空
+     */
+    public Optional<Production> getDefaultReduction(Status status) {
+        return Optional.ofNullable(defaultReductions.get(status));
+    }
+
+    /**
+     * @return 构造该表时被消除的单产生式, 使用该表分析时不会规约这些产生式
+     * @see TableGenerator#getTableWithoutUnitReductions
+     */
+    public List<Production> getEliminatedProductions() {
+        return eliminatedProductions;
+    }
+
     /**
      * @return 起始状态
      */
@@ -42,30 +75,54 @@ public class LRTable {
         return statusInIndexOrder.get(0);
     }
 
+    /**
+     * @return 状态的数量
+     */
+    public int getStatusCount() {
+        return statusInIndexOrder.size();
+    }
+
     public void dumpTable(String path) {
-        final var text = new StringBuilder();
-        // table head
-        text.append("Status,ACTION").append(",".repeat(terminals.size()))
-            // GOTO 占了第一个 nonTerminal 的位置, 所以要 -1
-            .append("GOTO").append(",".repeat(nonTerminals.size() - 1))
-            .append("\n");
-
-        text.append(",")
-            .append(terminals.stream().map(Term::toString).collect(Collectors.joining(",")))
-            .append(",")
-            .append(nonTerminals.stream().map(Term::toString).collect(Collectors.joining(",")))
-            .append("\n");
-
-        for (final var status : statusInIndexOrder) {
-            text.append(status)
-                .append(",")
-                .append(terminals.stream().map(status::getAction).map(Action::toString).collect(Collectors.joining(",")))
-                .append(",")
-                .append(nonTerminals.stream().map(status::getGoto).map(this::convertToGotoString).collect(Collectors.joining(",")))
-                .append("\n");
+        try (final var writer = FileUtils.openWriter(path)) {
+            // table head
+            writer.write("Status,ACTION").write(",".repeat(terminals.size()))
+                // GOTO 占了第一个 nonTerminal 的位置, 所以要 -1
+                .write("GOTO").write(",".repeat(nonTerminals.size() - 1))
+                .write('\n');
+
+            writer.write(',')
+                .write(terminals.stream().map(Term::toString).collect(Collectors.joining(",")))
+                .write(',')
+                .write(nonTerminals.stream().map(Term::toString).collect(Collectors.joining(",")))
+                .write('\n');
+
+            // 逐行写出, 不再把整张表拼接成一个字符串
+            for (final var status : statusInIndexOrder) {
+                writer.write(status.index());
+                for (final var terminal : terminals) {
+                    writer.write(',').write(status.getAction(terminal).toString());
+                }
+                for (final var nonTerminal : nonTerminals) {
+                    writer.write(',').write(convertToGotoString(status.getGoto(nonTerminal)));
+                }
+                writer.write('\n');
+            }
+
+            // 与原先 FileUtils.writeFile 的行为一致, 文件末尾还有一个行分隔符
+            writer.newLine();
         }
+    }
+
+    List<Status> getStatusInIndexOrder() {
+        return statusInIndexOrder;
+    }
 
-        FileUtils.writeFile(path, text.toString());
+    List<TokenKind> getTerminals() {
+        return terminals;
+    }
+
+    List<NonTerminal> getNonTerminals() {
+        return nonTerminals;
     }
 
     private String convertToGotoString(Status status) {
@@ -77,12 +134,23 @@ public class LRTable {
     }
 
     LRTable(List<Status> statusInIndexOrder, List<TokenKind> terminals, List<NonTerminal> nonTerminals) {
+        this(statusInIndexOrder, terminals, nonTerminals, Map.of(), List.of());
+    }
+
+    LRTable(List<Status> statusInIndexOrder, List<TokenKind> terminals, List<NonTerminal> nonTerminals,
+            Map<Status, Production> defaultReductions, List<Production> eliminatedProductions) {
         this.statusInIndexOrder = statusInIndexOrder;
         this.terminals = terminals;
         this.nonTerminals = nonTerminals;
+        this.defaultReductions = defaultReductions;
+        this.eliminatedProductions = eliminatedProductions;
     }
 
     private final List<Status> statusInIndexOrder;
     private final List<TokenKind> terminals;
     private final List<NonTerminal> nonTerminals;
+    // 由 TableGenerator 标记的默认规约状态; 从文件读入的表没有标记
+    private final Map<Status, Production> defaultReductions;
+    // 构造时被消除, 分析时不会被规约的单产生式
+    private final List<Production> eliminatedProductions;
 }
@@ -0,0 +1,114 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.List;
+
+/**
+ * 以整数编码状态与动作的 LR 分析表, 供语法分析驱动程序在热路径上使用
+ * <br>
+ * 状态用从 0 开始的编号表示, 编号方式由具体的表决定, 不一定等于 {@link Status#index()}, 需要 Status 对象 (如通知观察者) 时用
+ * {@link #status(int)} 转换. 动作编码为一个 int: {@link #ERROR} 为错误, {@link #ACCEPT} 为接受,
+ * 正数 s + 1 为移入并转移到状态 s, 负数 -p 为按编号为 p 的产生式规约.
+ *
+ * @see HashParseTable
+ * @see DenseParseTable
+ * @see CompressedParseTable
+ */
+public interface ParseTable {
+    int ERROR = 0;
+    int ACCEPT = Integer.MIN_VALUE;
+
+    /**
+     * 表示 goto 表中的错误
+     */
+    int NO_STATE = -1;
+
+    /**
+     * @return 起始状态
+     */
+    int getInit();
+
+    /**
+     * @return 状态的数量
+     */
+    int getStatusCount();
+
+    /**
+     * @param state    当前状态
+     * @param terminal 当前词法单元的类型
+     * @return 编码后的动作
+     */
+    int action(int state, TokenKind terminal);
+
+    /**
+     * @param state 当前状态
+     * @return 该状态为默认规约状态时, 不需要查看向前看符号就可以执行的规约动作; 否则为 {@link #ERROR}
+     * @see LRTable#getDefaultReduction(Status)
+     */
+    int defaultAction(int state);
+
+    /**
+     * @param state       当前状态
+     * @param nonTerminal 规约出的非终结符
+     * @return 应转移到的状态, 错误时为 {@link #NO_STATE}
+     */
+    int getGoto(int state, NonTerminal nonTerminal);
+
+    /**
+     * 按产生式规约并弹栈之后应转移到的状态, 等价于对产生式的头调用 {@link #getGoto(int, NonTerminal)}, 但不需要查找非终结符
+     *
+     * @param state      弹栈之后的栈顶状态
+     * @param production 产生式编号
+     * @return 应转移到的状态, 错误时为 {@link #NO_STATE}
+     */
+    int gotoAfterReduce(int state, int production);
+
+    /**
+     * @param production 产生式编号
+     * @return 该编号的产生式
+     */
+    Production production(int production);
+
+    /**
+     * @param state 状态
+     * @return 该状态对应的 Status 对象
+     */
+    Status status(int state);
+
+    /**
+     * @return 构造该表时被消除, 分析时不会规约的单产生式
+     * @see LRTable#getEliminatedProductions()
+     */
+    List<Production> getEliminatedProductions();
+
+    static int shift(int state) {
+        return state + 1;
+    }
+
+    static int reduce(int production) {
+        return -production;
+    }
+
+    static boolean isShift(int action) {
+        return action > 0;
+    }
+
+    static boolean isReduce(int action) {
+        return action < 0 && action != ACCEPT;
+    }
+
+    /**
+     * @return 移入动作要转移到的状态
+     */
+    static int shiftTarget(int action) {
+        return action - 1;
+    }
+
+    /**
+     * @return 规约动作所用的产生式编号
+     */
+    static int reducedProduction(int action) {
+        return -action;
+    }
+}
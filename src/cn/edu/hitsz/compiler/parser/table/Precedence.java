@@ -0,0 +1,108 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 终结符的优先级与结合性, 与 yacc 的 %left/%right/%nonassoc 相同: 后声明的一组优先级更高.
+ * <br>
+ * 产生式的优先级为其体中最后一个有优先级的终结符的优先级, 或由 %prec 指定的名字的优先级. 按名字声明, 因此 %prec 可以使用
+ * 不是终结符的名字 (如 UMINUS).
+ */
+public final class Precedence {
+    public enum Associativity {Left, Right, NonAssoc}
+
+    // 优先级从 1 开始, 0 表示没有优先级
+    private final Map<String, Integer> levels = new HashMap<>();
+    private final Map<String, Associativity> associativities = new HashMap<>();
+    // 以产生式编号为键, 由 %prec 指定的名字
+    private final Map<Integer, String> overrides = new HashMap<>();
+    private int count = 0;
+
+    /**
+     * 声明一组优先级相同的名字, 其优先级高于之前声明的所有名字
+     *
+     * @param associativity 结合性
+     * @param names         终结符的名字 (即 {@link TokenKind#getIdentifier()}), 或只用于 %prec 的名字
+     * @return this
+     * @throws RuntimeException 名字已经声明过
+     */
+    public Precedence declare(Associativity associativity, List<String> names) {
+        count++;
+        for (final var name : names) {
+            if (levels.containsKey(name)) {
+                throw new RuntimeException("Precedence of %s is declared twice".formatted(name));
+            }
+            levels.put(name, count);
+            associativities.put(name, associativity);
+        }
+        return this;
+    }
+
+    /**
+     * 指定产生式的优先级与某个名字相同, 即 %prec
+     *
+     * @throws RuntimeException 名字没有声明过
+     */
+    public Precedence override(Production production, String name) {
+        if (!levels.containsKey(name)) {
+            throw new RuntimeException("%%prec %s in %s is not declared".formatted(name, production));
+        }
+        overrides.put(production.index(), name);
+        return this;
+    }
+
+    /**
+     * @return 终结符的优先级, 没有声明时为 0
+     */
+    public int level(TokenKind terminal) {
+        return levels.getOrDefault(terminal.getIdentifier(), 0);
+    }
+
+    /**
+     * @return 终结符的结合性, 没有声明时为 null
+     */
+    public Associativity associativity(TokenKind terminal) {
+        return associativities.get(terminal.getIdentifier());
+    }
+
+    /**
+     * @return 产生式的优先级, 没有时为 0
+     */
+    public int level(Production production) {
+        final var name = nameOf(production);
+        return name == null ? 0 : levels.get(name);
+    }
+
+    /**
+     * @return 产生式的结合性, 没有优先级时为 null
+     */
+    public Associativity associativity(Production production) {
+        final var name = nameOf(production);
+        return name == null ? null : associativities.get(name);
+    }
+
+    /**
+     * @return 是否声明了任何优先级
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    private String nameOf(Production production) {
+        final var override = overrides.get(production.index());
+        if (override != null) {
+            return override;
+        }
+        final var body = production.body();
+        for (int i = body.size() - 1; i >= 0; i--) {
+            if (body.get(i) instanceof TokenKind terminal && levels.containsKey(terminal.getIdentifier())) {
+                return terminal.getIdentifier();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,17 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+/**
+ * 对 {@link Production} 的判断, 放在框架的 Production 之外
+ */
+public final class ProductionUtils {
+    /**
+     * @param production 产生式
+     * @return 该产生式是否为单产生式, 即体为单个非终结符
+     */
+    public static boolean isUnit(Production production) {
+        return production.body().size() == 1 && production.body().get(0) instanceof NonTerminal;
+    }
+
+    private ProductionUtils() {
+    }
+}
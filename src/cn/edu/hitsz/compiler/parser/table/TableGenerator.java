@@ -4,6 +4,8 @@ import cn.edu.hitsz.compiler.lexer.TokenKind;
 import cn.edu.hitsz.compiler.utils.FileUtils;
 
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -14,9 +16,23 @@ import java.util.stream.Stream;
  */
 public class TableGenerator {
     public TableGenerator() {
-        this.productions = GrammarInfo.getProductionsInOrder();
+        this(GrammarInfo.getProductionsInOrder(), GrammarInfo.getNonTerminals().values(), GrammarInfo.getPrecedence(), true);
+    }
+
+    /**
+     * @param grammar 由 {@link GrammarInfo#fromFile(String)} 读取的文法; 其项目集族不输出到 items.txt
+     */
+    public TableGenerator(GrammarInfo grammar) {
+        this(grammar.productionsInOrder(), grammar.nonTerminals().values(), grammar.precedence(), false);
+    }
+
+    private TableGenerator(List<Production> productions, Collection<NonTerminal> nonTerminals,
+                           Precedence precedence, boolean dumpsItems) {
+        this.productions = productions;
         this.terminals = new HashSet<>(TokenKind.allAllowedTokenKinds().values());
-        this.nonTerminals = new HashSet<>(GrammarInfo.getNonTerminals().values());
+        this.nonTerminals = new HashSet<>(nonTerminals);
+        this.precedence = precedence;
+        this.dumpsItems = dumpsItems;
 
         if (productions.get(0).body().size() != 1) {
             throw new RuntimeException("The first production in grammar file must like S -> S'");
@@ -30,35 +46,134 @@ public class TableGenerator {
         calcFirst();
         calcFollow();
         constructDFA();
-        dumpItems();
+        if (dumpsItems) {
+            dumpItems();
+        }
+        genTable();
+        defaultReductions = markDefaultReductions(allStatusInIndexOrder);
+    }
+
+    /**
+     * 构造允许冲突的 GLR 分析表: 与 {@link #run()} 构造相同的 SLR(1) 表, 只是有冲突的格子保留所有动作, 而不是抛出异常.
+     * 文法中的优先级声明不用于解决冲突, 而是由 GLR 驱动程序在选择推导时使用, 见
+     * {@link cn.edu.hitsz.compiler.parser.GLRSyntaxAnalyzer#setPrecedence(Precedence)}.
+     * 同一个 TableGenerator 只能调用 run 与该方法之一; 该方法不输出项目集族
+     *
+     * @return GLR 分析表
+     */
+    public GLRTable generateGLRTable() {
+        conflicts = new HashMap<>();
+        calcFirst();
+        calcFollow();
+        constructDFA();
         genTable();
+        return new GLRTable(allStatusInIndexOrder, conflicts);
     }
 
     /**
      * 将该分析表生成的 LR(0) 规范集族打印到某个文件之中, 用于调试
      */
     public void dumpItems() {
-        final var lines = new ArrayList<String>();
-        for (final var status : allStatusInIndexOrder) {
-            lines.add("%d: ".formatted(status.index()));
-            for (final var item : including.get(status)) {
-                lines.add("    " + item);
+        try (final var writer = FileUtils.openWriter("data/out/items.txt")) {
+            for (final var status : allStatusInIndexOrder) {
+                writer.write(status.index()).write(": ").newLine();
+                for (final var item : including.get(status)) {
+                    writer.write("    ").writeLine(item.toString());
+                }
             }
         }
-
-        FileUtils.writeLines("data/out/items.txt", lines);
     }
 
     /**
      * @return 构造出的 LR 表
      */
     public LRTable getTable() {
-        return new LRTable(allStatusInIndexOrder, new ArrayList<>(terminals), new ArrayList<>(nonTerminals));
+        return new LRTable(allStatusInIndexOrder, new ArrayList<>(terminals), new ArrayList<>(nonTerminals),
+            defaultReductions, List.of());
+    }
+
+    /**
+     * 构造消除了单产生式规约的 LR 表, 需要先调用 {@link #run()}
+     * <br>
+     * 对于不需要通知观察者的单产生式 A -> B, 在读入 (规约出) B 之后, 新表直接进入一个合并状态, 它同时代表原表中
+     * GO(I, B) 与 GO(I, A) 等沿单产生式链向上的各个状态: 对每个向前看符号, 从 GO(I, B) 开始, 只要原表的动作是按被消除的单产生式规约,
+     * 就沿链换到上一层的状态, 最终采取第一个不是被消除的规约的动作. 因此新表的每一步都与原表的某一步相同, 只是跳过了被消除的规约,
+     * 对其余产生式的规约顺序与原表完全一致. 合并状态的 goto 为各成员 goto 的并集, 若有冲突则抛出异常.
+     *
+     * @param needed 规约时需要通知观察者的产生式, 通常由各观察者的 {@link cn.edu.hitsz.compiler.parser.ActionObserver#needsReduce}
+     *               组合而成
+     * @return 新的 LR 表, 状态重新编号, 被消除的产生式可以从 {@link LRTable#getEliminatedProductions()} 得到
+     */
+    public LRTable getTableWithoutUnitReductions(Predicate<Production> needed) {
+        final var eliminated = productions.stream().skip(1)
+            .filter(production -> ProductionUtils.isUnit(production) && !needed.test(production))
+            .toList();
+        if (eliminated.isEmpty()) {
+            return getTable();
+        }
+
+        final var merged = new LinkedHashMap<MergedStatus, Status>();
+        final var unexpanded = new ArrayDeque<MergedStatus>();
+        final Function<MergedStatus, Status> statusOf = key -> merged.computeIfAbsent(key, k -> {
+            unexpanded.addLast(k);
+            return Status.create(merged.size());
+        });
+        statusOf.apply(new MergedStatus(allStatusInIndexOrder.get(0), Map.of()));
+
+        while (!unexpanded.isEmpty()) {
+            final var key = unexpanded.pollFirst();
+            final var status = merged.get(key);
+
+            for (final var terminal : terminals) {
+                final var action = key.actionOn(terminal, eliminated);
+                switch (action.getKind()) {
+                    case Shift -> status.setAction(terminal,
+                        Action.shift(statusOf.apply(new MergedStatus(action.getStatus(), Map.of()))));
+                    case Reduce, Accept -> status.setAction(terminal, action);
+                    case Error -> {
+                    }
+                }
+            }
+
+            for (final var nonTerminal : nonTerminals) {
+                final var target = key.gotoOn(nonTerminal);
+                if (target.isError()) {
+                    continue;
+                }
+                // 读入 nonTerminal 之后, 记下沿被消除的单产生式链向上时各层的状态
+                final var bypass = new HashMap<NonTerminal, Status>();
+                final var chain = new ArrayDeque<>(List.of(nonTerminal));
+                while (!chain.isEmpty()) {
+                    final var body = chain.pollFirst();
+                    for (final var production : eliminated) {
+                        final var head = production.head();
+                        if (production.body().get(0).equals(body) && !bypass.containsKey(head)) {
+                            final var upper = key.gotoOn(head);
+                            if (!upper.isError()) {
+                                bypass.put(head, upper);
+                                chain.addLast(head);
+                            }
+                        }
+                    }
+                }
+                // 不会按被消除的产生式规约的状态不需要合并
+                final var reducesEliminated = target.action().values().stream()
+                    .anyMatch(action -> action.getKind() == Action.ActionKind.Reduce
+                        && eliminated.contains(action.getProduction()));
+                status.setGoto(nonTerminal, statusOf.apply(new MergedStatus(target, reducesEliminated ? bypass : Map.of())));
+            }
+        }
+
+        final var statuses = new ArrayList<>(merged.values());
+        return new LRTable(statuses, new ArrayList<>(terminals), new ArrayList<>(nonTerminals),
+            markDefaultReductions(statuses), eliminated);
     }
 
     private final List<Production> productions;
     private final Set<TokenKind> terminals;
     private final Set<NonTerminal> nonTerminals;
+    private final Precedence precedence;
+    private final boolean dumpsItems;
 
     private final Map<Term, Set<TokenKind>> first = new HashMap<>();
     private final Map<Term, Set<TokenKind>> follow = new HashMap<>();
@@ -373,14 +488,14 @@ public class TableGenerator {
                     if (item.production().equals(argumentProduction)) {
                         // S -> S' .
                         // 如果项目代表起始文法的末尾, 那么再遇到 EOF 就 accept 了
-                        status.setAction(TokenKind.eof(), Action.accept());
+                        setAction(status, TokenKind.eof(), Action.accept());
                     } else {
                         // A -> alpha .
                         // 如果项目代表某个产生式的末尾, 那么再遇到对于任何位于 follow(A) 内的文法符号都应该规约 A
                         final var production = item.production();
                         final var head = production.head();
                         for (final var a : follow.get(head)) {
-                            status.setAction(a, Action.reduce(production));
+                            setAction(status, a, Action.reduce(production));
                         }
                     }
 
@@ -391,7 +506,7 @@ public class TableGenerator {
                     if (symbol instanceof TokenKind tokenKind) {
                         // A -> alpha . a beta
                         // 如果项目代表某个产生式的中间, 并且接着一个终结符的情况, 我们就移入该终结符
-                        status.setAction(tokenKind, Action.shift(next));
+                        setAction(status, tokenKind, Action.shift(next));
                     } else if (symbol instanceof NonTerminal nonTerminal) {
                         // A -> alpha . B beta
                         // 如果项目代表某个产生式的中间, 并且接着一个非终结符的情况,
@@ -405,6 +520,137 @@ public class TableGenerator {
         }
     }
 
+    // 构造 GLR 分析表时, 记录每个格子中除 Status 里的第一个动作之外的其它动作; 为 null 时遇到冲突直接抛出异常
+    private Map<Status, Map<TokenKind, List<Action>>> conflicts = null;
+
+    // 由 %nonassoc 解决为错误的格子, 之后不再填入任何动作
+    private final Map<Status, Set<TokenKind>> nonAssociative = new HashMap<>();
+
+    private void setAction(Status status, TokenKind terminal, Action action) {
+        if (nonAssociative.getOrDefault(status, Set.of()).contains(terminal)) {
+            return;
+        }
+        final var existing = status.getAction(terminal);
+        if (existing.getKind() == Action.ActionKind.Error || existing.equals(action)) {
+            status.setAction(terminal, action);
+            return;
+        }
+
+        // 构造 GLR 分析表时保留所有动作, 优先级留给驱动程序过滤推导
+        final var resolved = conflicts == null ? resolve(terminal, existing, action) : null;
+        if (resolved == null && conflicts == null) {
+            // 无法按优先级解决的冲突, 由 Status 抛出异常
+            status.setAction(terminal, action);
+        } else if (resolved == null) {
+            final var others = conflicts.computeIfAbsent(status, key -> new HashMap<>())
+                .computeIfAbsent(terminal, key -> new ArrayList<>());
+            if (!others.contains(action)) {
+                others.add(action);
+            }
+        } else if (resolved.getKind() == Action.ActionKind.Error) {
+            status.action().remove(terminal);
+            nonAssociative.computeIfAbsent(status, key -> new HashSet<>()).add(terminal);
+        } else {
+            status.action().put(terminal, resolved);
+        }
+    }
+
+    /**
+     * 与 yacc 相同, 按优先级与结合性解决移入-规约冲突: 产生式的优先级高于向前看符号时规约, 低于时移入;
+     * 相同时左结合规约, 右结合移入, 不结合则为错误. 产生式与向前看符号有一个没有优先级, 或不是移入-规约冲突时无法解决
+     *
+     * @return 应保留的动作, 不结合时为 {@link Action#error()}; 无法解决时为 null
+     */
+    private Action resolve(TokenKind terminal, Action first, Action second) {
+        final Action shift, reduce;
+        if (first.getKind() == Action.ActionKind.Shift && second.getKind() == Action.ActionKind.Reduce) {
+            shift = first;
+            reduce = second;
+        } else if (first.getKind() == Action.ActionKind.Reduce && second.getKind() == Action.ActionKind.Shift) {
+            shift = second;
+            reduce = first;
+        } else {
+            return null;
+        }
+
+        final var production = reduce.getProduction();
+        final var productionLevel = precedence.level(production);
+        final var terminalLevel = precedence.level(terminal);
+        if (productionLevel == 0 || terminalLevel == 0) {
+            return null;
+        } else if (productionLevel != terminalLevel) {
+            return productionLevel > terminalLevel ? reduce : shift;
+        }
+        return switch (precedence.associativity(production)) {
+            case Left -> reduce;
+            case Right -> shift;
+            case NonAssoc -> Action.error();
+        };
+    }
+
+    private Map<Status, Production> defaultReductions = Map.of();
+
+    /**
+     * 标记默认规约状态: 该状态的所有非错误动作都是按同一个产生式规约 (通常是只含一个完成项的状态, 如 B -> id .).
+     * 在这样的状态中, 驱动程序不必查看向前看符号就可以直接规约; 若向前看符号其实不合法, 错误会在之后的某个状态中,
+     * 在下一次移入之前被发现.
+     */
+    private static Map<Status, Production> markDefaultReductions(List<Status> statuses) {
+        final var result = new HashMap<Status, Production>();
+        for (final var status : statuses) {
+            final var actions = new HashSet<>(status.action().values());
+            if (actions.size() == 1) {
+                final var action = actions.iterator().next();
+                if (action.getKind() == Action.ActionKind.Reduce) {
+                    result.put(status, action.getProduction());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 消除单产生式规约后的一个状态
+     *
+     * @param base   原表中实际到达的状态
+     * @param bypass 沿被消除的单产生式链向上时, 各产生式头在原表中对应的状态
+     */
+    private record MergedStatus(Status base, Map<NonTerminal, Status> bypass) {
+        /**
+         * @return 从 base 开始, 跳过被消除的单产生式规约之后的动作
+         */
+        Action actionOn(TokenKind terminal, List<Production> eliminated) {
+            var current = base;
+            while (true) {
+                final var action = current.getAction(terminal);
+                if (action.getKind() != Action.ActionKind.Reduce || !eliminated.contains(action.getProduction())) {
+                    return action;
+                }
+                current = bypass.get(action.getProduction().head());
+                if (current == null) {
+                    // 原表中规约之后的 goto 为错误, 只在错误的输入中出现
+                    return Action.error();
+                }
+            }
+        }
+
+        /**
+         * @return 各成员状态的 goto 的并集
+         */
+        Status gotoOn(NonTerminal nonTerminal) {
+            var result = base.getGoto(nonTerminal);
+            for (final var member : bypass.values()) {
+                final var target = member.getGoto(nonTerminal);
+                if (result.isError()) {
+                    result = target;
+                } else if (!target.isError() && !target.equals(result)) {
+                    throw new RuntimeException("Goto conflict on %s when eliminating unit productions".formatted(nonTerminal));
+                }
+            }
+            return result;
+        }
+    }
+
     // 我们在 Status.setAction/setGoto 中检查规约-规约冲突与移入-规约冲突
-    // 如果有冲突, 它们会抛出 RuntimeException
+    // 如果有不能按优先级解决的冲突, 它们会抛出 RuntimeException; 构造 GLR 分析表时冲突的动作记录在 conflicts 中
 }
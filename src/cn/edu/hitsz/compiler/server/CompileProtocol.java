@@ -0,0 +1,114 @@
+package cn.edu.hitsz.compiler.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 编译服务与客户端之间的本地套接字协议
+ * <br>
+ * 所有整数均为大端序 32 位整数. 一个连接上可以依次发送任意多个请求, 每个请求都会得到一个响应:
+ * <ul>
+ *     <li>请求: 源代码字节数, 随后是 UTF-8 编码的源代码</li>
+ *     <li>响应: 状态 ({@link #STATUS_OK} 或 {@link #STATUS_ERROR}), 随后是若干个 "字节数 + UTF-8 文本" 形式的段.
+ *     成功时依次为词法单元流, 中间代码, IR 模拟执行结果与汇编代码四段; 失败时只有错误信息一段.</li>
+ * </ul>
+ */
+final class CompileProtocol {
+    static final int STATUS_OK = 0;
+    static final int STATUS_ERROR = 1;
+
+    /**
+     * 单个请求中源代码的最大字节数, 防止错误的请求耗尽服务端内存
+     */
+    static final int MAX_SOURCE_BYTES = 64 << 20;
+
+    /**
+     * 读取一个帧的内容
+     *
+     * @param channel  通道
+     * @param maxBytes 允许的最大字节数
+     * @return 帧的内容; 若通道在帧开始前就已关闭则返回 null
+     */
+    static ByteBuffer readFrame(ReadableByteChannel channel, int maxBytes) throws IOException {
+        final var header = ByteBuffer.allocate(Integer.BYTES);
+        if (!readFully(channel, header, true)) {
+            return null;
+        }
+        final var length = header.flip().getInt();
+        if (length < 0 || length > maxBytes) {
+            throw new IOException("Illegal frame length: " + length);
+        }
+
+        final var body = ByteBuffer.allocate(length);
+        readFully(channel, body, false);
+        return body.flip();
+    }
+
+    static int readInt(ReadableByteChannel channel) throws IOException {
+        final var buffer = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, buffer, false);
+        return buffer.flip().getInt();
+    }
+
+    static String readText(ReadableByteChannel channel) throws IOException {
+        final var frame = readFrame(channel, Integer.MAX_VALUE);
+        if (frame == null) {
+            throw new EOFException("Connection closed");
+        }
+        return StandardCharsets.UTF_8.decode(frame).toString();
+    }
+
+    /**
+     * 把状态与若干段文本编码为一个完整的消息, 以便用一次写入发出
+     */
+    static ByteBuffer encodeMessage(int status, String... sections) {
+        final var encoded = new byte[sections.length][];
+        var size = Integer.BYTES;
+        for (int i = 0; i < sections.length; i++) {
+            encoded[i] = sections[i].getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + encoded[i].length;
+        }
+
+        final var buffer = ByteBuffer.allocate(size).putInt(status);
+        for (final var bytes : encoded) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * 把一段字节编码为一个帧, 用于发送请求
+     */
+    static ByteBuffer encodeFrame(byte[] bytes) {
+        return ByteBuffer.allocate(Integer.BYTES + bytes.length).putInt(bytes.length).put(bytes).flip();
+    }
+
+    static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @param allowCleanEof 为 true 时, 若在读到任何字节前通道就关闭了, 则返回 false 而不是抛出异常
+     * @return 是否读满了缓冲区
+     */
+    private static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer, boolean allowCleanEof) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                if (allowCleanEof && buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Connection closed in the middle of a frame");
+            }
+        }
+        return true;
+    }
+
+    private CompileProtocol() {
+    }
+}
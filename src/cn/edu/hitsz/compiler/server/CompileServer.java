@@ -0,0 +1,156 @@
+package cn.edu.hitsz.compiler.server;
+
+import cn.edu.hitsz.compiler.Compiler;
+import cn.edu.hitsz.compiler.lexer.TokenKind;
+import cn.edu.hitsz.compiler.parser.table.TableGenerator;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 常驻的编译服务
+ * <br>
+ * 启动时只读取一次码点文件与文法并构造 LR 分析表, 再用一段小程序预热 JIT, 之后在 Unix 域套接字上接受编译请求.
+ * 每个连接由单独的线程服务 (运行时支持虚拟线程时使用虚拟线程), 编译完全在内存中进行, 不读写任何文件.
+ * <br>
+ * 用法: {@code CompileServer [--check-assembly] [套接字路径]}, 默认套接字路径为 {@value #DEFAULT_SOCKET_PATH}.
+ * 为了降低延迟, 默认不在进程内模拟执行生成的汇编 (见 {@link Compiler#setAssemblyCheck}), 指定 --check-assembly 时开启.
+ * <br>
+ * 每个请求中抛出的任何异常或错误 (包括 OutOfMemoryError 与 StackOverflowError) 都会作为失败的回复返回给客户端, 不会断开连接.
+ *
+ * @see CompileProtocol 通信协议
+ * @see CompileClient 客户端
+ */
+public class CompileServer {
+    static final String DEFAULT_SOCKET_PATH = "data/out/compile.sock";
+
+    private static final int WARM_UP_ROUNDS = 2000;
+    private static final String WARM_UP_SOURCE = """
+        int a;
+        int b;
+        a = 8;
+        b = a * (3 + a) - 5;
+        return b;
+        """;
+
+    public static void main(String[] args) throws IOException {
+        var checkAssembly = false;
+        var socketPath = Paths.get(DEFAULT_SOCKET_PATH);
+        for (final var arg : args) {
+            if (arg.equals("--check-assembly")) {
+                checkAssembly = true;
+            } else {
+                socketPath = Paths.get(arg);
+            }
+        }
+
+        TokenKind.loadTokenKinds();
+        final var tableGenerator = new TableGenerator();
+        tableGenerator.run();
+        final var compiler = new Compiler(tableGenerator.getTable());
+        compiler.setAssemblyCheck(checkAssembly);
+        final var server = new CompileServer(compiler);
+
+        server.warmUp();
+        server.serve(socketPath);
+    }
+
+    public CompileServer(Compiler compiler) {
+        this.compiler = compiler;
+    }
+
+    private final Compiler compiler;
+
+    /**
+     * 反复编译一段小程序, 使编译流程中的热点方法在接受请求前就被 JIT 编译
+     */
+    public void warmUp() {
+        final var source = WARM_UP_SOURCE.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            compiler.compile(ByteBuffer.wrap(source), "<warm-up>");
+        }
+    }
+
+    /**
+     * 在给定路径上监听并一直服务, 直到进程退出
+     *
+     * @param socketPath Unix 域套接字的路径, 已存在的同名文件会被删除
+     */
+    public void serve(Path socketPath) throws IOException {
+        Files.deleteIfExists(socketPath);
+        final var address = UnixDomainSocketAddress.of(socketPath);
+
+        final var executor = newConnectionExecutor();
+        try (final var serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            serverChannel.bind(address);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteQuietly(socketPath)));
+            System.out.println("Compile server listening on " + socketPath);
+
+            while (true) {
+                final var channel = serverChannel.accept();
+                executor.execute(() -> handle(channel));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 在一个连接上依次处理请求, 直到客户端关闭连接
+     */
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            ByteBuffer source;
+            while ((source = CompileProtocol.readFrame(channel, CompileProtocol.MAX_SOURCE_BYTES)) != null) {
+                CompileProtocol.writeFully(channel, compileToMessage(source));
+            }
+        } catch (IOException e) {
+            System.err.println("Connection dropped: " + e);
+        }
+    }
+
+    private ByteBuffer compileToMessage(ByteBuffer source) {
+        try {
+            final var output = compiler.compile(source, "<request>");
+            return CompileProtocol.encodeMessage(CompileProtocol.STATUS_OK,
+                output.tokens(), output.intermediateCode(), output.emulateResult(), output.assemblyLanguage());
+        } catch (Throwable e) {
+            // 病态输入可能引起 StackOverflowError 等错误, 它们只影响这一个请求, 仍然回复给客户端
+            return CompileProtocol.encodeMessage(CompileProtocol.STATUS_ERROR, e.toString());
+        }
+    }
+
+    /**
+     * @return 每个任务一个虚拟线程的执行器; 若运行时不支持虚拟线程, 则退回到按需创建守护线程的线程池
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            final var factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                final var thread = new Thread(runnable, "compile-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // 进程即将退出, 删除失败也无妨
+        }
+    }
+}
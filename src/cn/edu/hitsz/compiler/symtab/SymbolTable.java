@@ -16,6 +16,13 @@ import java.util.Map;
  */
 public class SymbolTable {
     private final Map<String, SymbolTableEntry> table = new HashMap<>();
+    /**
+     * @return 符号表中条目的数量
+     */
+    public int size() {
+        return table.size();
+    }
+
     /**
      * 获取符号表中已有的条目
      *
@@ -73,13 +80,12 @@ public class SymbolTable {
         final var entriesInOrder = new ArrayList<>(getAllEntries().values());
         entriesInOrder.sort(Comparator.comparing(SymbolTableEntry::getText));
 
-        final var lines = new ArrayList<String>();
-        for (final var entry : entriesInOrder) {
-            // null in %s will be "null"
-            lines.add("(%s, %s)".formatted(entry.getText(), entry.getType()));
+        try (final var writer = FileUtils.openWriter(path)) {
+            for (final var entry : entriesInOrder) {
+                // 与 "(%s, %s)".formatted(...) 一致, null 输出为 "null"
+                writer.write('(').write(entry.getText()).write(", ").write(String.valueOf(entry.getType())).write(')').newLine();
+            }
         }
-
-        FileUtils.writeLines(path, lines);
     }
 }
 
@@ -0,0 +1,248 @@
+package cn.edu.hitsz.compiler.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基于 {@link WritableByteChannel} 的流式文本写入器, 通过 {@link FileUtils#openWriter(String)} 获得
+ * <br>
+ * 调用者把一条条记录 (或记录的各个片段) 推入写入器, 写入器直接把字符以 UTF-8 编码到一块可复用的直接缓冲区中, 缓冲区满时再整块写入通道.
+ * 这样输出时既不需要先构造出所有行组成的 {@code List<String>}, 也不需要为每一行额外分配一份编码后的 byte[].
+ * <br>
+ * 直接缓冲区的分配代价较高, 因此每个线程会缓存一块缓冲区, 写入器关闭时归还, 供该线程之后打开的写入器复用.
+ * 关闭之后再写入或刷新会抛出 {@link IllegalStateException}, 以免写进已经属于另一个写入器的缓冲区.
+ */
+public final class ChannelWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final ThreadLocal<ByteBuffer> cachedBuffer = new ThreadLocal<>();
+    private static final String lineSeparator = System.lineSeparator();
+
+    /**
+     * @param channel 输出通道, 写入器关闭时会一并关闭该通道
+     * @param name    通道的名字 (一般是文件路径), 仅用于错误信息
+     */
+    public ChannelWriter(WritableByteChannel channel, String name) {
+        this.channel = channel;
+        this.name = name;
+
+        final var cached = cachedBuffer.get();
+        if (cached != null) {
+            cachedBuffer.remove();
+            cached.clear();
+            this.buffer = cached;
+        } else {
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private final String name;
+    // 关闭后为 null, 缓冲区已归还给线程缓存, 可能正被其他写入器使用
+    private ByteBuffer buffer;
+    private CharsetEncoder encoder = null;
+    private boolean closed = false;
+
+    /**
+     * 以 UTF-8 写入一段文本
+     *
+     * @param text 文本
+     * @return 写入器自身
+     */
+    public ChannelWriter write(CharSequence text) {
+        ensureOpen();
+        final var length = text.length();
+        int pos = 0;
+        while (pos < length) {
+            final var c = text.charAt(pos);
+            if (c < 0x80) {
+                // ASCII 字符直接放入缓冲区
+                if (!buffer.hasRemaining()) {
+                    flushBuffer();
+                }
+                buffer.put((byte) c);
+                pos++;
+            } else {
+                pos = encodeNonAscii(text, pos);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @param c 要写入的字符
+     * @return 写入器自身
+     */
+    public ChannelWriter write(char c) {
+        ensureOpen();
+        if (c < 0x80) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            buffer.put((byte) c);
+            return this;
+        }
+        return write(String.valueOf(c));
+    }
+
+    /**
+     * 写入一个整数的十进制表示
+     *
+     * @param value 整数
+     * @return 写入器自身
+     */
+    public ChannelWriter write(int value) {
+        return write(Integer.toString(value));
+    }
+
+    /**
+     * 写入一段已经编码好的字节
+     *
+     * @param bytes 字节
+     * @return 写入器自身
+     */
+    public ChannelWriter write(byte[] bytes) {
+        ensureOpen();
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            final var length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+        return this;
+    }
+
+    /**
+     * 写入一个字节, 用于二进制输出
+     *
+     * @param b 字节 (只取低 8 位)
+     * @return 写入器自身
+     */
+    public ChannelWriter writeByte(int b) {
+        ensureOpen();
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) b);
+        return this;
+    }
+
+    /**
+     * 写入行分隔符, 与 {@code Files.write} 一致, 使用系统的行分隔符
+     *
+     * @return 写入器自身
+     */
+    public ChannelWriter newLine() {
+        return write(lineSeparator);
+    }
+
+    /**
+     * 写入一行文本及其后的行分隔符
+     *
+     * @param line 行的内容
+     * @return 写入器自身
+     */
+    public ChannelWriter writeLine(CharSequence line) {
+        return write(line).newLine();
+    }
+
+    /**
+     * 将缓冲区中的内容写入通道
+     */
+    public void flush() {
+        ensureOpen();
+        flushBuffer();
+    }
+
+    /**
+     * 刷新缓冲区, 关闭通道并归还缓冲区
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            flushBuffer();
+            channel.close();
+        } catch (RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + name, e);
+        } finally {
+            cachedBuffer.set(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * @throws IllegalStateException 写入器已经关闭
+     */
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Writer for " + name + " is already closed");
+        }
+    }
+
+    private void flushBuffer() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception for " + name, e);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 用 CharsetEncoder 把从 from 开始的一段连续非 ASCII 字符直接编码进缓冲区
+     *
+     * @return 这段非 ASCII 字符之后的位置
+     */
+    private int encodeNonAscii(CharSequence text, int from) {
+        // 代理对的两个 char 都不小于 0x80, 所以不会被从中间切开
+        int end = from;
+        while (end < text.length() && text.charAt(end) >= 0x80) {
+            end++;
+        }
+
+        if (encoder == null) {
+            encoder = StandardCharsets.UTF_8.newEncoder();
+        }
+        encoder.reset();
+
+        final var chars = CharBuffer.wrap(text, from, end);
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                flushBuffer();
+            }
+        } while (result.isOverflow());
+
+        if (result.isError()) {
+            throw new RuntimeException("Can not encode text for " + name + " as UTF-8");
+        }
+
+        while (encoder.flush(buffer).isOverflow()) {
+            flushBuffer();
+        }
+        return end;
+    }
+}
@@ -45,6 +45,11 @@ public final class FilePathConfig {
      */
     public static final String PARSER_PATH = "data/out/parser_list.txt";
 
+    /**
+     * 二进制格式的规约出的产生式列表, 见 {@link cn.edu.hitsz.compiler.parser.StreamingProductionCollector.Format#BINARY}
+     */
+    public static final String PARSER_BINARY_PATH = "data/out/parser_list.bin";
+
     /**
      * 语义分析后的符号表
      */
@@ -60,11 +65,31 @@ public final class FilePathConfig {
      */
     public static final String EMULATE_RESULT = "data/out/ir_emulate_result.txt";
 
+    /**
+     * 带统计的 IR 模拟执行中各种指令的执行次数, 见 {@link IRProfile#dumpInstructionCounts(String)}
+     */
+    public static final String IR_INSTRUCTION_PROFILE_PATH = "data/out/ir_instruction_profile.csv";
+
+    /**
+     * 带统计的 IR 模拟执行中各 IR 变量的统计, 见 {@link IRProfile#dumpVariables(String)}
+     */
+    public static final String IR_VARIABLE_PROFILE_PATH = "data/out/ir_variable_profile.csv";
+
     /**
      * 汇编代码
      */
     public static final String ASSEMBLY_LANGUAGE_PATH = "data/out/assembly_language.asm";
 
+    /**
+     * 各阶段的耗时, 内存分配与堆峰值
+     */
+    public static final String PHASE_REPORT_PATH = "data/out/phase_report.txt";
+
+    /**
+     * 各产生式与各状态的使用次数
+     */
+    public static final String PARSE_PROFILE_PATH = "data/out/parse_profile.txt";
+
     private FilePathConfig() {
     }
 }
@@ -1,10 +1,12 @@
 package cn.edu.hitsz.compiler.utils;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.List;
 
@@ -22,6 +24,22 @@ public final class FileUtils {
         return String.join("\n", readLines(path));
     }
 
+    /**
+     * 将文件以只读方式映射进内存
+     * <br>
+     * 映射后的内容不会被拷贝到 Java 堆中, 映射在返回的缓冲区被回收后才会解除
+     *
+     * @param path 文件路径
+     * @return 文件内容
+     */
+    public static ByteBuffer mapFile(String path) {
+        try (final var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException("IO Exception on " + path, e);
+        }
+    }
+
     /**
      * 读取文本文件并按行以 {@code ArrayList<String>} 形式返回文件内容
      *
@@ -43,14 +61,34 @@ public final class FileUtils {
      * @param content 要写入的内容
      */
     public static void writeFile(String path, String content) {
-        writeLines(path, List.of(content));
+        try (final var writer = openWriter(path)) {
+            writer.writeLine(content);
+        }
     }
 
     public static void writeLines(String path, List<String> lines) {
+        try (final var writer = openWriter(path)) {
+            for (final var line : lines) {
+                writer.writeLine(line);
+            }
+        }
+    }
+
+    /**
+     * 打开一个流式写入器, 调用者可以逐条推入记录而不必先构造出所有行
+     * <br>
+     * 文件不存在时会被创建, 已存在时会被清空. 用完后需要关闭写入器, 推荐使用 try-with-resources
+     *
+     * @param path 要写入的文件路径
+     * @return 写入该文件的写入器
+     */
+    public static ChannelWriter openWriter(String path) {
         try {
-            Files.write(Paths.get(path), lines, StandardCharsets.UTF_8);
+            final var channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            return new ChannelWriter(channel, path);
         } catch (IOException e) {
-            throw new RuntimeException("IO Exception for " + path);
+            throw new RuntimeException("IO Exception for " + path, e);
         }
     }
 
@@ -4,6 +4,7 @@ import cn.edu.hitsz.compiler.ir.IRImmediate;
 import cn.edu.hitsz.compiler.ir.IRValue;
 import cn.edu.hitsz.compiler.ir.IRVariable;
 import cn.edu.hitsz.compiler.ir.Instruction;
+import cn.edu.hitsz.compiler.ir.InstructionKind;
 
 import java.util.HashMap;
 import java.util.List;
@@ -19,38 +20,94 @@ public class IREmulator {
     }
 
     public Optional<Integer> execute() {
+        run(Hook.NONE);
+        return Optional.ofNullable(this.returnValue);
+    }
+
+    /**
+     * 带统计的模拟执行, 统计的内容见 {@link IRProfile}. 与 {@link #execute()} 共用同一个解释循环, 只是换上了记录统计的钩子;
+     * 不需要统计时钩子什么也不做.
+     *
+     * @param stepBudget 最多执行的指令条数, 用完后提前停止; 不限制时为 {@link IRProfile#UNLIMITED}
+     * @return 执行的统计与返回值
+     */
+    public IRProfile executeProfiled(long stepBudget) {
+        final var profile = new IRProfile(stepBudget);
+        run(new Hook() {
+            @Override
+            public boolean step(InstructionKind kind) {
+                return profile.step(kind);
+            }
+
+            @Override
+            public void read(IRVariable variable) {
+                profile.variable(variable).read();
+            }
+
+            @Override
+            public void write(IRVariable variable, int value) {
+                profile.variable(variable).write(value);
+            }
+        });
+        profile.setReturnValue(this.returnValue);
+        return profile;
+    }
+
+    /**
+     * 解释执行时在各处调用的钩子, 用于统计; 默认什么也不做
+     */
+    private interface Hook {
+        Hook NONE = new Hook() {
+        };
+
+        /**
+         * @return 是否还能再执行一条指令
+         */
+        default boolean step(InstructionKind kind) {
+            return true;
+        }
+
+        default void read(IRVariable variable) {
+        }
+
+        default void write(IRVariable variable, int value) {
+        }
+    }
+
+    private void run(Hook hook) {
         for (final var instruction : instructions) {
+            if (!hook.step(instruction.getKind())) {
+                break;
+            }
             switch (instruction.getKind()) {
                 case MOV -> {
-                    final var from = eval(instruction.getFrom());
-                    environment.put(instruction.getResult(), from);
+                    final var from = eval(instruction.getFrom(), hook);
+                    assign(instruction.getResult(), from, hook);
                 }
 
                 case ADD -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs + rhs);
+                    final var lhs = eval(instruction.getLHS(), hook);
+                    final var rhs = eval(instruction.getRHS(), hook);
+                    assign(instruction.getResult(), lhs + rhs, hook);
                 }
 
                 case SUB -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs - rhs);
+                    final var lhs = eval(instruction.getLHS(), hook);
+                    final var rhs = eval(instruction.getRHS(), hook);
+                    assign(instruction.getResult(), lhs - rhs, hook);
                 }
 
                 case MUL -> {
-                    final var lhs = eval(instruction.getLHS());
-                    final var rhs = eval(instruction.getRHS());
-                    environment.put(instruction.getResult(), lhs * rhs);
+                    final var lhs = eval(instruction.getLHS(), hook);
+                    final var rhs = eval(instruction.getRHS(), hook);
+                    assign(instruction.getResult(), lhs * rhs, hook);
                 }
 
-                case RET -> this.returnValue = eval(instruction.getReturnValue());
+                case RET -> this.returnValue = eval(instruction.getReturnValue(), hook);
 
                 default -> throw new RuntimeException("Unknown instruction kind: " + instruction.getKind());
             }
         }
-
-        return Optional.ofNullable(this.returnValue);
     }
 
     public Integer eval(IRValue value) {
@@ -63,6 +120,18 @@ public class IREmulator {
         }
     }
 
+    private Integer eval(IRValue value, Hook hook) {
+        if (value instanceof IRVariable variable) {
+            hook.read(variable);
+        }
+        return eval(value);
+    }
+
+    private void assign(IRVariable variable, int value, Hook hook) {
+        hook.write(variable, value);
+        environment.put(variable, value);
+    }
+
     private IREmulator(List<Instruction> instructions) {
         this.instructions = instructions;
         this.environment = new HashMap<>();
@@ -0,0 +1,199 @@
+package cn.edu.hitsz.compiler.utils;
+
+import cn.edu.hitsz.compiler.ir.IRVariable;
+import cn.edu.hitsz.compiler.ir.InstructionKind;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 一次带统计的 IR 模拟执行的结果
+ * <br>
+ * 记录每种指令的执行次数, 以及每个 IR 变量的读写次数, 取值范围与取值的位宽分布, 用于判断后端中哪些变量值得占用寄存器,
+ * 以及哪些值可以直接编码为立即数.
+ *
+ * @see IREmulator#executeProfiled(long)
+ */
+public final class IRProfile {
+    /**
+     * 不限制执行的步数
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    /**
+     * 一个 IR 变量的统计
+     */
+    public static final class VariableStats {
+        private long reads = 0;
+        private long writes = 0;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        // widths[w] 为以补码表示时恰好需要 w 位的写入次数, w 从 1 到 32
+        private final long[] widths = new long[Integer.SIZE + 1];
+
+        public long getReads() {
+            return reads;
+        }
+
+        public long getWrites() {
+            return writes;
+        }
+
+        /**
+         * @return 写入过的最小值; 从未写入时为空
+         */
+        public Optional<Integer> getMin() {
+            return writes == 0 ? Optional.empty() : Optional.of(min);
+        }
+
+        /**
+         * @return 写入过的最大值; 从未写入时为空
+         */
+        public Optional<Integer> getMax() {
+            return writes == 0 ? Optional.empty() : Optional.of(max);
+        }
+
+        /**
+         * @param width 位宽, 1 到 32
+         * @return 写入的值以补码表示时恰好需要 width 位的次数
+         */
+        public long getWidthCount(int width) {
+            return widths[width];
+        }
+
+        void read() {
+            reads++;
+        }
+
+        void write(int value) {
+            writes++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            widths[signedWidth(value)]++;
+        }
+    }
+
+    private final long[] kindCounts = new long[InstructionKind.values().length];
+    // 按第一次被访问的顺序排列
+    private final Map<IRVariable, VariableStats> variables = new LinkedHashMap<>();
+    private final long stepBudget;
+    private long steps = 0;
+    private boolean budgetExhausted = false;
+    private Integer returnValue = null;
+
+    IRProfile(long stepBudget) {
+        this.stepBudget = stepBudget;
+    }
+
+    /**
+     * @return 执行的指令条数
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return 是否因为达到步数限制而提前停止
+     */
+    public boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    /**
+     * @return 与 {@link IREmulator#execute()} 相同的返回值; 提前停止时为停止前最后一次 RET 的值
+     */
+    public Optional<Integer> getReturnValue() {
+        return Optional.ofNullable(returnValue);
+    }
+
+    /**
+     * @param kind 指令种类
+     * @return 该种指令的执行次数
+     */
+    public long getCount(InstructionKind kind) {
+        return kindCounts[kind.ordinal()];
+    }
+
+    /**
+     * @return 各 IR 变量的统计, 按第一次被访问的顺序排列
+     */
+    public Map<IRVariable, VariableStats> getVariables() {
+        return Collections.unmodifiableMap(variables);
+    }
+
+    /**
+     * 以 CSV 格式输出各种指令的执行次数, 表头为 {@code kind,count}
+     *
+     * @param path 输出路径
+     */
+    public void dumpInstructionCounts(String path) {
+        try (final var writer = FileUtils.openWriter(path)) {
+            writer.writeLine("kind,count");
+            for (final var kind : InstructionKind.values()) {
+                writer.write(kind.toString()).write(',').write(Long.toString(getCount(kind))).newLine();
+            }
+        }
+    }
+
+    /**
+     * 以 CSV 格式输出各 IR 变量的统计, 表头为 {@code variable,reads,writes,min,max,widths}.
+     * widths 列形如 {@code 2:5;12:1}, 表示有 5 次写入的值需要 2 位, 1 次需要 12 位; 从未写入的变量 min, max 为空.
+     *
+     * @param path 输出路径
+     */
+    public void dumpVariables(String path) {
+        try (final var writer = FileUtils.openWriter(path)) {
+            writer.writeLine("variable,reads,writes,min,max,widths");
+            for (final var entry : variables.entrySet()) {
+                final var stats = entry.getValue();
+                writer.write(entry.getKey().getName())
+                    .write(',').write(Long.toString(stats.reads))
+                    .write(',').write(Long.toString(stats.writes))
+                    .write(',').write(stats.getMin().map(Object::toString).orElse(""))
+                    .write(',').write(stats.getMax().map(Object::toString).orElse(""))
+                    .write(',');
+                var first = true;
+                for (int width = 1; width <= Integer.SIZE; width++) {
+                    if (stats.widths[width] != 0) {
+                        if (!first) {
+                            writer.write(';');
+                        }
+                        writer.write(Integer.toString(width)).write(':').write(Long.toString(stats.widths[width]));
+                        first = false;
+                    }
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * @return 是否还能再执行一条指令; 不能时标记为提前停止
+     */
+    boolean step(InstructionKind kind) {
+        if (steps >= stepBudget) {
+            budgetExhausted = true;
+            return false;
+        }
+        steps++;
+        kindCounts[kind.ordinal()]++;
+        return true;
+    }
+
+    VariableStats variable(IRVariable variable) {
+        return variables.computeIfAbsent(variable, key -> new VariableStats());
+    }
+
+    void setReturnValue(Integer value) {
+        this.returnValue = value;
+    }
+
+    /**
+     * @return value 以补码表示时需要的位数 (含符号位), 0 与 -1 为 1 位
+     */
+    static int signedWidth(int value) {
+        return Integer.SIZE + 1 - Integer.numberOfLeadingZeros(value ^ (value >> 31));
+    }
+}
@@ -0,0 +1,80 @@
+package cn.edu.hitsz.compiler.utils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 一次编译的各个输出文件的路径
+ *
+ * @param token            词法单元流
+ * @param oldSymbolTable   语义分析前的符号表
+ * @param parser           规约出的产生式列表
+ * @param newSymbolTable   语义分析后的符号表
+ * @param intermediateCode 中间代码
+ * @param emulateResult    IR 模拟执行的结果
+ * @param assemblyLanguage 汇编代码
+ * @see FilePathConfig
+ */
+public record OutputPaths(String token, String oldSymbolTable, String parser, String newSymbolTable,
+                          String intermediateCode, String emulateResult, String assemblyLanguage) {
+    /**
+     * @return FilePathConfig 中配置的默认输出路径
+     */
+    public static OutputPaths defaults() {
+        return new OutputPaths(
+            FilePathConfig.TOKEN_PATH,
+            FilePathConfig.OLD_SYMBOL_TABLE,
+            FilePathConfig.PARSER_PATH,
+            FilePathConfig.NEW_SYMBOL_TABLE,
+            FilePathConfig.INTERMEDIATE_CODE_PATH,
+            FilePathConfig.EMULATE_RESULT,
+            FilePathConfig.ASSEMBLY_LANGUAGE_PATH
+        );
+    }
+
+    /**
+     * @param directory 输出目录
+     * @return 在给定目录下, 与默认输出同名的一组输出路径
+     */
+    public static OutputPaths under(Path directory) {
+        final var defaults = defaults();
+        return new OutputPaths(
+            resolve(directory, defaults.token),
+            resolve(directory, defaults.oldSymbolTable),
+            resolve(directory, defaults.parser),
+            resolve(directory, defaults.newSymbolTable),
+            resolve(directory, defaults.intermediateCode),
+            resolve(directory, defaults.emulateResult),
+            resolve(directory, defaults.assemblyLanguage)
+        );
+    }
+
+    /**
+     * @return 二进制格式的规约出的产生式列表, 与规约出的产生式列表在同一目录下
+     */
+    public String parserBinary() {
+        return Paths.get(parser).resolveSibling(Paths.get(FilePathConfig.PARSER_BINARY_PATH).getFileName()).toString();
+    }
+
+    /**
+     * @return 带统计的 IR 模拟执行中各种指令的执行次数, 与 IR 模拟执行的结果在同一目录下
+     */
+    public String irInstructionProfile() {
+        return sibling(FilePathConfig.IR_INSTRUCTION_PROFILE_PATH);
+    }
+
+    /**
+     * @return 带统计的 IR 模拟执行中各 IR 变量的统计, 与 IR 模拟执行的结果在同一目录下
+     */
+    public String irVariableProfile() {
+        return sibling(FilePathConfig.IR_VARIABLE_PROFILE_PATH);
+    }
+
+    private String sibling(String defaultPath) {
+        return Paths.get(emulateResult).resolveSibling(Paths.get(defaultPath).getFileName()).toString();
+    }
+
+    private static String resolve(Path directory, String defaultPath) {
+        return directory.resolve(Paths.get(defaultPath).getFileName()).toString();
+    }
+}